@@ -3,21 +3,22 @@ package com.toddfast.mutagen.cassandra;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.nio.file.Paths;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.Session;
+import com.google.common.hash.Hasher;
+import com.toddfast.mutagen.MutagenException;
 import com.toddfast.mutagen.Mutation;
 import com.toddfast.mutagen.State;
-import com.toddfast.mutagen.basic.SimpleState;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.impl.CassandraContext;
+import com.toddfast.mutagen.cassandra.impl.artifact.ArtifactCache;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationArtifact;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLease;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 /**
  * Base class for cassandra mutation.
@@ -30,16 +31,20 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
     // //////////////////////////////////////////////////////////////////////////
     // Fields
     // //////////////////////////////////////////////////////////////////////////
-    private final static String VERSION_PATTERN = "M(\\d{12})_.*";
-
     private static Logger LOGGER = LoggerFactory.getLogger(AbstractCassandraMutation.class);
 
     private Session session; // session
 
-    private State<String> version;
+    private MutationVersion version;
 
     private boolean ignoreDB;
 
+    private MutationArtifact artifact;
+
+    private ArtifactCache artifactCache;
+
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithms.MD5;
+
     /**
      * Constructor for AbstractCassandraMutation.
      * 
@@ -72,19 +77,13 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
      * @return
      *         the state of a resource.
      */
-    protected final State<String> parseVersion(String resourceName) {
+    protected final MutationVersion parseVersion(String resourceName) {
         LOGGER.trace("Entering parseVersion(resourceName={})", resourceName);
 
-        String filename = Paths.get(resourceName).getFileName().toString();
-        Matcher matcher = Pattern.compile(VERSION_PATTERN).matcher(filename);
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("Resource name [" + filename + "] does not match with pattern [" + VERSION_PATTERN + "] for extracting version");
-        }
+        MutationVersion version = MutationVersion.fromResourceName(resourceName);
 
-        String version = matcher.group(1);
         LOGGER.trace("Leaving parseVersion() : {}", version);
-
-        return new SimpleState<>(version);
+        return version;
     }
 
     /**
@@ -95,6 +94,17 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
      */
     protected abstract void performMutation(Context context);
 
+    /**
+     * Override to act once the version record of the mutation is written.
+     * 
+     * @param context
+     *            - the context of the mutation.
+     * @param status
+     *            - the recorded status of the mutation.
+     */
+    protected void onVersionRecorded(Context context, String status) {
+    }
+
     /**
      * Get the state after mutation.
      * 
@@ -102,12 +112,21 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
      */
     @Override
     public State<String> getResultingState() {
-        LOGGER.trace("Entering getResultingState()");
+        return getVersion();
+    }
+
+    /**
+     * Get the version after mutation, parsed once from the resource name.
+     * 
+     * @return version
+     */
+    public MutationVersion getVersion() {
+        LOGGER.trace("Entering getVersion()");
 
         if (version == null)
             version = parseVersion(getResourceName());
 
-        LOGGER.trace("Leaving getResultingState() : {}", version);
+        LOGGER.trace("Leaving getVersion() : {}", version);
         return version;
     }
 
@@ -126,6 +145,19 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
 
         LOGGER.trace("Entering mutate(context={})", context);
 
+        // Check that this instance still holds the cluster-wide migration lease
+        MigrationLease lease = context instanceof CassandraContext
+                ? ((CassandraContext) context).getMigrationLease() : null;
+        if (lease != null) {
+            lease.checkFence();
+        }
+
+        // The plan was computed from a snapshot of the version table,
+        // re-validate against the database right before executing.
+        if (!isIgnoreDB() && VersionTableDao.forSession(session).isVersionIdPresent(getResultingState().getID())) {
+            throw new MutagenException("Mutation " + this + " was recorded in the database after the plan was computed");
+        }
+
         RuntimeException mutateException = null;
         // Perform the mutation
         boolean success = true;
@@ -149,8 +181,27 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
 
         // append version record
         if (!isIgnoreDB()) {
-            DBUtils.appendVersionRecord(session, version, getResourceName(), checksum, (int) execution_time,
-                    (success ? MutationStatus.SUCCESS.getValue() : MutationStatus.FAILED.getValue()));
+            if (lease != null) {
+                // only the holder of the lease records the mutation
+                try {
+                    lease.checkFence();
+                } catch (MutagenException e) {
+                    if (mutateException != null) {
+                        e.addSuppressed(mutateException);
+                    }
+                    throw e;
+                }
+            }
+            String status = success ? MutationStatus.SUCCESS.getValue() : MutationStatus.FAILED.getValue();
+            // written synchronously: the next runs rely on this record
+            VersionTableDao.forSession(session).appendVersionRecord(version, getResourceName(), checksum,
+                    (int) execution_time, status);
+            onVersionRecorded(context, status);
+
+            // keep a cached current state up to date
+            if (context.getSubject() instanceof CachingCassandraSubject) {
+                ((CachingCassandraSubject) context.getSubject()).onVersionRecorded(version, status);
+            }
         }
         if (mutateException != null) {
             throw mutateException;
@@ -162,9 +213,75 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
 
     /**
      * 
-     * @return the MD5 hash of the current mutation
+     * @return the checksum of the current mutation, computed with the checksum algorithm
      */
-    public abstract String getChecksum();
+    public String getChecksum() {
+        return getChecksum(getChecksumAlgorithm());
+    }
+
+    /**
+     * Get the checksum of the current mutation in the recorded format, see {@link ChecksumAlgorithms}.
+     * 
+     * @param algorithm
+     *            - the checksum algorithm.
+     * @return the checksum.
+     */
+    public String getChecksum(ChecksumAlgorithm algorithm) {
+        return getArtifact().getChecksum(algorithm);
+    }
+
+    /**
+     * Check a recorded checksum with the algorithm which computed it.
+     * 
+     * @param recordedChecksum
+     *            - the recorded checksum.
+     * @return true if the current mutation has this checksum.
+     */
+    public boolean isChecksumCorrect(String recordedChecksum) {
+        return recordedChecksum != null
+                && recordedChecksum.equals(getChecksum(ChecksumAlgorithms.forChecksum(recordedChecksum)));
+    }
+
+    /**
+     * Get the contents of the mutation, loaded once.
+     * 
+     * @return the artifact of the mutation.
+     */
+    public final synchronized MutationArtifact getArtifact() {
+        if (artifact == null) {
+            LOGGER.trace("Loading artifact of {}", getResourceName());
+            try {
+                artifact = loadArtifact();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to load " + getResourceName(), e);
+            }
+        }
+        return artifact;
+    }
+
+    /**
+     * @return the cache of the artifacts, or null.
+     */
+    public ArtifactCache getArtifactCache() {
+        return artifactCache;
+    }
+
+    /**
+     * Set the cache where the checksums and the statements of the mutation are looked for before reading it.
+     * 
+     * @param artifactCache
+     *            - the cache of the artifacts, or null.
+     */
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+    /**
+     * Override to load the contents of the mutation.
+     * 
+     * @return the artifact of the mutation.
+     */
+    protected abstract MutationArtifact loadArtifact() throws IOException;
 
     /**
      * Generate the MD5 hash for a key.
@@ -175,23 +292,17 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
      *         the MD5 hash for the key.
      */
     public static byte[] md5(InputStream inputStream) {
-        MessageDigest algorithm;
-        try {
-            algorithm = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException ex) {
-            throw new RuntimeException(ex);
-        }
-
-
-        DigestInputStream digestInputStream = new DigestInputStream(inputStream, algorithm);
+        Hasher hasher = ChecksumAlgorithms.MD5.newHasher();
+        byte[] chunk = new byte[8192];
         try {
-            while (digestInputStream.read() != -1){}
+            int read;
+            while ((read = inputStream.read(chunk)) != -1) {
+                hasher.putBytes(chunk, 0, read);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        //messageDigest
-        return algorithm.digest();
+        return hasher.hash().asBytes();
     }
 
     /**
@@ -241,6 +352,17 @@ public abstract class AbstractCassandraMutation implements Mutation<String> {
         this.session = session;
     }
 
+    /**
+     * @return the algorithm of the checksums recorded for this mutation.
+     */
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
     public boolean isIgnoreDB() {
         return ignoreDB;
     }
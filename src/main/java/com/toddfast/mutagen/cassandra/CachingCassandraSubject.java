@@ -0,0 +1,98 @@
+package com.toddfast.mutagen.cassandra;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Session;
+import com.toddfast.mutagen.State;
+
+/**
+ * A {@link CassandraSubject} which reads the current state once and then
+ * keeps it up to date in-process as version records are appended.
+ * It counts the cache hits and misses.
+ */
+public class CachingCassandraSubject extends CassandraSubject {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CachingCassandraSubject.class);
+
+    private MutationVersion currentState;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * Constructor for CachingCassandraSubject.
+     * 
+     * @param session
+     *            the session to execute cql statements.
+     */
+    public CachingCassandraSubject(Session session) {
+        super(session);
+    }
+
+    @Override
+    public synchronized State<String> getCurrentState() {
+        if (currentState == null) {
+            misses++;
+            currentState = MutationVersion.of(super.getCurrentState());
+            LOGGER.trace("Current state loaded from database : {}", currentState.getID());
+        } else {
+            hits++;
+        }
+        return currentState;
+    }
+
+    /**
+     * Set the current state, for example from a snapshot of the table Version already read.
+     * 
+     * @param version
+     *            - the current version.
+     */
+    public synchronized void setCurrentState(String version) {
+        currentState = MutationVersion.valueOf(version);
+    }
+
+    /**
+     * Set the current state, for example from a snapshot of the table Version already read.
+     * 
+     * @param version
+     *            - the current version.
+     */
+    public synchronized void setCurrentState(MutationVersion version) {
+        currentState = version;
+    }
+
+    /**
+     * Update the current state after a version record has been appended.
+     * 
+     * @param version
+     *            - the version of the appended record.
+     * @param status
+     *            - the status of the appended record.
+     */
+    public synchronized void onVersionRecorded(String version, String status) {
+        if (currentState == null || MutationStatus.FAILED.getValue().equals(status)) {
+            return;
+        }
+        MutationVersion recorded = MutationVersion.valueOf(version);
+        if (recorded.longValue() > currentState.longValue()) {
+            currentState = recorded;
+        }
+    }
+
+    /**
+     * Forget the current state, the next call reads the database again.
+     */
+    public synchronized void invalidate() {
+        currentState = null;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -36,10 +36,10 @@ public class CassandraCoordinator implements Coordinator<String> {
     public boolean accept(Subject<String> subject, State<String> targetState) {
         LOGGER.trace("Entering  accept(subject={}, targetState={})", subject, targetState);
 
-        State<String> currentState = subject.getCurrentState();
+        MutationVersion currentVersion = MutationVersion.of(subject.getCurrentState());
 
         // accept if the target state is superior to the current one.
-        boolean isAccepted = targetState.getID().compareTo(currentState.getID()) > 0;
+        boolean isAccepted = MutationVersion.of(targetState).longValue() > currentVersion.longValue();
 
         LOGGER.trace("Leaving  accept() : {}", isAccepted);
 
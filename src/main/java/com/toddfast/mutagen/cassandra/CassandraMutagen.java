@@ -1,12 +1,19 @@
 package com.toddfast.mutagen.cassandra;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
 import com.datastax.driver.core.Session;
 import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
 import com.toddfast.mutagen.cassandra.impl.info.MigrationInfoService;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLockMode;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableLayout;
+import com.toddfast.mutagen.cassandra.utils.LoadResources;
 
 /**
  * An interface that runs the cassandra migration tasks.
@@ -18,12 +25,42 @@ public abstract class CassandraMutagen {
 
     private List<String> resources;
 
+    private List<MutationResource> mutationResources;
+
     private String baselineVersion;
 
     private String location;
 
     private String resourceScannerPatternFilter = ".*";
 
+    private int versionWriteWindow = 32;
+
+    private int baselineParallelism = 1;
+
+    private int statementParallelism = 1;
+
+    private boolean groupSchemaChanges;
+
+    private int bulkInsertBatchSize;
+
+    private int bulkInsertWindow = 16;
+
+    private boolean checkpointStatements;
+
+    private String sstableDirectory;
+
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithms.MD5;
+
+    private VersionTableLayout versionTableLayout = VersionTableLayout.LEGACY;
+
+    private MigrationLockMode migrationLockMode = MigrationLockMode.NONE;
+
+    private int migrationLeaseTtlSeconds = 60;
+
+    private int migrationLeaseWaitSeconds = 600;
+
+    private String artifactCacheFile;
+
     public CassandraMutagen(Session session) {
         this.setSession(session);
         this.setLocation("mutations");
@@ -127,6 +164,275 @@ public abstract class CassandraMutagen {
         this.resourceScannerPatternFilter = resourceScannerPatternFilter;
     }
 
+    /**
+     * getter for versionWriteWindow.
+     * 
+     * @return the maximum number of baseline records written asynchronously, 0 to write them synchronously.
+     */
+    public int getVersionWriteWindow() {
+        return versionWriteWindow;
+    }
+
+    /**
+     * setter for versionWriteWindow.
+     * 
+     * @param versionWriteWindow
+     *            - the maximum number of baseline records written asynchronously, 0 to write them synchronously.
+     */
+    public void setVersionWriteWindow(int versionWriteWindow) {
+        this.versionWriteWindow = versionWriteWindow;
+    }
+
+    /**
+     * getter for baselineParallelism.
+     * 
+     * @return the number of threads computing checksums during baseline, 1 for a serial baseline.
+     */
+    public int getBaselineParallelism() {
+        return baselineParallelism;
+    }
+
+    /**
+     * setter for baselineParallelism.
+     * 
+     * @param baselineParallelism
+     *            - the number of threads computing checksums during baseline, 1 for a serial baseline.
+     */
+    public void setBaselineParallelism(int baselineParallelism) {
+        this.baselineParallelism = baselineParallelism;
+    }
+
+    /**
+     * getter for statementParallelism.
+     * 
+     * @return the maximum number of statements of a CQL mutation in flight, 1 to execute them one by one.
+     */
+    public int getStatementParallelism() {
+        return statementParallelism;
+    }
+
+    /**
+     * setter for statementParallelism.
+     * 
+     * @param statementParallelism
+     *            - the maximum number of statements of a CQL mutation in flight, 1 to execute them one by one.
+     */
+    public void setStatementParallelism(int statementParallelism) {
+        this.statementParallelism = statementParallelism;
+    }
+
+    /**
+     * getter for groupSchemaChanges.
+     * 
+     * @return true to wait for schema agreement once per group of independent DDL statements.
+     */
+    public boolean isGroupSchemaChanges() {
+        return groupSchemaChanges;
+    }
+
+    /**
+     * setter for groupSchemaChanges.
+     * 
+     * @param groupSchemaChanges
+     *            - true to wait for schema agreement once per group of independent DDL statements.
+     */
+    public void setGroupSchemaChanges(boolean groupSchemaChanges) {
+        this.groupSchemaChanges = groupSchemaChanges;
+    }
+
+    /**
+     * getter for bulkInsertBatchSize.
+     * 
+     * @return the maximum number of rows of a batch of bulk inserts, 0 to execute the inserts one by one.
+     */
+    public int getBulkInsertBatchSize() {
+        return bulkInsertBatchSize;
+    }
+
+    /**
+     * setter for bulkInsertBatchSize.
+     * 
+     * @param bulkInsertBatchSize
+     *            - the maximum number of rows of a batch of bulk inserts, 0 to execute the inserts one by one.
+     */
+    public void setBulkInsertBatchSize(int bulkInsertBatchSize) {
+        this.bulkInsertBatchSize = bulkInsertBatchSize;
+    }
+
+    /**
+     * getter for bulkInsertWindow.
+     * 
+     * @return the maximum number of batches of bulk inserts in flight.
+     */
+    public int getBulkInsertWindow() {
+        return bulkInsertWindow;
+    }
+
+    /**
+     * setter for bulkInsertWindow.
+     * 
+     * @param bulkInsertWindow
+     *            - the maximum number of batches of bulk inserts in flight.
+     */
+    public void setBulkInsertWindow(int bulkInsertWindow) {
+        this.bulkInsertWindow = bulkInsertWindow;
+    }
+
+    /**
+     * getter for checkpointStatements.
+     * 
+     * @return true to record the executed statements of the CQL mutations, so a failed mutation resumes after them.
+     */
+    public boolean isCheckpointStatements() {
+        return checkpointStatements;
+    }
+
+    /**
+     * setter for checkpointStatements.
+     * 
+     * @param checkpointStatements
+     *            - true to record the executed statements of the CQL mutations, so a failed mutation resumes after
+     *            them.
+     */
+    public void setCheckpointStatements(boolean checkpointStatements) {
+        this.checkpointStatements = checkpointStatements;
+    }
+
+    /**
+     * getter for sstableDirectory.
+     * 
+     * @return the directory where the CSV and row source mutations write SSTables to stream them, or null to
+     *         insert their rows through CQL.
+     */
+    public String getSSTableDirectory() {
+        return sstableDirectory;
+    }
+
+    /**
+     * setter for sstableDirectory. Writing SSTables needs cassandra-all in the classpath.
+     * 
+     * @param sstableDirectory
+     *            - the directory where the CSV and row source mutations write SSTables to stream them, or null to
+     *            insert their rows through CQL.
+     */
+    public void setSSTableDirectory(String sstableDirectory) {
+        this.sstableDirectory = sstableDirectory;
+    }
+
+    /**
+     * getter for checksumAlgorithm.
+     * 
+     * @return the algorithm of the checksums recorded for the mutations.
+     */
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * setter for checksumAlgorithm.
+     * 
+     * @param checksumAlgorithm
+     *            - the algorithm of the checksums recorded for the mutations.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * getter for versionTableLayout.
+     * 
+     * @return the layout of the table Version.
+     */
+    public VersionTableLayout getVersionTableLayout() {
+        return versionTableLayout;
+    }
+
+    /**
+     * setter for versionTableLayout.
+     * 
+     * @param versionTableLayout
+     *            - the layout of the table Version, the legacy table is copied once into the clustered one.
+     */
+    public void setVersionTableLayout(VersionTableLayout versionTableLayout) {
+        this.versionTableLayout = versionTableLayout;
+    }
+
+    /**
+     * getter for migrationLockMode.
+     * 
+     * @return what to do when another instance of the cluster holds the migration lease.
+     */
+    public MigrationLockMode getMigrationLockMode() {
+        return migrationLockMode;
+    }
+
+    /**
+     * setter for migrationLockMode.
+     * 
+     * @param migrationLockMode
+     *            - what to do when another instance of the cluster holds the migration lease.
+     */
+    public void setMigrationLockMode(MigrationLockMode migrationLockMode) {
+        this.migrationLockMode = migrationLockMode;
+    }
+
+    /**
+     * getter for migrationLeaseTtlSeconds.
+     * 
+     * @return the time to live of the migration lease, renewed while migrating.
+     */
+    public int getMigrationLeaseTtlSeconds() {
+        return migrationLeaseTtlSeconds;
+    }
+
+    /**
+     * setter for migrationLeaseTtlSeconds.
+     * 
+     * @param migrationLeaseTtlSeconds
+     *            - the time to live of the migration lease, renewed while migrating.
+     */
+    public void setMigrationLeaseTtlSeconds(int migrationLeaseTtlSeconds) {
+        this.migrationLeaseTtlSeconds = migrationLeaseTtlSeconds;
+    }
+
+    /**
+     * getter for migrationLeaseWaitSeconds.
+     * 
+     * @return the maximum time to wait for the migration lease.
+     */
+    public int getMigrationLeaseWaitSeconds() {
+        return migrationLeaseWaitSeconds;
+    }
+
+    /**
+     * setter for migrationLeaseWaitSeconds.
+     * 
+     * @param migrationLeaseWaitSeconds
+     *            - the maximum time to wait for the migration lease.
+     */
+    public void setMigrationLeaseWaitSeconds(int migrationLeaseWaitSeconds) {
+        this.migrationLeaseWaitSeconds = migrationLeaseWaitSeconds;
+    }
+
+    /**
+     * getter for artifactCacheFile.
+     * 
+     * @return the file caching the checksums and the statements of the mutations across runs, or null.
+     */
+    public String getArtifactCacheFile() {
+        return artifactCacheFile;
+    }
+
+    /**
+     * setter for artifactCacheFile.
+     * 
+     * @param artifactCacheFile
+     *            - the file caching the checksums and the statements of the mutations across runs, or null.
+     */
+    public void setArtifactCacheFile(String artifactCacheFile) {
+        this.artifactCacheFile = artifactCacheFile;
+    }
+
     /**
      * getter for resources.
      * 
@@ -144,6 +450,34 @@ public abstract class CassandraMutagen {
      */
     public void setResources(List<String> resources) {
         this.resources = resources;
+        this.mutationResources = null;
+    }
+
+    /**
+     * getter for the mutation resources, created once per resource.
+     * 
+     * @return mutation resource list, in the order of resources.
+     */
+    public List<MutationResource> getMutationResources() {
+        if (mutationResources == null && resources != null) {
+            mutationResources = LoadResources.toMutationResources(resources);
+        }
+        return mutationResources;
+    }
+
+    /**
+     * setter for the mutation resources.
+     * 
+     * @param mutationResources
+     *            - mutation resource list, the resources are their names.
+     */
+    public void setMutationResources(List<MutationResource> mutationResources) {
+        List<String> resources = new ArrayList<>(mutationResources.size());
+        for (MutationResource mutationResource : mutationResources) {
+            resources.add(mutationResource.getName());
+        }
+        this.resources = resources;
+        this.mutationResources = mutationResources;
     }
 
     /**
@@ -174,11 +508,26 @@ public abstract class CassandraMutagen {
         return location;
     }
 
+    /**
+     * getter for the locations, when location is a comma-separated list.
+     * 
+     * @return locations.
+     */
+    public List<String> getLocations() {
+        List<String> locations = new ArrayList<>();
+        for (String path : location.split(",")) {
+            if (!path.trim().isEmpty()) {
+                locations.add(path.trim());
+            }
+        }
+        return locations;
+    }
+
     /**
      * setter for location.
      * 
      * @param location
-     *            - resource location.
+     *            - resource location, or a comma-separated list of resource locations.
      */
     public void setLocation(String location) {
         this.location = location;
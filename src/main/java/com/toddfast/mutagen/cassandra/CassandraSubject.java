@@ -3,8 +3,7 @@ package com.toddfast.mutagen.cassandra;
 import com.datastax.driver.core.Session;
 import com.toddfast.mutagen.State;
 import com.toddfast.mutagen.Subject;
-import com.toddfast.mutagen.basic.SimpleState;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 /**
  * Cassandra subject represents the table Version.
@@ -32,7 +31,7 @@ public class CassandraSubject implements Subject<String> {
 
     @Override
     public State<String> getCurrentState() {
-        String current = DBUtils.getCurrentState(session);
-        return new SimpleState<>(current);
+        String current = VersionTableDao.forSession(session).getCurrentState();
+        return MutationVersion.valueOf(current);
     }
 }
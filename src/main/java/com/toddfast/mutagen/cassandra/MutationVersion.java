@@ -0,0 +1,185 @@
+package com.toddfast.mutagen.cassandra;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.toddfast.mutagen.State;
+
+/**
+ * The version of a mutation, the datetime of its resource name held in a long:<br>
+ * M<DATETIME>_<Camel case title>_<ISSUE>.cqlsh.txt<br>
+ * M<DATETIME>_<Camel case title>_<ISSUE>.csv<br>
+ * M<DATETIME>_<Camel case title>_<ISSUE>.java<br>
+ * The id of the state is the 12 digits datetime recorded in the versionid column, so versions are ordered the same
+ * way as numbers and as text.
+ */
+public final class MutationVersion implements State<String>, Comparable<MutationVersion> {
+
+    /**
+     * The pattern of the resource names, the version is the first group.
+     */
+    public static final String RESOURCE_NAME_PATTERN = "M(\\d{12})_.*";
+
+    private static final Pattern PATTERN = Pattern.compile(RESOURCE_NAME_PATTERN);
+
+    private static final int DIGITS = 12;
+
+    /**
+     * The version of a schema without mutation.
+     */
+    public static final MutationVersion NONE = new MutationVersion(0);
+
+    private final long value;
+
+    private String id;
+
+    private MutationVersion(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Get the version of a long.
+     *
+     * @param value
+     *            - the version, at most 12 digits.
+     * @return the version.
+     */
+    public static MutationVersion valueOf(long value) {
+        if (value < 0 || value > 999999999999L) {
+            throw new IllegalArgumentException("Version [" + value + "] is not a 12 digits version");
+        }
+        return new MutationVersion(value);
+    }
+
+    /**
+     * Get the version of a version id.
+     *
+     * @param id
+     *            - the 12 digits version id, as recorded in the versionid column.
+     * @return the version.
+     */
+    public static MutationVersion valueOf(String id) {
+        long value = parseId(id);
+        if (value == -1) {
+            throw new IllegalArgumentException("Version [" + id + "] is not a 12 digits version");
+        }
+        MutationVersion version = new MutationVersion(value);
+        version.id = id;
+        return version;
+    }
+
+    /**
+     * Get the version of a state.
+     *
+     * @param state
+     *            - a state, whose id is a 12 digits version id.
+     * @return the version.
+     */
+    public static MutationVersion of(State<String> state) {
+        if (state instanceof MutationVersion) {
+            return (MutationVersion) state;
+        }
+        return valueOf(state.getID());
+    }
+
+    /**
+     * Get the version of a resource from its file name.
+     *
+     * @param resourceName
+     *            - the name of the resource.
+     * @return the version.
+     */
+    public static MutationVersion fromResourceName(String resourceName) {
+        long value = parseResourceName(resourceName);
+        if (value == -1) {
+            throw new IllegalArgumentException("Resource name [" + getFileName(resourceName)
+                    + "] does not match with pattern [" + RESOURCE_NAME_PATTERN + "] for extracting version");
+        }
+        return new MutationVersion(value);
+    }
+
+    /**
+     * Parse the version of a resource from its file name.
+     *
+     * @param resourceName
+     *            - the name of the resource.
+     * @return the version, or -1 if the file name does not match with the pattern.
+     */
+    public static long parseResourceName(String resourceName) {
+        String filename = getFileName(resourceName);
+        Matcher matcher = PATTERN.matcher(filename);
+        if (!matcher.matches()) {
+            return -1;
+        }
+        return parseDigits(filename, matcher.start(1));
+    }
+
+    /**
+     * Parse a version id.
+     *
+     * @param id
+     *            - the version id.
+     * @return the version, or -1 if the id is not made of 12 digits.
+     */
+    public static long parseId(String id) {
+        if (id == null || id.length() != DIGITS) {
+            return -1;
+        }
+        return parseDigits(id, 0);
+    }
+
+    private static long parseDigits(String s, int start) {
+        long value = 0;
+        for (int i = start; i < start + DIGITS; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static String getFileName(String resourceName) {
+        int index = Math.max(resourceName.lastIndexOf('/'), resourceName.lastIndexOf('\\'));
+        return resourceName.substring(index + 1);
+    }
+
+    /**
+     * @return the version as a long.
+     */
+    public long longValue() {
+        return value;
+    }
+
+    /**
+     * @return the 12 digits version id.
+     */
+    @Override
+    public String getID() {
+        if (id == null) {
+            id = String.format("%012d", value);
+        }
+        return id;
+    }
+
+    @Override
+    public int compareTo(MutationVersion other) {
+        return Long.compare(value, other.value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MutationVersion && ((MutationVersion) obj).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (value ^ (value >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return getID();
+    }
+}
@@ -93,11 +93,24 @@ public class CommandLine {
     }
 
     /**
-     * Add the location in the classpath.
+     * Add the locations in the classpath.
      */
     public void loadLocationToClasspath(Properties properties) {
-        String location = properties.getProperty("location");
-        if (location == null || !location.contains("/")) {
+        String locations = properties.getProperty("location");
+        if (locations == null) {
+            addToClassPath(".");
+            return;
+        }
+        for (String location : locations.split(",")) {
+            loadLocationToClasspath(location.trim());
+        }
+    }
+
+    /**
+     * Add a location in the classpath.
+     */
+    private void loadLocationToClasspath(String location) {
+        if (!location.contains("/")) {
             addToClassPath(".");
             return;
         }
@@ -347,7 +360,19 @@ public class CommandLine {
         System.out.println("Options (Format: -key=value)");
         System.out.println("=======");
         System.out.println("baselineVersion        : Version to tag schema with when executing baseline");
-        System.out.println("location               : Classpath locations to sacn recursively for migrations");
+        System.out.println("location               : Comma-separated classpath locations to sacn recursively for migrations");
+        System.out.println("versionWriteWindow     : Baseline records written asynchronously at once (0 to write synchronously)");
+        System.out.println("baselineParallelism    : Threads computing checksums when executing baseline (1 for a serial baseline)");
+        System.out.println("statementParallelism   : Statements of a CQL mutation in flight, independent ones run concurrently");
+        System.out.println("groupSchemaChanges     : true to wait for schema agreement once per group of independent DDL");
+        System.out.println("bulkInsertBatchSize    : Rows per unlogged batch of prepared literal INSERTs (0 to execute them one by one)");
+        System.out.println("bulkInsertWindow       : Batches of bulk inserts in flight at once");
+        System.out.println("checkpointStatements   : true to record executed statements so a failed CQL mutation resumes after them");
+        System.out.println("sstableDirectory       : Directory where CSV and row source mutations write SSTables to stream them (needs cassandra-all)");
+        System.out.println("checksumAlgorithm      : Algorithm of the recorded checksums, md5, crc32c or murmur3_128");
+        System.out.println("versionTableLayout     : Layout of the version table, legacy or clustered");
+        System.out.println("migrationLockMode      : none, wait or skip when another instance holds the migration lease");
+        System.out.println("artifactCacheFile      : File caching checksums and parsed statements of the migrations between runs");
         System.out.println("");
         System.out.println("Add -I to print info output");
         System.out.println("Add -X to print debug output");
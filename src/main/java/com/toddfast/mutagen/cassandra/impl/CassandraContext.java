@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import com.toddfast.mutagen.Coordinator;
 import com.toddfast.mutagen.Mutation;
 import com.toddfast.mutagen.Subject;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLease;
 
 /**
  * Implements the basic contract of {@link Mutation.Context}. Logs to SLF4J.
@@ -92,6 +93,97 @@ public class CassandraContext implements Mutation.Context {
         logger.error(message, parameters);
     }
 
+    /**
+     * a getter method to get the cluster-wide migration lease.
+     *
+     * @return the lease, or null if the migrations are not guarded by a lease
+     */
+    public MigrationLease getMigrationLease() {
+        return migrationLease;
+    }
+
+    public void setMigrationLease(MigrationLease migrationLease) {
+        this.migrationLease = migrationLease;
+    }
+
+    /**
+     * a getter method to get the maximum number of statements of a CQL mutation in flight.
+     *
+     * @return the parallelism, 1 to execute the statements one by one
+     */
+    public int getStatementParallelism() {
+        return statementParallelism;
+    }
+
+    public void setStatementParallelism(int statementParallelism) {
+        this.statementParallelism = statementParallelism;
+    }
+
+    /**
+     * a getter method to know if the schema agreement is checked once per group of DDL statements.
+     *
+     * @return true to group the independent DDL statements of a CQL mutation
+     */
+    public boolean isGroupSchemaChanges() {
+        return groupSchemaChanges;
+    }
+
+    public void setGroupSchemaChanges(boolean groupSchemaChanges) {
+        this.groupSchemaChanges = groupSchemaChanges;
+    }
+
+    /**
+     * a getter method to get the maximum number of rows of a batch of bulk inserts.
+     *
+     * @return the batch size, 0 to execute the inserts one by one
+     */
+    public int getBulkInsertBatchSize() {
+        return bulkInsertBatchSize;
+    }
+
+    public void setBulkInsertBatchSize(int bulkInsertBatchSize) {
+        this.bulkInsertBatchSize = bulkInsertBatchSize;
+    }
+
+    /**
+     * a getter method to get the maximum number of batches of bulk inserts in flight.
+     *
+     * @return the window
+     */
+    public int getBulkInsertWindow() {
+        return bulkInsertWindow;
+    }
+
+    public void setBulkInsertWindow(int bulkInsertWindow) {
+        this.bulkInsertWindow = bulkInsertWindow;
+    }
+
+    /**
+     * a getter method to know if the executed statements of a CQL mutation are recorded to resume it after a failure.
+     *
+     * @return true to record a checkpoint per statement
+     */
+    public boolean isCheckpointStatements() {
+        return checkpointStatements;
+    }
+
+    public void setCheckpointStatements(boolean checkpointStatements) {
+        this.checkpointStatements = checkpointStatements;
+    }
+
+    /**
+     * a getter method to get the directory where the CSV and row source mutations write SSTables to stream them.
+     *
+     * @return the directory, or null to insert the rows through CQL
+     */
+    public String getSSTableDirectory() {
+        return sstableDirectory;
+    }
+
+    public void setSSTableDirectory(String sstableDirectory) {
+        this.sstableDirectory = sstableDirectory;
+    }
+
     // //////////////////////////////////////////////////////////////////////////
     // Fields
     // //////////////////////////////////////////////////////////////////////////
@@ -101,4 +193,18 @@ public class CassandraContext implements Mutation.Context {
     private Coordinator<?> coordinator;
 
     private Logger logger;
+
+    private MigrationLease migrationLease;
+
+    private int statementParallelism = 1;
+
+    private boolean groupSchemaChanges;
+
+    private int bulkInsertBatchSize;
+
+    private int bulkInsertWindow = 16;
+
+    private boolean checkpointStatements;
+
+    private String sstableDirectory;
 }
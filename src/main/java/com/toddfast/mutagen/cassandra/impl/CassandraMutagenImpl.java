@@ -1,6 +1,8 @@
 package com.toddfast.mutagen.cassandra.impl;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.Lock;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -10,13 +12,24 @@ import com.datastax.driver.core.Session;
 import com.toddfast.mutagen.MutagenException;
 import com.toddfast.mutagen.Plan;
 import com.toddfast.mutagen.Plan.Result;
+import com.toddfast.mutagen.State;
+import com.toddfast.mutagen.cassandra.CachingCassandraSubject;
 import com.toddfast.mutagen.cassandra.CassandraCoordinator;
 import com.toddfast.mutagen.cassandra.CassandraMutagen;
-import com.toddfast.mutagen.cassandra.CassandraSubject;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.artifact.ArtifactCache;
 import com.toddfast.mutagen.cassandra.impl.baseline.BaseLine;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
 import com.toddfast.mutagen.cassandra.impl.info.MigrationInfoService;
 import com.toddfast.mutagen.cassandra.impl.info.MigrationInfoServiceImpl;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.impl.lock.KeyspaceLocks;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLease;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLockMode;
+import com.toddfast.mutagen.cassandra.impl.lock.SkippedMigrationResult;
+import com.toddfast.mutagen.cassandra.impl.version.ClusteredVersionTableDao;
+import com.toddfast.mutagen.cassandra.impl.version.VersionFingerprint;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableLayout;
 import com.toddfast.mutagen.cassandra.utils.LoadResources;
 
 /**
@@ -30,18 +43,25 @@ public class CassandraMutagenImpl extends CassandraMutagen {
 
     private MigrationInfoService migrationInfoService;
 
+    private MigrationLease migrationLease;
+
+    // owner of the lease when the last migration was skipped
+    private String skippedLeaseHolder;
+
+    private ArtifactCache artifactCache;
+
     public CassandraMutagenImpl(Session session) {
         super(session);
     }
 
     /**
-     * Loads the resources.
+     * Loads the resources of all the locations.
      * 
      */
     public void initialize()
             throws IOException {
         LOGGER.debug("Initialising with resourcePath {}", getLocation());
-        setResources(LoadResources.loadResources(this, getLocation(), getResourceScannerPatternFilter()));
+        setMutationResources(LoadResources.loadMutationResources(this, getLocations(), getResourceScannerPatternFilter()));
 
     }
 
@@ -65,6 +85,76 @@ public class CassandraMutagenImpl extends CassandraMutagen {
         if (resourceScannerPatternFilter != null) {
             setResourceScannerPatternFilter(resourceScannerPatternFilter);
         }
+        // get versionWriteWindow
+        String versionWriteWindow = properties.getProperty("versionWriteWindow");
+        if (versionWriteWindow != null) {
+            setVersionWriteWindow(Integer.parseInt(versionWriteWindow));
+        }
+        // get baselineParallelism
+        String baselineParallelism = properties.getProperty("baselineParallelism");
+        if (baselineParallelism != null) {
+            setBaselineParallelism(Integer.parseInt(baselineParallelism));
+        }
+        // get versionTableLayout
+        String versionTableLayout = properties.getProperty("versionTableLayout");
+        if (versionTableLayout != null) {
+            setVersionTableLayout(VersionTableLayout.fromName(versionTableLayout));
+        }
+        // get statementParallelism
+        String statementParallelism = properties.getProperty("statementParallelism");
+        if (statementParallelism != null) {
+            setStatementParallelism(Integer.parseInt(statementParallelism));
+        }
+        // get groupSchemaChanges
+        String groupSchemaChanges = properties.getProperty("groupSchemaChanges");
+        if (groupSchemaChanges != null) {
+            setGroupSchemaChanges(Boolean.parseBoolean(groupSchemaChanges));
+        }
+        // get bulkInsertBatchSize
+        String bulkInsertBatchSize = properties.getProperty("bulkInsertBatchSize");
+        if (bulkInsertBatchSize != null) {
+            setBulkInsertBatchSize(Integer.parseInt(bulkInsertBatchSize));
+        }
+        // get bulkInsertWindow
+        String bulkInsertWindow = properties.getProperty("bulkInsertWindow");
+        if (bulkInsertWindow != null) {
+            setBulkInsertWindow(Integer.parseInt(bulkInsertWindow));
+        }
+        // get checkpointStatements
+        String checkpointStatements = properties.getProperty("checkpointStatements");
+        if (checkpointStatements != null) {
+            setCheckpointStatements(Boolean.parseBoolean(checkpointStatements));
+        }
+        // get sstableDirectory
+        String sstableDirectory = properties.getProperty("sstableDirectory");
+        if (sstableDirectory != null) {
+            setSSTableDirectory(sstableDirectory);
+        }
+        // get checksumAlgorithm
+        String checksumAlgorithm = properties.getProperty("checksumAlgorithm");
+        if (checksumAlgorithm != null) {
+            setChecksumAlgorithm(ChecksumAlgorithms.forName(checksumAlgorithm));
+        }
+        // get migrationLockMode
+        String migrationLockMode = properties.getProperty("migrationLockMode");
+        if (migrationLockMode != null) {
+            setMigrationLockMode(MigrationLockMode.fromName(migrationLockMode));
+        }
+        // get migrationLeaseTtlSeconds
+        String migrationLeaseTtlSeconds = properties.getProperty("migrationLeaseTtlSeconds");
+        if (migrationLeaseTtlSeconds != null) {
+            setMigrationLeaseTtlSeconds(Integer.parseInt(migrationLeaseTtlSeconds));
+        }
+        // get migrationLeaseWaitSeconds
+        String migrationLeaseWaitSeconds = properties.getProperty("migrationLeaseWaitSeconds");
+        if (migrationLeaseWaitSeconds != null) {
+            setMigrationLeaseWaitSeconds(Integer.parseInt(migrationLeaseWaitSeconds));
+        }
+        // get artifactCacheFile
+        String artifactCacheFile = properties.getProperty("artifactCacheFile");
+        if (artifactCacheFile != null) {
+            setArtifactCacheFile(artifactCacheFile);
+        }
     }
 
     /**
@@ -74,17 +164,123 @@ public class CassandraMutagenImpl extends CassandraMutagen {
      */
     public Plan<String> getMutationsPlan(boolean ignoreDB) {
         LOGGER.trace("Entering getMutationsPlan(session={})", getSession());
+        upgradeVersionTable();
         CassandraCoordinator coordinator = new CassandraCoordinator();
-        CassandraSubject subject = new CassandraSubject(getSession());
+        CachingCassandraSubject subject = new CachingCassandraSubject(getSession());
 
-        CassandraPlanner planner = new CassandraPlanner(getSession(), getResources());
+        CassandraPlanner planner = new CassandraPlanner(getSession(), getMutationResources());
         planner.setIgnoreDB(ignoreDB);
+        planner.setMigrationLease(migrationLease);
+        planner.setStatementParallelism(getStatementParallelism());
+        planner.setGroupSchemaChanges(isGroupSchemaChanges());
+        planner.setBulkInsertBatchSize(getBulkInsertBatchSize());
+        planner.setBulkInsertWindow(getBulkInsertWindow());
+        planner.setCheckpointStatements(isCheckpointStatements());
+        planner.setSSTableDirectory(getSSTableDirectory());
+        planner.setChecksumAlgorithm(getChecksumAlgorithm());
+        planner.setArtifactCache(getArtifactCache());
         Plan<String> plan = planner.getPlan(subject, coordinator);
+        LOGGER.debug("Current state cache after planning : {} hits, {} misses", subject.getHits(), subject.getMisses());
 
         LOGGER.trace("Leaving getMutationsPlan(session={})", getSession());
         return plan;
     }
 
+    /**
+     * Open the artifact cache file once, if one is configured.
+     * 
+     * @return the cache of the artifacts, or null.
+     */
+    private synchronized ArtifactCache getArtifactCache() {
+        if (getArtifactCacheFile() == null) {
+            artifactCache = null;
+        } else if (artifactCache == null || !artifactCache.getFile().equals(Paths.get(getArtifactCacheFile()))) {
+            artifactCache = ArtifactCache.open(Paths.get(getArtifactCacheFile()));
+        }
+        return artifactCache;
+    }
+
+    /**
+     * Save the artifacts computed during a run. A cache which can not be written is only logged,
+     * it is read again from the resources next time.
+     */
+    private synchronized void saveArtifactCache() {
+        if (artifactCache != null) {
+            try {
+                artifactCache.save();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to save artifact cache {}", artifactCache.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Create the table of the configured layout of the table Version, copying the legacy table once.
+     * The upgrade runs under the migration lease, acquired for the upgrade alone when it is not held.
+     */
+    private void upgradeVersionTable() {
+        if (getVersionTableLayout() != VersionTableLayout.CLUSTERED
+                || ClusteredVersionTableDao.isUpgraded(getSession())) {
+            return;
+        }
+        if (migrationLease != null) {
+            ClusteredVersionTableDao.upgrade(getSession());
+            return;
+        }
+        MigrationLease lease = new MigrationLease(getSession(), "migration", getMigrationLeaseTtlSeconds());
+        lease.acquire(getMigrationLeaseWaitSeconds() * 1000L);
+        try {
+            ClusteredVersionTableDao.upgrade(getSession());
+        } finally {
+            lease.release();
+        }
+    }
+
+    /**
+     * Acquire the cluster-wide migration lease of the keyspace, according to the migration lock mode.
+     * 
+     * @return false if the lease is held by another instance and the mode is skip.
+     */
+    private boolean acquireMigrationLease() {
+        if (getMigrationLockMode() == MigrationLockMode.NONE) {
+            return true;
+        }
+        MigrationLease lease = new MigrationLease(getSession(), "migration", getMigrationLeaseTtlSeconds());
+        if (getMigrationLockMode() == MigrationLockMode.SKIP) {
+            if (!lease.tryAcquire()) {
+                skippedLeaseHolder = lease.getHolder();
+                LOGGER.info("Migration lease held by {}, skipping migration", skippedLeaseHolder);
+                return false;
+            }
+        } else {
+            lease.acquire(getMigrationLeaseWaitSeconds() * 1000L);
+        }
+        migrationLease = lease;
+        return true;
+    }
+
+    /**
+     * Release the cluster-wide migration lease if it is held.
+     */
+    private void releaseMigrationLease() {
+        if (migrationLease != null) {
+            migrationLease.release();
+            migrationLease = null;
+        }
+    }
+
+    /**
+     * Read the current state from the fingerprint of the applied mutations, a single row,
+     * instead of reading the whole table Version.
+     * 
+     * @return the last applied version, or null if it is not known.
+     */
+    private State<String> getFingerprintState() {
+        VersionFingerprint fingerprint = VersionTableDao.forSession(getSession()).getFingerprint();
+        return fingerprint != null && fingerprint.getMutations() > 0
+                ? MutationVersion.valueOf(fingerprint.getMaxVersion()) : null;
+    }
+
     /**
      * Performs the automatic migration tasks.
      * 
@@ -96,11 +292,24 @@ public class CassandraMutagenImpl extends CassandraMutagen {
         LOGGER.trace("Entering mutate(session={})", getSession());
         Result<String> mutationsResult;
 
-        // Do this in a VM-wide critical section. External cluster-wide
-        // synchronization is going to have to happen in the coordinator.
-        synchronized (System.class) {
-            Plan<String> plan = getMutationsPlan(ignoreDB);
-            mutationsResult = plan.execute();
+        // Do this in a critical section of the keyspace in this VM. Cluster-wide
+        // synchronization happens with the migration lease.
+        Lock lock = KeyspaceLocks.forSession(getSession());
+        lock.lock();
+        try {
+            if (!acquireMigrationLease()) {
+                // another instance is migrating, the schema may not be up to date yet
+                return new SkippedMigrationResult(getFingerprintState(), skippedLeaseHolder);
+            }
+            try {
+                Plan<String> plan = getMutationsPlan(ignoreDB);
+                mutationsResult = plan.execute();
+            } finally {
+                releaseMigrationLease();
+                saveArtifactCache();
+            }
+        } finally {
+            lock.unlock();
         }
 
         LOGGER.trace("Leaving mutate()", mutationsResult);
@@ -138,7 +347,7 @@ public class CassandraMutagenImpl extends CassandraMutagen {
     public void clean() {
         System.out.println("Cleaning...");
 
-        DBUtils.dropSchemaVersionTable(getSession());
+        VersionTableDao.dropTables(getSession());
 
         System.out.println("Done");
 
@@ -151,7 +360,7 @@ public class CassandraMutagenImpl extends CassandraMutagen {
     public void repair() {
         System.out.println("Repairing...");
 
-        DBUtils.deleteFailedVersionRecord(getSession());
+        VersionTableDao.forSession(getSession()).deleteFailedVersionRecords();
 
         System.out.println("Done");
 
@@ -165,12 +374,25 @@ public class CassandraMutagenImpl extends CassandraMutagen {
 
         System.out.println("Baseline...");
 
-        synchronized (System.class) {
-            if (getBaselineVersion() != null) {
-                new BaseLine(this, getSession(), getBaselineVersion()).baseLine();
-            } else {
-                new BaseLine(this, getSession()).baseLine();
+        Lock lock = KeyspaceLocks.forSession(getSession());
+        lock.lock();
+        try {
+            if (!acquireMigrationLease()) {
+                throw new MutagenException("Migration lease held by another instance, can not baseline");
+            }
+            try {
+                upgradeVersionTable();
+                if (getBaselineVersion() != null) {
+                    new BaseLine(this, getSession(), getBaselineVersion()).baseLine();
+                } else {
+                    new BaseLine(this, getSession()).baseLine();
+                }
+            } finally {
+                releaseMigrationLease();
+                saveArtifactCache();
             }
+        } finally {
+            lock.unlock();
         }
         System.out.println("Done with baseline");
 
@@ -1,7 +1,5 @@
 package com.toddfast.mutagen.cassandra.impl;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -9,7 +7,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import com.google.common.base.Joiner;
+import com.toddfast.mutagen.cassandra.utils.LoadResources;
 import com.toddfast.mutagen.cassandra.utils.MutagenUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +20,16 @@ import com.toddfast.mutagen.Plan;
 import com.toddfast.mutagen.State;
 import com.toddfast.mutagen.Subject;
 import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.CachingCassandraSubject;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.artifact.ArtifactCache;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLease;
+import com.toddfast.mutagen.cassandra.impl.version.VersionFingerprint;
+import com.toddfast.mutagen.cassandra.impl.version.VersionSnapshot;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 /**
  * Generates cassandra migration plans using the initial list of mutations and
@@ -32,10 +39,26 @@ public class CassandraPlanner extends BasicPlanner<String> {
 
     private static Logger LOGGER = LoggerFactory.getLogger(CassandraPlanner.class);
 
-    private final static String FILENAME_PATTERN = "M\\d{12}_[\\w\\d\\-]+_[\\w\\d\\-]+\\.(class|cqlsh\\.txt)";
+    private final static String FILENAME_PATTERN = "M\\d{12}_[\\w\\d\\-]+_[\\w\\d\\-]+\\.(class|cqlsh\\.txt|csv)";
 
     private Session session;
 
+    private MigrationLease migrationLease;
+
+    private int statementParallelism = 1;
+
+    private boolean groupSchemaChanges;
+
+    private int bulkInsertBatchSize;
+
+    private int bulkInsertWindow = 16;
+
+    private boolean checkpointStatements;
+
+    private String sstableDirectory;
+
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithms.MD5;
+
     /**
      * Constructor for cassandraPlanner.
      * 
@@ -47,12 +70,26 @@ public class CassandraPlanner extends BasicPlanner<String> {
      */
     public CassandraPlanner(Session session,
             List<String> mutationResources) {
+        this(session, LoadResources.toMutationResources(mutationResources));
+    }
+
+    /**
+     * Constructor for cassandraPlanner.
+     * 
+     * @param session
+     *            the session to execute cql statements.
+     * @param mutationResources
+     *            script files to migrate.
+     * 
+     */
+    public CassandraPlanner(Session session,
+            Collection<MutationResource> mutationResources) {
         super(loadMutations(session, mutationResources), null);
         this.session = session;
     }
 
     /**
-     * A static method to load mutation for script file(.cqlsh.txt and .java).
+     * A static method to load mutation for script file(.cqlsh.txt, .csv and .java).
      * 
      * @param session
      *            the session to execute cql statements.
@@ -62,21 +99,30 @@ public class CassandraPlanner extends BasicPlanner<String> {
      *         list of mutation objects.
      */
     private static List<Mutation<String>> loadMutations(
-            Session session, Collection<String> resources) {
+            Session session, Collection<MutationResource> mutationResources) {
 
-        LOGGER.trace("Entering loadMutations(session={}, resources={})", session, resources);
+        LOGGER.trace("Entering loadMutations(session={}, resources={})", session, mutationResources);
 
         List<Mutation<String>> result = new ArrayList<>();
 
-        for (String resource : resources) {
+        List<String> resources = new ArrayList<>();
+        for (MutationResource mutationResource : mutationResources) {
+            resources.add(mutationResource.getName());
+        }
+
+        for (MutationResource mutationResource : mutationResources) {
+            String resource = mutationResource.getName();
 
             // Allow .sql files because some editors have syntax highlighting
             // for SQL but not CQL
             if (resource.endsWith(".cqlsh.txt") || resource.endsWith(".sql")) {
-                result.add(new CqlMutation(session, resource));
+                result.add(new CqlMutation(session, mutationResource));
             }
-            else if (resource.endsWith(".class")) {
-                result.add(loadMutationClass(session, resource));
+            else if (resource.endsWith(".csv")) {
+                result.add(new CsvMutation(session, mutationResource));
+            } else if (resource.endsWith(".class")) {
+                // the class is loaded only if the mutation is planned
+                result.add(new JavaMutationHandle(session, mutationResource));
             } else if (resource.endsWith(".java")) {
                 // ignore java file
                 if (!hasJavaFileAssociatedClassFile(resource, resources)) {
@@ -95,6 +141,7 @@ public class CassandraPlanner extends BasicPlanner<String> {
             }
         }
 
+        // already checked by LoadResources, but the resources may come from elsewhere
         checkForDuplicateRessourceState(result);
 
         LOGGER.trace("Leaving loadMutations() : {}", result);
@@ -115,6 +162,7 @@ public class CassandraPlanner extends BasicPlanner<String> {
 
     /**
      * Check if it exists two mutations which have the same state.
+     * The states are parsed from the resource names, no mutation is loaded.
      * 
      * @param mutations
      *            the list of mutations.
@@ -122,23 +170,15 @@ public class CassandraPlanner extends BasicPlanner<String> {
     private static void checkForDuplicateRessourceState(List<Mutation<String>> mutations) {
 
         LOGGER.trace("checking for duplicate resource states");
-        // store all states as string
-        List<String> states = new ArrayList<>();
-
+        Set<String> states = new HashSet<>();
+        List<String> duplicateResourceState = new ArrayList<>();
         for (Mutation<String> m : mutations) {
-            states.add(m.getResultingState().getID());
-        }
-
-        // create set to get duplicate state.
-        Set<String> set = new HashSet<>();
-        ArrayList<String> duplicateResourceState = new ArrayList<>();
-        for (String state : states) {
-            if (!set.add(state)) {
+            String state = m.getResultingState().getID();
+            if (!states.add(state)) {
                 duplicateResourceState.add(state);
             }
         }
 
-        // if sizes differ there's a duplicate
         if (duplicateResourceState.size() > 0)
             throw new MutagenException("Two migration scripts possess the same state" + duplicateResourceState);
 
@@ -146,7 +186,8 @@ public class CassandraPlanner extends BasicPlanner<String> {
 
     /**
      * validate if the script file is well named(
-     * M<DATETIME>_<Camel case title>_<ISSUE>.cqlsh.txt or
+     * M<DATETIME>_<Camel case title>_<ISSUE>.cqlsh.txt,
+     * M<DATETIME>_<Camel case title>_<ISSUE>.csv or
      * M<DATETIME>_<Camel case title>_<ISSUE>.java)
      */
     private static boolean validate(String resource) {
@@ -155,74 +196,146 @@ public class CassandraPlanner extends BasicPlanner<String> {
     }
 
     /**
-     * a static method to generate the mutation for script file end with .class
+     * generate mutation context to execute mutations.
      * 
      * @return
-     *         mutation for script file end with .class
+     *         mutation context
      */
-    private static Mutation<String> loadMutationClass(Session session, String resource) {
+    @Override
+    protected Mutation.Context createContext(Subject<String> subject,
+            Coordinator<String> coordinator) {
+        CassandraContext context = new CassandraContext(subject, coordinator);
+        context.setMigrationLease(migrationLease);
+        context.setStatementParallelism(statementParallelism);
+        context.setGroupSchemaChanges(groupSchemaChanges);
+        context.setBulkInsertBatchSize(bulkInsertBatchSize);
+        context.setBulkInsertWindow(bulkInsertWindow);
+        context.setCheckpointStatements(checkpointStatements);
+        context.setSSTableDirectory(sstableDirectory);
+        return context;
+    }
 
-        LOGGER.trace("Entering loadMutationClass(session={}, resource={})", session, resource);
+    /**
+     * @return the maximum number of statements of a CQL mutation in flight, 1 to execute them one by one.
+     */
+    public int getStatementParallelism() {
+        return statementParallelism;
+    }
 
-        assert resource.endsWith(".class") : "Class resource name \"" + resource + "\" should end with .class";
+    public void setStatementParallelism(int statementParallelism) {
+        this.statementParallelism = statementParallelism;
+    }
 
-        int index = resource.lastIndexOf(".class");
-        String className = Joiner.on('.').join(Paths.get(resource.substring(0, index)));
+    /**
+     * @return true to wait for schema agreement once per group of independent DDL statements.
+     */
+    public boolean isGroupSchemaChanges() {
+        return groupSchemaChanges;
+    }
 
-        // Load the class specified by the resource
-        Class<?> clazz;
-        try {
-            clazz = Class.forName(className);
-        } catch (ClassNotFoundException e) {
-            // Should never happen
-            throw new MutagenException("Could not load mutagen class \"" + resource + "\"", e);
-        }
+    public void setGroupSchemaChanges(boolean groupSchemaChanges) {
+        this.groupSchemaChanges = groupSchemaChanges;
+    }
 
-        // Instantiate the class
-        try {
-            Constructor<?> constructor;
-            Mutation<String> mutation;
-            try {
-                LOGGER.debug("Instanciating {}", clazz);
+    /**
+     * @return the maximum number of rows of a batch of bulk inserts, 0 to execute the inserts one by one.
+     */
+    public int getBulkInsertBatchSize() {
+        return bulkInsertBatchSize;
+    }
 
-                constructor = clazz.getConstructor();
-                mutation = (Mutation<String>) constructor.newInstance();
+    public void setBulkInsertBatchSize(int bulkInsertBatchSize) {
+        this.bulkInsertBatchSize = bulkInsertBatchSize;
+    }
 
-                LOGGER.debug("Setting session {} for {}", session, clazz);
-                // Assumption that the mutation must extend AbstractCassandraMutation, then set session
-                ((AbstractCassandraMutation) mutation).setSession(session);
+    /**
+     * @return the maximum number of batches of bulk inserts in flight.
+     */
+    public int getBulkInsertWindow() {
+        return bulkInsertWindow;
+    }
 
-            } catch (NoSuchMethodException e) {
-                throw new MutagenException("Could not find compatible " +
-                        "constructor for class \"" + className + "\"", e);
-            }
+    public void setBulkInsertWindow(int bulkInsertWindow) {
+        this.bulkInsertWindow = bulkInsertWindow;
+    }
 
-            LOGGER.trace("Leaving loadMutationClass() : {}", mutation);
+    /**
+     * @return true to record the executed statements of the CQL mutations, so a failed mutation resumes after them.
+     */
+    public boolean isCheckpointStatements() {
+        return checkpointStatements;
+    }
 
-            return mutation;
-        } catch (InstantiationException e) {
-            throw new MutagenException("Could not instantiate class \"" + className + "\"", e);
-        } catch (InvocationTargetException e) {
-            if (e.getTargetException() instanceof RuntimeException) {
-                throw (RuntimeException) e.getTargetException();
-            } else {
-                throw new MutagenException("Exception instantiating class \"" + className + "\"", e);
-            }
-        } catch (IllegalAccessException e) {
-            throw new MutagenException("Could not access constructor for " + "mutation class \"" + className + "\"", e);
+    public void setCheckpointStatements(boolean checkpointStatements) {
+        this.checkpointStatements = checkpointStatements;
+    }
+
+    /**
+     * @return the directory where the CSV and row source mutations write SSTables to stream them, or null.
+     */
+    public String getSSTableDirectory() {
+        return sstableDirectory;
+    }
+
+    public void setSSTableDirectory(String sstableDirectory) {
+        this.sstableDirectory = sstableDirectory;
+    }
+
+    /**
+     * Set the algorithm of the checksums recorded for the mutations.
+     * 
+     * @param checksumAlgorithm
+     *            - the checksum algorithm.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+        for (Mutation<String> mutation : getMutations()) {
+            ((AbstractCassandraMutation) mutation).setChecksumAlgorithm(checksumAlgorithm);
         }
     }
 
     /**
-     * generate mutation context to execute mutations.
+     * @return the cluster-wide migration lease checked before each mutation, or null.
+     */
+    public MigrationLease getMigrationLease() {
+        return migrationLease;
+    }
+
+    public void setMigrationLease(MigrationLease migrationLease) {
+        this.migrationLease = migrationLease;
+    }
+
+    /**
+     * Look for the checksums and the statements of the mutations in a cache before reading them.
      * 
-     * @return
-     *         mutation context
+     * @param artifactCache
+     *            - the cache of the artifacts, or null.
      */
-    @Override
-    protected Mutation.Context createContext(Subject<String> subject,
-            Coordinator<String> coordinator) {
-        return new CassandraContext(subject, coordinator);
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        for (Mutation<String> mutation : getMutations()) {
+            ((AbstractCassandraMutation) mutation).setArtifactCache(artifactCache);
+        }
+    }
+
+
+    /**
+     * Check if the fingerprint of the applied mutations is the one of all the mutations.
+     * 
+     * @param storedFingerprint
+     *            - the fingerprint of the applied mutations, or null.
+     * @return true if all the mutations were applied.
+     */
+    private boolean isUpToDate(VersionFingerprint storedFingerprint) {
+        if (storedFingerprint == null || storedFingerprint.getMutations() != getMutations().size()) {
+            return false;
+        }
+        ChecksumAlgorithm algorithm;
+        try {
+            algorithm = ChecksumAlgorithms.forName(storedFingerprint.getAlgorithm());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return storedFingerprint.equals(VersionFingerprint.of(getMutations(), algorithm));
     }
 
     /**
@@ -238,6 +351,25 @@ public class CassandraPlanner extends BasicPlanner<String> {
 
         LOGGER.trace("Entering getPlan(subject={}, coordinator={})", subject, coordinator);
         List<Mutation<String>> subjectMutations = new ArrayList<>();
+        List<Mutation<String>> executedMutations = new ArrayList<>();
+
+        // Nothing to plan if all the mutations were applied, read from a single row
+        VersionTableDao dao = VersionTableDao.forSession(session);
+        VersionFingerprint storedFingerprint = isIgnoreDB() ? null : dao.getFingerprint();
+        if (isUpToDate(storedFingerprint)) {
+            LOGGER.debug("Version fingerprint {} matches the mutations, nothing to plan", storedFingerprint);
+            if (subject instanceof CachingCassandraSubject) {
+                ((CachingCassandraSubject) subject).setCurrentState(storedFingerprint.getMaxVersion());
+            }
+            LOGGER.trace("Leaving getPlan(subject={}, coordinator={})", subject, coordinator);
+            return new BasicPlan(subject, coordinator, subjectMutations);
+        }
+
+        // Read the version table once, older mutations are checked against this snapshot
+        VersionSnapshot snapshot = VersionSnapshot.load(session);
+        if (subject instanceof CachingCassandraSubject) {
+            ((CachingCassandraSubject) subject).setCurrentState(snapshot.getCurrentMutationVersion());
+        }
 
         // Filter out the mutations that are unacceptable to the subject
         for (Mutation<String> mutation : getMutations()) {
@@ -249,31 +381,46 @@ public class CassandraPlanner extends BasicPlanner<String> {
             } else {
 
                 // For older states, verify its presence in the database
-                if (!DBUtils.isVersionIdPresent(session, targetState.getID())) {
+                if (!snapshot.isVersionPresent(MutationVersion.of(targetState))) {
                     throw new MutagenException(
                             "Mutation has state (state=" + targetState.getID() + ")"
                                     + " inferior to current state (state="
                                     + subject.getCurrentState().getID() + ") but was not recorded in the database");
                 }
 
-                // Check that the md5 hash of the already executed mutation hasn't changed
-                if (!DBUtils.isMutationHashCorrect(session, targetState.getID(),
-                        ((AbstractCassandraMutation) mutation).getChecksum())) {
+                // Check that the checksum of the already executed mutation hasn't changed
+                if (!snapshot.isMutationHashCorrect(targetState.getID(), (AbstractCassandraMutation) mutation)) {
                     throw new MutagenException("Checksum incorrect for already executed mutation : "
                             + targetState);
                 }
 
+                executedMutations.add(mutation);
                 LOGGER.debug("Rejecting mutation (already executed): {}", mutation);
             }
 
             //Test that the mutation hasn't been executed with errors before
             if (!isIgnoreDB()) {
-                if (DBUtils.isMutationFailed(session, targetState.getID())) {
+                if (snapshot.isMutationFailed(targetState.getID())) {
                     throw new MutagenException("There is a failed mutation in database for script : " + mutation.toString());
                 }
             }
         }
 
+        // Record the fingerprint of the verified mutations, updated as the planned ones are applied
+        if (!isIgnoreDB()) {
+            VersionFingerprint fingerprint = VersionFingerprint.of(executedMutations, checksumAlgorithm);
+            if (!fingerprint.equals(storedFingerprint)) {
+                dao.saveFingerprint(fingerprint);
+            }
+        }
+
+        // Load the classes of the planned Java mutations, before executing any mutation
+        for (Mutation<String> mutation : subjectMutations) {
+            if (mutation instanceof JavaMutationHandle) {
+                ((JavaMutationHandle) mutation).getMutation();
+            }
+        }
+
         MutagenUtils.printMutations("Planned mutation:", subjectMutations);
 
         BasicPlan basicPlan = new BasicPlan(subject, coordinator, subjectMutations);
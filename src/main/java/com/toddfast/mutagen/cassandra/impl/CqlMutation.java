@@ -1,22 +1,23 @@
 package com.toddfast.mutagen.cassandra.impl;
 
-import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.exceptions.QueryExecutionException;
-import com.datastax.driver.core.exceptions.QueryValidationException;
 import com.google.common.base.Charsets;
-import com.google.common.io.CharStreams;
 import com.toddfast.mutagen.MutagenException;
 import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationArtifact;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.cql.CqlDirectives;
+import com.toddfast.mutagen.cassandra.impl.cql.CqlExecutor;
+import com.toddfast.mutagen.cassandra.impl.cql.CqlTokenizer;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -24,7 +25,10 @@ import java.util.List;
  */
 public class CqlMutation extends AbstractCassandraMutation {
 
-    private String resourceName;
+    private MutationResource resource;
+
+    // true if the executed statements were recorded in the table VersionCheckpoint
+    private boolean checkpointed;
 
     /**
      * constructor for CQLMutation.
@@ -33,20 +37,26 @@ public class CqlMutation extends AbstractCassandraMutation {
      * @param resourceName name of script file end with cqlsh.txt.
      */
     public CqlMutation(Session session, String resourceName) {
+        this(session, new MutationResource(resourceName));
+    }
+
+    /**
+     * constructor for CQLMutation.
+     *
+     * @param session  the session to execute cql statements.
+     * @param resource script file end with cqlsh.txt.
+     */
+    public CqlMutation(Session session, MutationResource resource) {
         super(session);
-        this.resourceName = resourceName;
+        this.resource = resource;
     }
 
     /**
-     * Return md5 hash of source
+     * Load the script once, with its statements.
      */
     @Override
-    public String getChecksum() {
-        try (InputStream resourceInputStream = getResourceInputStream()) {
-            return toHex(md5(resourceInputStream));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    protected MutationArtifact loadArtifact() throws IOException {
+        return MutationArtifact.load(resource, true, getArtifactCache());
     }
 
     /**
@@ -54,110 +64,95 @@ public class CqlMutation extends AbstractCassandraMutation {
      */
     @Override
     public String getResourceName() {
-        return Paths.get(resourceName).getFileName().toString();
+        return Paths.get(resource.getName()).getFileName().toString();
     }
 
     /**
      * Divide the script file end with .cqlsh.txt into statements.
+     * The statements are read lazily, see {@link CqlTokenizer}.
      */
-    public static List<String> extractCQLStatements(InputStream inputStream) {
-        List<String> statements = new ArrayList<>();
+    public static Iterator<String> extractCQLStatements(InputStream inputStream) {
+        return new CqlTokenizer(new InputStreamReader(inputStream, Charsets.UTF_8));
+    }
 
-        try {
-            List<String> lines = CharStreams.readLines(new InputStreamReader(inputStream, Charsets.UTF_8));
-            StringBuilder statement = new StringBuilder();
-            for (String line : lines) {
-                int index;
-                String trimmedLine = line.trim();
-
-                if (trimmedLine.startsWith("--") || trimmedLine.startsWith("//")) {
-                    // Skip
-                    continue;
-                }
-
-                if ((index = line.lastIndexOf(";")) != -1) {
-                    // Split the line at the semicolon
-                    statement
-                            .append("\n")
-                            .append(line.substring(0, index + 1));
-                    statements.add(statement.toString());
-
-                    if (line.length() > index + 1) {
-                        statement = new StringBuilder(line.substring(index + 1));
-                    } else {
-                        statement = new StringBuilder();
-                    }
-                } else {
-                    statement
-                            .append("\n")
-                            .append(line);
-                }
+    /**
+     * Divide the script file end with .cqlsh.txt into statements, without copying it.
+     * The statements are read lazily, see {@link CqlTokenizer}.
+     */
+    public static Iterator<String> extractCQLStatements(ByteBuffer buffer) {
+        return new CqlTokenizer(buffer);
+    }
 
-            }
-            return statements;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Read the execution directives in the comments at the beginning of the script, see {@link CqlDirectives}.
+     */
+    public static CqlDirectives extractDirectives(ByteBuffer buffer) {
+        return CqlDirectives.parse(buffer);
     }
 
     /**
-     * load resource by path.
-     *
-     * @return the content of resource
+     * Performs the mutation using the cassandra context.
      */
-    private InputStream getResourceInputStream() {
+    @Override
+    protected void performMutation(Context context) {
+        context.info("Executing mutation {}", getResultingState().getID());
 
-        ClassLoader loader = Thread.currentThread().getContextClassLoader();
-        if (loader == null) {
-            loader = getClass().getClassLoader();
+        CqlDirectives directives;
+        try {
+            directives = extractDirectives(getArtifact().getContents());
+        } catch (IllegalArgumentException e) {
+            throw new MutagenException("Invalid directive in " + getResourceName() + " : " + e.getMessage(), e);
+        }
+        if (directives != CqlDirectives.NONE) {
+            context.info("Executing mutation {} with directives {}", getResultingState().getID(), directives);
         }
 
-        InputStream inputStream = loader.getResourceAsStream(resourceName);
-        if (inputStream == null) {
-            File file = new File(resourceName);
-            if (file.exists()) {
-                try {
-                    inputStream = new FileInputStream(file);
-                } catch (FileNotFoundException e) {
-                    throw new RuntimeException(e);
-                }
+        CqlExecutor executor;
+        checkpointed = false;
+        if (context instanceof CassandraContext) {
+            CassandraContext cassandraContext = (CassandraContext) context;
+            int concurrency = directives.getConcurrency();
+            executor = new CqlExecutor(getSession(), context,
+                    concurrency > 0 ? concurrency : cassandraContext.getStatementParallelism(),
+                    cassandraContext.isGroupSchemaChanges());
+            executor.setDirectives(directives);
+            if (cassandraContext.getBulkInsertBatchSize() > 0) {
+                executor.enableBulkInserts(cassandraContext.getBulkInsertBatchSize(),
+                        concurrency > 0 ? concurrency : cassandraContext.getBulkInsertWindow());
+            }
+            if (cassandraContext.isCheckpointStatements() && !isIgnoreDB()) {
+                executor.enableCheckpoints(VersionTableDao.forSession(getSession()), getResultingState().getID());
+                checkpointed = true;
             }
+        } else {
+            executor = new CqlExecutor(getSession(), context, Math.max(1, directives.getConcurrency()), false);
+            executor.setDirectives(directives);
         }
-
-        if (inputStream == null) {
-            throw new IllegalArgumentException("Resource \"" + resourceName + "\" not found");
+        List<String> statements = getArtifact().getStatements();
+        if (statements != null) {
+            executor.execute(statements.iterator());
+        } else {
+            // a large script: statements are executed while the script is read
+            executor.execute(extractCQLStatements(getArtifact().getContents()));
+        }
+        context.info("Done executing mutation {}, {} ms waiting for schema agreement in {} groups, {} explicit waits",
+                getResultingState().getID(), executor.getSchemaAgreementMillis(), executor.getSchemaGroups(),
+                executor.getSchemaAgreementWaits());
+        if (executor.getBulkInsertedRows() > 0) {
+            context.info("Inserted {} rows of mutation {} in {} batches", executor.getBulkInsertedRows(),
+                    getResultingState().getID(), executor.getBulkInsertBatches());
         }
-
-        return inputStream;
     }
 
     /**
-     * Performs the mutation using the cassandra context.
+     * Delete the checkpoints of the statements once the mutation is recorded as successful,
+     * the next runs have nothing to resume.
      */
     @Override
-    protected void performMutation(Context context) {
-        context.info("Executing mutation {}", getResultingState().getID());
-
-        List<String> statements = extractCQLStatements(getResourceInputStream());
-
-        for (String statement : statements) {
-            context.debug("Executing CQL statement \"{}\"", statement);
-            try {
-                // execute the cql statement
-                ResultSet result = getSession().execute(statement);
-                context.debug("Successfully executed CQL statement \"{}\" in {} attempts",
-                        statement, result);
-            } catch (QueryValidationException e) {
-                context.error("Statement Validatation Exception executing CQL \"{}\"", statement, e);
-                throw new MutagenException("Statement Validation Exception executing CQL \"" +
-                        statement + "\"", e);
-            } catch (QueryExecutionException e) {
-                context.error("Statement Execution Exception executing CQL \"{}\"", statement, e);
-                throw new MutagenException("Statement Execution Exception executing CQL \"" +
-                        statement + "\"", e);
-            }
+    protected void onVersionRecorded(Context context, String status) {
+        if (checkpointed && MutationStatus.SUCCESS.getValue().equals(status)) {
+            VersionTableDao.forSession(getSession()).deleteStatementCheckpoints(getResultingState().getID());
         }
-        context.info("Done executing mutation {}", getResultingState().getID());
     }
 
 }
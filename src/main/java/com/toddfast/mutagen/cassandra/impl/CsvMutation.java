@@ -0,0 +1,80 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+
+import com.datastax.driver.core.Session;
+import com.google.common.base.Charsets;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationArtifact;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.cql.RowLoader;
+import com.toddfast.mutagen.cassandra.impl.cql.CsvReader;
+import com.toddfast.mutagen.cassandra.impl.sstable.SSTableRowLoader;
+
+/**
+ * Generate the mutation for the data file end with .csv, whose rows are inserted in a table,
+ * see {@link RowLoader}, or written to SSTables and streamed when a SSTable directory is configured,
+ * see {@link SSTableRowLoader}.
+ */
+public class CsvMutation extends AbstractCassandraMutation {
+
+    private MutationResource resource;
+
+    /**
+     * constructor for CsvMutation.
+     *
+     * @param session  the session to insert the rows.
+     * @param resource data file end with .csv.
+     */
+    public CsvMutation(Session session, MutationResource resource) {
+        super(session);
+        this.resource = resource;
+    }
+
+    /**
+     * The checksum is computed from the bytes of the data file.
+     */
+    @Override
+    protected MutationArtifact loadArtifact() throws IOException {
+        return MutationArtifact.load(resource, false, getArtifactCache());
+    }
+
+    /**
+     * Get the ressource name.
+     */
+    @Override
+    public String getResourceName() {
+        return Paths.get(resource.getName()).getFileName().toString();
+    }
+
+    /**
+     * Insert the rows while the data file is read.
+     */
+    @Override
+    protected void performMutation(Context context) {
+        context.info("Executing mutation {}", getResultingState().getID());
+
+        int window = 1;
+        String sstableDirectory = null;
+        if (context instanceof CassandraContext) {
+            window = ((CassandraContext) context).getBulkInsertWindow();
+            sstableDirectory = ((CassandraContext) context).getSSTableDirectory();
+        }
+        int rows;
+        try (CsvReader reader = new CsvReader(new InputStreamReader(resource.openStream(), Charsets.UTF_8))) {
+            if (sstableDirectory != null) {
+                rows = new SSTableRowLoader(getSession(), context, new File(sstableDirectory)).load(reader);
+            } else {
+                rows = new RowLoader(getSession(), context, window).load(reader);
+            }
+        } catch (IOException e) {
+            throw new MutagenException("Could not read data file \"" + resource.getName() + "\"", e);
+        }
+
+        context.info("Done executing mutation {}, {} rows inserted", getResultingState().getID(), rows);
+    }
+}
@@ -1,6 +1,5 @@
 package com.toddfast.mutagen.cassandra.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
@@ -10,7 +9,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.Session;
+import com.google.common.io.ByteStreams;
 import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationArtifact;
 
 public abstract class JavaMutation extends AbstractCassandraMutation {
 
@@ -49,19 +50,22 @@ public abstract class JavaMutation extends AbstractCassandraMutation {
         return name.substring(name.lastIndexOf(".") + 1) + ".java";
     }
 
-    @Override
-    public String getChecksum() {
-        LOGGER.trace("Entering getChecksum()");
-        try {
-            String checksum = toHex(getDigestFromArray(getClassContents(this.getClass())));
-
-            LOGGER.trace("Leaving getChecksum() : {}", checksum);
-            return checksum;
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("unable to get checksum");
-        }
+    /**
+     * Perform the mutation on behalf of its {@link JavaMutationHandle}.
+     * 
+     * @param context
+     *            the context of the plan.
+     */
+    final void performPlannedMutation(Context context) {
+        performMutation(context);
+    }
 
+    /**
+     * Load the bytes of the class once, with their checksum.
+     */
+    @Override
+    protected MutationArtifact loadArtifact() throws IOException {
+        return MutationArtifact.of(getClassContents(this.getClass()));
     }
 
     public static byte[] getClassContents(Class<?> myClass) throws IOException {
@@ -70,18 +74,13 @@ public abstract class JavaMutation extends AbstractCassandraMutation {
 
         String path = myClass.getName().replace('.', '/');
         String fileName = path + ".class";
-        InputStream is = myClass.getClassLoader().getResourceAsStream(fileName);
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int datum = is.read();
-        while (datum != -1) {
-            buffer.write(datum);
-            datum = is.read();
+        byte[] contents;
+        try (InputStream is = myClass.getClassLoader().getResourceAsStream(fileName)) {
+            contents = ByteStreams.toByteArray(is);
         }
-
-        is.close();
         LOGGER.trace("Leaving getClassContents()");
 
-        return buffer.toByteArray();
+        return contents;
     }
 
     public byte[] getDigestFromArray(byte[] array) {
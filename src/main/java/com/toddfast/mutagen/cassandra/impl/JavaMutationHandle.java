@@ -0,0 +1,146 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Session;
+import com.google.common.base.Joiner;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationArtifact;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.manifest.JavaMutationFactories;
+
+/**
+ * A Java mutation found as a class file, whose class is loaded only when the mutation is planned.
+ * The version is parsed from the class name and the checksum is computed from the bytes of the class file,
+ * so already executed mutations are verified without running their static initializers and constructors.
+ */
+public class JavaMutationHandle extends AbstractCassandraMutation {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(JavaMutationHandle.class);
+
+    private final MutationResource resource;
+
+    private final String className;
+
+    private JavaMutation mutation;
+
+    /**
+     * Constructor for JavaMutationHandle.
+     *
+     * @param session
+     *            the session to execute cql statements.
+     * @param resource
+     *            the class file of the mutation.
+     */
+    public JavaMutationHandle(Session session, MutationResource resource) {
+        super(session);
+        assert resource.getName().endsWith(".class") : "Class resource name \"" + resource.getName()
+                + "\" should end with .class";
+        this.resource = resource;
+        int index = resource.getName().lastIndexOf(".class");
+        this.className = Joiner.on('.').join(Paths.get(resource.getName().substring(0, index)));
+    }
+
+    /**
+     * @return the fully qualified name of the mutation class.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Same resource name as {@link JavaMutation#getResourceName()}, without loading the class.
+     */
+    @Override
+    public String getResourceName() {
+        return className.substring(className.lastIndexOf('.') + 1) + ".java";
+    }
+
+    /**
+     * The bytes of the class file, which {@link JavaMutation} hashes too.
+     */
+    @Override
+    protected MutationArtifact loadArtifact() {
+        return MutationArtifact.load(resource, false, getArtifactCache());
+    }
+
+    /**
+     * @return true if the mutation class was loaded and instantiated.
+     */
+    public synchronized boolean isLoaded() {
+        return mutation != null;
+    }
+
+    /**
+     * Load and instantiate the mutation class once, with the factory generated at build time if there is one.
+     *
+     * @return the mutation.
+     */
+    public synchronized JavaMutation getMutation() {
+        if (mutation == null) {
+            mutation = newMutation();
+            mutation.setSession(getSession());
+        }
+        return mutation;
+    }
+
+    @Override
+    protected void performMutation(Context context) {
+        getMutation().performPlannedMutation(context);
+    }
+
+    private JavaMutation newMutation() {
+
+        LOGGER.trace("Entering newMutation(className={})", className);
+
+        // Use the factory generated at build time if there is one
+        JavaMutation generated = JavaMutationFactories.newMutation(className, JavaMutationHandle.class.getClassLoader());
+        if (generated != null) {
+            LOGGER.trace("Leaving newMutation() : {}", generated);
+            return generated;
+        }
+
+        // Load the class specified by the resource
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            // Should never happen
+            throw new MutagenException("Could not load mutagen class \"" + resource.getName() + "\"", e);
+        }
+        if (!JavaMutation.class.isAssignableFrom(clazz)) {
+            throw new MutagenException("Mutation class \"" + className + "\" does not extend "
+                    + JavaMutation.class.getName());
+        }
+
+        // Instantiate the class
+        try {
+            LOGGER.debug("Instanciating {}", clazz);
+
+            Constructor<?> constructor = clazz.getConstructor();
+            JavaMutation mutation = (JavaMutation) constructor.newInstance();
+
+            LOGGER.trace("Leaving newMutation() : {}", mutation);
+            return mutation;
+        } catch (NoSuchMethodException e) {
+            throw new MutagenException("Could not find compatible " +
+                    "constructor for class \"" + className + "\"", e);
+        } catch (InstantiationException e) {
+            throw new MutagenException("Could not instantiate class \"" + className + "\"", e);
+        } catch (InvocationTargetException e) {
+            if (e.getTargetException() instanceof RuntimeException) {
+                throw (RuntimeException) e.getTargetException();
+            } else {
+                throw new MutagenException("Exception instantiating class \"" + className + "\"", e);
+            }
+        } catch (IllegalAccessException e) {
+            throw new MutagenException("Could not access constructor for " + "mutation class \"" + className + "\"", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.File;
+import java.util.Iterator;
+
+import com.toddfast.mutagen.cassandra.impl.cql.RowLoader;
+import com.toddfast.mutagen.cassandra.impl.sstable.SSTableRowLoader;
+
+/**
+ * A Java mutation seeding a table with rows produced by code, for datasets too large to be written as
+ * CQL or CSV mutations. The rows are inserted as they are produced, with at most bulkInsertWindow inserts
+ * in flight, and the progress is logged through the context, see {@link RowLoader}. When a SSTable directory is
+ * configured, the rows are written offline to SSTables, then streamed to the cluster, see {@link SSTableRowLoader}.
+ */
+public abstract class RowSourceMutation extends JavaMutation {
+
+    /**
+     * Override to name the table and the columns of the rows.
+     * 
+     * @return the header [keyspace.]table(column, ...).
+     */
+    protected abstract String getHeader();
+
+    /**
+     * Override to produce the rows. The rows are read once, as they are inserted.
+     * 
+     * @return the values of each row, in the order of the columns of the header, of the Java types bound for
+     *         the types of the columns.
+     */
+    protected abstract Iterator<Object[]> getRows();
+
+    @Override
+    protected final void performMutation(Context context) {
+        context.info("Executing mutation {}", getResultingState().getID());
+
+        int window = 1;
+        String sstableDirectory = null;
+        if (context instanceof CassandraContext) {
+            window = ((CassandraContext) context).getBulkInsertWindow();
+            sstableDirectory = ((CassandraContext) context).getSSTableDirectory();
+        }
+        int rows;
+        if (sstableDirectory != null) {
+            rows = new SSTableRowLoader(getSession(), context, new File(sstableDirectory)).load(getHeader(),
+                    getRows());
+        } else {
+            rows = new RowLoader(getSession(), context, window).load(getHeader(), getRows());
+        }
+
+        context.info("Done executing mutation {}, {} rows inserted", getResultingState().getID(), rows);
+    }
+}
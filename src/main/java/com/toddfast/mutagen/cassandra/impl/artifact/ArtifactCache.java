@@ -0,0 +1,228 @@
+package com.toddfast.mutagen.cassandra.impl.artifact;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A local file caching what was computed from the mutation resources across runs: the checksums,
+ * and the offsets of the CQL statements in the scripts.
+ * <p>
+ * The entries are keyed by {@link MutationResource#getCacheKey()}, which changes when the resource changes
+ * (path, size and modification time of a file, size and CRC of a jar entry), so resources whose key matches are
+ * not read again to compute their checksums. Only the entries used by a run are saved.
+ * <p>
+ * Each line of the file holds the key, the checksums and the statement offsets of a resource, separated by tabs.
+ */
+public class ArtifactCache {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+    private static final String HEADER = "# mutagen artifact cache 1";
+
+    private final Path file;
+
+    private final Map<String, Entry> entries;
+
+    private final ConcurrentMap<String, Entry> usedEntries = new ConcurrentHashMap<>();
+
+    private volatile boolean modified;
+
+    private ArtifactCache(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Read a cache file. A missing or unreadable file gives an empty cache.
+     *
+     * @param file
+     *            - the cache file.
+     * @return the cache.
+     */
+    public static ArtifactCache open(Path file) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+                if (HEADER.equals(reader.readLine())) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] columns = line.split("\t", -1);
+                        if (columns.length == 3) {
+                            entries.put(columns[0], Entry.parse(columns[1], columns[2]));
+                        }
+                    }
+                } else {
+                    LOGGER.warn("Ignoring artifact cache {} of an unknown format", file);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Ignoring unreadable artifact cache {}", file, e);
+                entries.clear();
+            }
+        }
+        LOGGER.debug("Opened artifact cache {} with {} entries", file, entries.size());
+        return new ArtifactCache(file, entries);
+    }
+
+    private Entry getEntry(String key) {
+        Entry entry = usedEntries.get(key);
+        if (entry == null) {
+            Entry cached = entries.get(key);
+            entry = cached != null ? cached : new Entry();
+            Entry previous = usedEntries.putIfAbsent(key, entry);
+            if (previous != null) {
+                entry = previous;
+            } else if (cached == null) {
+                modified = true;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return the cached checksums of a resource by algorithm name.
+     */
+    public Map<String, String> getChecksums(String key) {
+        return getEntry(key).checksums;
+    }
+
+    /**
+     * Cache the checksum of a resource.
+     *
+     * @param key
+     *            - the key of the resource.
+     * @param algorithm
+     *            - the name of the algorithm.
+     * @param checksum
+     *            - the checksum, in the recorded format.
+     */
+    public void putChecksum(String key, String algorithm, String checksum) {
+        if (getEntry(key).checksums.put(algorithm, checksum) == null) {
+            modified = true;
+        }
+    }
+
+    /**
+     * @return the cached offsets of the CQL statements of a resource, start and length in bytes of each statement,
+     *         or null.
+     */
+    public int[] getStatementOffsets(String key) {
+        return getEntry(key).offsets;
+    }
+
+    /**
+     * Cache the offsets of the CQL statements of a resource.
+     *
+     * @param key
+     *            - the key of the resource.
+     * @param offsets
+     *            - start and length in bytes of each statement.
+     */
+    public void putStatementOffsets(String key, int[] offsets) {
+        getEntry(key).offsets = offsets;
+        modified = true;
+    }
+
+    /**
+     * Write the entries used since the cache was opened, if something changed.
+     * The file is replaced atomically.
+     */
+    public synchronized void save() throws IOException {
+        if (!modified && usedEntries.size() == entries.size()) {
+            return;
+        }
+        LOGGER.debug("Saving artifact cache {} with {} entries", file, usedEntries.size());
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, Charsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Entry> entry : usedEntries.entrySet()) {
+                    if (entry.getKey().indexOf('\t') == -1 && entry.getKey().indexOf('\n') == -1) {
+                        writer.write(entry.getKey() + "\t" + entry.getValue().format());
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        entries.clear();
+        entries.putAll(usedEntries);
+        modified = false;
+    }
+
+    /**
+     * @return the cache file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * The cached artifacts of a resource.
+     */
+    private static class Entry {
+
+        private final ConcurrentMap<String, String> checksums = new ConcurrentHashMap<>();
+
+        private volatile int[] offsets;
+
+        static Entry parse(String checksums, String offsets) {
+            Entry entry = new Entry();
+            if (!checksums.isEmpty()) {
+                for (String checksum : checksums.split(";")) {
+                    int index = checksum.indexOf('=');
+                    entry.checksums.put(checksum.substring(0, index), checksum.substring(index + 1));
+                }
+            }
+            if (!"-".equals(offsets)) {
+                String[] values = offsets.isEmpty() ? new String[0] : offsets.split(",");
+                entry.offsets = new int[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    entry.offsets[i] = Integer.parseInt(values[i]);
+                }
+            }
+            return entry;
+        }
+
+        String format() {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+                if (builder.length() > 0) {
+                    builder.append(';');
+                }
+                builder.append(checksum.getKey()).append('=').append(checksum.getValue());
+            }
+            builder.append('\t');
+            int[] offsets = this.offsets;
+            if (offsets == null) {
+                builder.append('-');
+            } else {
+                for (int i = 0; i < offsets.length; i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(offsets[i]);
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
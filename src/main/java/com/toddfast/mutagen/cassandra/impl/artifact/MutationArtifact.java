@@ -0,0 +1,245 @@
+package com.toddfast.mutagen.cassandra.impl.artifact;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.toddfast.mutagen.cassandra.impl.CqlMutation;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+
+/**
+ * The content of a mutation, loaded once and shared by planning, baseline and execution.
+ * The contents are only read when needed: a checksum computed at build time avoids reading
+ * mutations which are not executed. The statements of scripts larger than {@link #MAX_PARSED_BYTES}
+ * are not kept in memory, they are read again from the contents when executed.
+ * With an {@link ArtifactCache}, the checksums and the offsets of the statements computed by a previous run
+ * are reused.
+ */
+public final class MutationArtifact {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(MutationArtifact.class);
+
+    /**
+     * The maximum size of the scripts whose statements are kept in memory.
+     */
+    public static final int MAX_PARSED_BYTES = 8 * 1024 * 1024;
+
+    private final MutationResource resource;
+
+    private final boolean cql;
+
+    private ByteBuffer contents;
+
+    // checksums by algorithm name
+    private final ConcurrentMap<String, String> checksums = new ConcurrentHashMap<>();
+
+    private List<String> statements;
+
+    private boolean parsed;
+
+    private final ArtifactCache cache;
+
+    private final String cacheKey;
+
+    private MutationArtifact(MutationResource resource, ByteBuffer contents, boolean cql, ArtifactCache cache) {
+        this.resource = resource;
+        this.contents = contents != null ? contents.asReadOnlyBuffer() : null;
+        this.cql = cql;
+        this.cache = cache;
+        this.cacheKey = cache != null ? getCacheKey(resource) : null;
+        if (cacheKey != null) {
+            checksums.putAll(cache.getChecksums(cacheKey));
+        }
+        if (resource != null && resource.getChecksum() != null) {
+            String checksum = resource.getChecksum();
+            checksums.put(ChecksumAlgorithms.forChecksum(checksum).getName(), checksum);
+        }
+    }
+
+    /**
+     * Create the artifact of a mutation resource, read on first use.
+     * 
+     * @param resource
+     *            - the resource.
+     * @param cql
+     *            - true to parse the CQL statements of the contents.
+     * @return the artifact.
+     */
+    public static MutationArtifact load(MutationResource resource, boolean cql) {
+        return load(resource, cql, null);
+    }
+
+    /**
+     * Create the artifact of a mutation resource, read on first use unless it is found in a cache.
+     * 
+     * @param resource
+     *            - the resource.
+     * @param cql
+     *            - true to parse the CQL statements of the contents.
+     * @param cache
+     *            - the cache of the artifacts, or null.
+     * @return the artifact.
+     */
+    public static MutationArtifact load(MutationResource resource, boolean cql, ArtifactCache cache) {
+        return new MutationArtifact(resource, null, cql, cache);
+    }
+
+    private static String getCacheKey(MutationResource resource) {
+        try {
+            return resource.getCacheKey();
+        } catch (IOException e) {
+            LOGGER.debug("No cache key for {}", resource, e);
+            return null;
+        }
+    }
+
+    /**
+     * Create the artifact of contents already in memory.
+     * 
+     * @param bytes
+     *            - the contents, not copied.
+     * @return the artifact.
+     */
+    public static MutationArtifact of(byte[] bytes) {
+        return new MutationArtifact(null, ByteBuffer.wrap(bytes), false, null);
+    }
+
+    /**
+     * @return the size of the contents, in bytes.
+     */
+    public long getSize() {
+        return getContents().remaining();
+    }
+
+    /**
+     * @return a new read-only buffer over the contents.
+     */
+    public synchronized ByteBuffer getContents() {
+        if (contents == null) {
+            try {
+                contents = resource.getBuffer();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read " + resource, e);
+            }
+        }
+        return contents.duplicate();
+    }
+
+    /**
+     * Get the checksum of the contents, in the recorded format.
+     * 
+     * @param algorithm
+     *            - the algorithm.
+     * @return the checksum.
+     */
+    public String getChecksum(ChecksumAlgorithm algorithm) {
+        String checksum = checksums.get(algorithm.getName());
+        if (checksum == null) {
+            checksum = ChecksumAlgorithms.checksum(algorithm, getContents());
+            checksums.putIfAbsent(algorithm.getName(), checksum);
+            if (cacheKey != null) {
+                cache.putChecksum(cacheKey, algorithm.getName(), checksum);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * @return the CQL statements, or null if they are not kept in memory.
+     */
+    public synchronized List<String> getStatements() {
+        if (cql && !parsed) {
+            ByteBuffer buffer = getContents();
+            if (buffer.remaining() <= MAX_PARSED_BYTES) {
+                List<String> list = cacheKey != null ? slice(buffer, cache.getStatementOffsets(cacheKey)) : null;
+                if (list == null) {
+                    list = new ArrayList<>();
+                    for (Iterator<String> it = CqlMutation.extractCQLStatements(buffer.duplicate()); it.hasNext();) {
+                        list.add(it.next());
+                    }
+                    if (cacheKey != null) {
+                        int[] offsets = locate(buffer, list);
+                        if (offsets != null) {
+                            cache.putStatementOffsets(cacheKey, offsets);
+                        }
+                    }
+                }
+                statements = Collections.unmodifiableList(list);
+            }
+            parsed = true;
+        }
+        return statements;
+    }
+
+    /**
+     * Read the statements at cached offsets.
+     * 
+     * @return the statements, or null if the offsets do not fit the contents.
+     */
+    private static List<String> slice(ByteBuffer buffer, int[] offsets) {
+        if (offsets == null || offsets.length % 2 != 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(offsets.length / 2);
+        for (int i = 0; i < offsets.length; i += 2) {
+            int start = offsets[i];
+            int length = offsets[i + 1];
+            if (start < 0 || length < 0 || start + length > buffer.remaining()) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer statement = buffer.duplicate();
+            statement.position(buffer.position() + start);
+            statement.get(bytes);
+            list.add(new String(bytes, Charsets.UTF_8));
+        }
+        return list;
+    }
+
+    /**
+     * Find the offsets of the statements in the contents, in order.
+     * 
+     * @return start and length in bytes of each statement, or null if a statement is not found as is,
+     *         for example because a comment was removed from it.
+     */
+    private static int[] locate(ByteBuffer buffer, List<String> statements) {
+        int[] offsets = new int[statements.size() * 2];
+        int from = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            byte[] bytes = statements.get(i).getBytes(Charsets.UTF_8);
+            int start = indexOf(buffer, bytes, from);
+            if (start == -1) {
+                return null;
+            }
+            offsets[2 * i] = start;
+            offsets[2 * i + 1] = bytes.length;
+            from = start + bytes.length;
+        }
+        return offsets;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] bytes, int from) {
+        int base = buffer.position();
+        int last = buffer.remaining() - bytes.length;
+        for (int start = from; start <= last; start++) {
+            int j = 0;
+            while (j < bytes.length && buffer.get(base + start + j) == bytes[j]) {
+                j++;
+            }
+            if (j == bytes.length) {
+                return start;
+            }
+        }
+        return -1;
+    }
+}
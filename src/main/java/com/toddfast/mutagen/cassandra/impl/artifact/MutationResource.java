@@ -0,0 +1,222 @@
+package com.toddfast.mutagen.cassandra.impl.artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.JarEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * A mutation resource found by {@link com.toddfast.mutagen.cassandra.utils.LoadResources}, on the class path or on
+ * the file system. The contents are loaded once, on first use: files are memory-mapped and jar entries are read
+ * in one bulk read.
+ */
+public class MutationResource {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(MutationResource.class);
+
+    private final String name;
+
+    private final ClassLoader loader;
+
+    private ByteBuffer buffer;
+
+    private String checksum;
+
+    /**
+     * Constructor for a resource of the context class loader.
+     * 
+     * @param name
+     *            - the name of the resource, or a file path.
+     */
+    public MutationResource(String name) {
+        this(name, null);
+    }
+
+    /**
+     * Constructor for MutationResource.
+     * 
+     * @param name
+     *            - the name of the resource, or a file path.
+     * @param loader
+     *            - the class loader of the resource, or null for the context class loader.
+     */
+    public MutationResource(String name, ClassLoader loader) {
+        this.name = name;
+        this.loader = loader;
+    }
+
+    /**
+     * @return the name of the resource.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the checksum computed at build time, in the recorded format, or null.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Get a read-only view of the contents.
+     * 
+     * @return a new buffer over the contents, positioned at 0.
+     */
+    public synchronized ByteBuffer getBuffer() throws IOException {
+        if (buffer == null) {
+            buffer = load().asReadOnlyBuffer();
+        }
+        return buffer.duplicate();
+    }
+
+    /**
+     * @return a new stream over the contents.
+     */
+    public InputStream openStream() throws IOException {
+        final ByteBuffer contents = getBuffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return contents.hasRemaining() ? contents.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!contents.hasRemaining()) {
+                    return -1;
+                }
+                int length = Math.min(len, contents.remaining());
+                contents.get(b, off, length);
+                return length;
+            }
+
+            @Override
+            public int available() {
+                return contents.remaining();
+            }
+        };
+    }
+
+    /**
+     * Get a key which changes when the contents of the resource change, without reading them:
+     * the path, size and modification time of a file, or the URL, size and CRC of a jar entry.
+     * 
+     * @return the key, or null if the resource is neither a file nor a jar entry.
+     */
+    public String getCacheKey() throws IOException {
+        Path path = getPath();
+        if (path != null) {
+            return path.toAbsolutePath() + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+        }
+        URL url = getClassLoader().getResource(name);
+        if (url != null) {
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+                if (entry != null && entry.getCrc() != -1) {
+                    return url + "|" + entry.getSize() + "|" + Long.toHexString(entry.getCrc());
+                }
+            }
+        }
+        return null;
+    }
+
+    private ClassLoader getClassLoader() {
+        ClassLoader classLoader = loader;
+        if (classLoader == null) {
+            classLoader = Thread.currentThread().getContextClassLoader();
+        }
+        if (classLoader == null) {
+            classLoader = getClass().getClassLoader();
+        }
+        return classLoader;
+    }
+
+    /**
+     * @return the file of the resource, or null if it is not a file.
+     */
+    private Path getPath() throws IOException {
+        URL url = getClassLoader().getResource(name);
+        if (url != null) {
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    return Paths.get(url.toURI());
+                } catch (URISyntaxException e) {
+                    throw new IOException(e);
+                }
+            }
+            return null;
+        }
+        File file = new File(name);
+        return file.exists() ? file.toPath() : null;
+    }
+
+    private ByteBuffer load() throws IOException {
+        Path path = getPath();
+        if (path != null) {
+            return map(path);
+        }
+        URL url = getClassLoader().getResource(name);
+        if (url != null) {
+            return read(url);
+        }
+        throw new IllegalArgumentException("Resource \"" + name + "\" not found");
+    }
+
+    /**
+     * Map a file in memory.
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        LOGGER.trace("Mapping {}", path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Read a jar entry, or another resource, in one bulk read when its size is known.
+     */
+    private static ByteBuffer read(URL url) throws IOException {
+        LOGGER.trace("Reading {}", url);
+        URLConnection connection = url.openConnection();
+        long size = -1;
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            size = entry != null ? entry.getSize() : -1;
+        }
+        try (InputStream inputStream = connection.getInputStream()) {
+            if (size >= 0 && size <= Integer.MAX_VALUE) {
+                byte[] contents = new byte[(int) size];
+                ByteStreams.readFully(inputStream, contents);
+                return ByteBuffer.wrap(contents);
+            }
+            return ByteBuffer.wrap(ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,12 +1,21 @@
 package com.toddfast.mutagen.cassandra.impl.baseline;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import com.datastax.driver.core.Session;
 import com.toddfast.mutagen.MutagenException;
 import com.toddfast.mutagen.Mutation;
 import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
 import com.toddfast.mutagen.cassandra.CassandraMutagen;
 import com.toddfast.mutagen.cassandra.MutationStatus;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.impl.version.VersionRecordWriter;
+import com.toddfast.mutagen.cassandra.impl.version.VersionSnapshot;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 public class BaseLine {
     // Fields
@@ -16,6 +25,8 @@ public class BaseLine {
 
     private CassandraMutagen mutagen;
 
+    private VersionRecordWriter versionRecordWriter;
+
     // Methods
     public BaseLine(CassandraMutagen mutagen, Session session) {
         this(mutagen, session, "000000000001");
@@ -28,15 +39,120 @@ public class BaseLine {
     }
 
     public void baseLine() throws MutagenException {
-        DBUtils.createSchemaVersionTable(getSession());
-        if (!DBUtils.isEmptyVersionTable(getSession()))
+        getVersionTableDao().createTable();
+        if (!getVersionTableDao().isEmpty())
             throw new MutagenException("Tabble Version is not empty, please clean before executing baseline");
-        dummyPlanExecution();
+        if (getMutagen().getBaselineParallelism() > 1) {
+            parallelDummyPlanExecution(getMutagen().getBaselineParallelism());
+        } else {
+            dummyPlanExecution();
+        }
+    }
+
+    /**
+     * Parallel dummy execution of all mutations with state inferior or equal to the baseline version.
+     * The checksums are computed on a fork-join pool, the records before the baseline are written
+     * asynchronously and verified, then the baseline record is written last.
+     * 
+     * @param parallelism
+     *            - the number of threads computing checksums.
+     */
+    private void parallelDummyPlanExecution(int parallelism) {
+
+        // mutations up to the baseline version
+        List<AbstractCassandraMutation> mutations = new ArrayList<>();
+        for (Mutation<String> m : getMutagen().getMutationsPlan(false).getMutations()) {
+            if (m.getResultingState().getID().compareTo(getBaselineVersion()) <= 0) {
+                mutations.add((AbstractCassandraMutation) m);
+            }
+        }
+
+        List<String> checksums = computeChecksums(mutations, parallelism);
+
+        // records before the baseline
+        VersionRecordWriter writer = new VersionRecordWriter(getVersionTableDao(),
+                Math.max(parallelism, getMutagen().getVersionWriteWindow()));
+        AbstractCassandraMutation baselineMutation = null;
+        String baselineChecksum = null;
+        for (int i = 0; i < mutations.size(); i++) {
+            AbstractCassandraMutation mutation = mutations.get(i);
+            if (mutation.getResultingState().getID().equals(getBaselineVersion())) {
+                baselineMutation = mutation;
+                baselineChecksum = checksums.get(i);
+            } else {
+                writer.appendVersionRecord(mutation.getResultingState().getID(), mutation.getResourceName(),
+                        checksums.get(i), 0, MutationStatus.BEFORE_BASELINE.getValue());
+            }
+        }
+        writer.flush();
+
+        // verification pass
+        VersionSnapshot snapshot = VersionSnapshot.load(getVersionTableDao());
+        for (int i = 0; i < mutations.size(); i++) {
+            AbstractCassandraMutation mutation = mutations.get(i);
+            if (mutation != baselineMutation
+                    && !snapshot.isMutationHashCorrect(mutation.getResultingState().getID(), checksums.get(i))) {
+                throw new MutagenException("Dummy execution failed for mutation : " + mutation.toString()
+                        + ", the version record was not written");
+            }
+        }
+
+        // baseline record
+        if (baselineMutation != null) {
+            getVersionTableDao().appendVersionRecord(getBaselineVersion(), baselineMutation.getResourceName(),
+                    baselineChecksum, 0, MutationStatus.BASELINE.getValue());
+        } else {
+            getVersionTableDao().appendVersionRecord(getBaselineVersion(), "", "", 0, MutationStatus.BASELINE.getValue());
+        }
+    }
+
+    /**
+     * Compute the checksums of mutations on a fork-join pool.
+     * 
+     * @return the checksums, in the order of the mutations.
+     */
+    private List<String> computeChecksums(List<AbstractCassandraMutation> mutations, int parallelism) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (final AbstractCassandraMutation mutation : mutations) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    // resources are loaded with the context class loader of the caller
+                    Thread.currentThread().setContextClassLoader(contextClassLoader);
+                    return mutation.getChecksum();
+                }
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<String> checksums = new ArrayList<>();
+            List<Future<String>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    checksums.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new MutagenException("Dummy execution failed for mutation : " + mutations.get(i).toString(),
+                            e.getCause());
+                }
+            }
+            return checksums;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MutagenException("Interrupted while computing checksums", e);
+        } finally {
+            pool.shutdown();
+        }
     }
 
     // Dummy execution of all mutations with state inferior of equal to lastCompletedState
     private void dummyPlanExecution() {
 
+        if (getMutagen().getVersionWriteWindow() > 0) {
+            versionRecordWriter = new VersionRecordWriter(getVersionTableDao(), getMutagen().getVersionWriteWindow());
+        }
+
         for (Mutation<String> m : getMutagen().getMutationsPlan(false).getMutations()) {
             try {
                 dummyExecution((AbstractCassandraMutation) m);
@@ -44,8 +160,11 @@ public class BaseLine {
                 throw new MutagenException("Dummy execution failed for mutation : " + m.toString(), e);
             }
         }
-        if (!DBUtils.isVersionIdPresent(getSession(), getBaselineVersion())) {
-            DBUtils.appendVersionRecord(getSession(), getBaselineVersion(), "", "", 0, MutationStatus.BASELINE.getValue());
+        if (versionRecordWriter != null) {
+            versionRecordWriter.flush();
+        }
+        if (!getVersionTableDao().isVersionIdPresent(getBaselineVersion())) {
+            getVersionTableDao().appendVersionRecord(getBaselineVersion(), "", "", 0, MutationStatus.BASELINE.getValue());
         }
     }
 
@@ -60,9 +179,18 @@ public class BaseLine {
 
         // append version record
         if (version.compareTo(getBaselineVersion()) < 0) {
-            DBUtils.appendVersionRecord(getSession(), version, mutation.getResourceName(), checksum, 0, MutationStatus.BEFORE_BASELINE.getValue());
+            // records before the baseline do not gate anything, they are written asynchronously if possible
+            if (versionRecordWriter != null) {
+                versionRecordWriter.appendVersionRecord(version, mutation.getResourceName(), checksum, 0, MutationStatus.BEFORE_BASELINE.getValue());
+            } else {
+                getVersionTableDao().appendVersionRecord(version, mutation.getResourceName(), checksum, 0, MutationStatus.BEFORE_BASELINE.getValue());
+            }
         } else if (version.compareTo(getBaselineVersion()) == 0) {
-            DBUtils.appendVersionRecord(getSession(), version, mutation.getResourceName(), checksum, 0, MutationStatus.BASELINE.getValue());
+            // the baseline record is written only once the records before it are
+            if (versionRecordWriter != null) {
+                versionRecordWriter.flush();
+            }
+            getVersionTableDao().appendVersionRecord(version, mutation.getResourceName(), checksum, 0, MutationStatus.BASELINE.getValue());
         }
     }
 
@@ -75,6 +203,18 @@ public class BaseLine {
         this.session = session;
     }
 
+    public VersionRecordWriter getVersionRecordWriter() {
+        return versionRecordWriter;
+    }
+
+    public void setVersionRecordWriter(VersionRecordWriter versionRecordWriter) {
+        this.versionRecordWriter = versionRecordWriter;
+    }
+
+    public VersionTableDao getVersionTableDao() {
+        return VersionTableDao.forSession(session);
+    }
+
     public String getBaselineVersion() {
         return baselineVersion;
     }
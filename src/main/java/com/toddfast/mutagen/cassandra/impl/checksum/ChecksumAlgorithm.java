@@ -0,0 +1,21 @@
+package com.toddfast.mutagen.cassandra.impl.checksum;
+
+import com.google.common.hash.Hasher;
+
+/**
+ * An algorithm computing the checksums of mutations.
+ * Implementations are registered in META-INF/services/com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm
+ * and found by name, see {@link ChecksumAlgorithms#forName(String)}.
+ */
+public interface ChecksumAlgorithm {
+
+    /**
+     * @return the name of the algorithm, recorded as a prefix of the checksums.
+     */
+    String getName();
+
+    /**
+     * @return a new hasher for one checksum.
+     */
+    Hasher newHasher();
+}
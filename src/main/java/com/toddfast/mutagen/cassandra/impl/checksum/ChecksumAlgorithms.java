@@ -0,0 +1,188 @@
+package com.toddfast.mutagen.cassandra.impl.checksum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.toddfast.mutagen.MutagenException;
+
+/**
+ * The checksum algorithms and the format of recorded checksums.
+ * A checksum is recorded as &lt;name&gt;:&lt;hex&gt;, except MD5 checksums which are recorded as
+ * &lt;hex&gt; only, as they were before algorithms could be chosen.
+ */
+public final class ChecksumAlgorithms {
+
+    /**
+     * MD5, the default algorithm.
+     */
+    public static final ChecksumAlgorithm MD5 = new HashFunctionAlgorithm("md5", Hashing.md5());
+
+    /**
+     * CRC32C, a fast algorithm.
+     */
+    public static final ChecksumAlgorithm CRC32C = new HashFunctionAlgorithm("crc32c", Hashing.crc32c());
+
+    /**
+     * 128 bits Murmur3, a fast algorithm.
+     */
+    public static final ChecksumAlgorithm MURMUR3_128 = new HashFunctionAlgorithm("murmur3_128", Hashing.murmur3_128());
+
+    private static final char SEPARATOR = ':';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Map<String, ChecksumAlgorithm> ALGORITHMS = new ConcurrentHashMap<>();
+
+    static {
+        register(MD5);
+        register(CRC32C);
+        register(MURMUR3_128);
+        for (ChecksumAlgorithm algorithm : ServiceLoader.load(ChecksumAlgorithm.class)) {
+            register(algorithm);
+        }
+    }
+
+    private ChecksumAlgorithms() {
+    }
+
+    /**
+     * Register an algorithm.
+     * 
+     * @param algorithm
+     *            - the algorithm.
+     */
+    public static void register(ChecksumAlgorithm algorithm) {
+        ALGORITHMS.put(algorithm.getName().toLowerCase(), algorithm);
+    }
+
+    /**
+     * Get an algorithm by name.
+     * 
+     * @param name
+     *            - the name of the algorithm, case insensitive.
+     * @return the algorithm.
+     */
+    public static ChecksumAlgorithm forName(String name) {
+        ChecksumAlgorithm algorithm = ALGORITHMS.get(name.toLowerCase());
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Unknown checksum algorithm : " + name + ", expected one of "
+                    + ALGORITHMS.keySet());
+        }
+        return algorithm;
+    }
+
+    /**
+     * Get the algorithm which computed a recorded checksum.
+     * 
+     * @param checksum
+     *            - the recorded checksum.
+     * @return the algorithm.
+     */
+    public static ChecksumAlgorithm forChecksum(String checksum) {
+        int index = checksum.indexOf(SEPARATOR);
+        if (index == -1) {
+            return MD5;
+        }
+        ChecksumAlgorithm algorithm = ALGORITHMS.get(checksum.substring(0, index).toLowerCase());
+        if (algorithm == null) {
+            throw new MutagenException("Unknown checksum algorithm of recorded checksum : " + checksum);
+        }
+        return algorithm;
+    }
+
+    /**
+     * Compute a checksum, in the recorded format.
+     * 
+     * @param algorithm
+     *            - the algorithm.
+     * @param bytes
+     *            - the contents.
+     * @return the checksum.
+     */
+    public static String checksum(ChecksumAlgorithm algorithm, byte[] bytes) {
+        return format(algorithm, algorithm.newHasher().putBytes(bytes).hash().toString());
+    }
+
+    /**
+     * Compute a checksum, in the recorded format.
+     * 
+     * @param algorithm
+     *            - the algorithm.
+     * @param buffer
+     *            - the contents, between position and limit. The position is not changed.
+     * @return the checksum.
+     */
+    public static String checksum(ChecksumAlgorithm algorithm, ByteBuffer buffer) {
+        Hasher hasher = algorithm.newHasher();
+        ByteBuffer contents = buffer.duplicate();
+        if (contents.hasArray()) {
+            hasher.putBytes(contents.array(), contents.arrayOffset() + contents.position(), contents.remaining());
+        } else {
+            byte[] chunk = new byte[BUFFER_SIZE];
+            while (contents.hasRemaining()) {
+                int length = Math.min(chunk.length, contents.remaining());
+                contents.get(chunk, 0, length);
+                hasher.putBytes(chunk, 0, length);
+            }
+        }
+        return format(algorithm, hasher.hash().toString());
+    }
+
+    /**
+     * Compute a checksum, in the recorded format.
+     * 
+     * @param algorithm
+     *            - the algorithm.
+     * @param inputStream
+     *            - the contents, read to the end but not closed.
+     * @return the checksum.
+     */
+    public static String checksum(ChecksumAlgorithm algorithm, InputStream inputStream) throws IOException {
+        Hasher hasher = algorithm.newHasher();
+        byte[] chunk = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+            hasher.putBytes(chunk, 0, read);
+        }
+        return format(algorithm, hasher.hash().toString());
+    }
+
+    /**
+     * Format a hexadecimal checksum with the name of its algorithm.
+     */
+    public static String format(ChecksumAlgorithm algorithm, String hex) {
+        return algorithm == MD5 ? hex : algorithm.getName() + SEPARATOR + hex;
+    }
+
+    /**
+     * An algorithm implemented by a Guava hash function.
+     */
+    private static class HashFunctionAlgorithm implements ChecksumAlgorithm {
+
+        private final String name;
+
+        private final HashFunction function;
+
+        HashFunctionAlgorithm(String name, HashFunction function) {
+            this.name = name;
+            this.function = function;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return function.newHasher();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.toddfast.mutagen.Mutation.Context;
+
+/**
+ * Execute inserts of literal values in bulk: the inserts of a same shape are bound to one prepared
+ * statement, the rows are grouped by partition into unlogged batches of at most batchSize rows,
+ * and the batches are executed asynchronously with at most window batches in flight.
+ * <p>
+ * When a row is inserted again, the batches already sent are awaited first so that the last insert wins,
+ * as when the statements are executed one by one. The caller flushes the inserter before executing any
+ * other statement.
+ */
+class BulkInserter {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BulkInserter.class);
+
+    private final Session session;
+
+    private final Context context;
+
+    private final CqlDirectives directives;
+
+    private final int batchSize;
+
+    private final int window;
+
+    // prepared shapes, by statement to prepare
+    private final Map<String, Shape> shapes = new HashMap<>();
+
+    // shapes which can not be executed in bulk
+    private final Set<String> unsupportedShapes = new HashSet<>();
+
+    // batches being filled, by table and partition key
+    private final Map<List<String>, Batch> pending = new LinkedHashMap<>();
+
+    // primary keys of the rows inserted since the last flush, with their table
+    private final Set<List<String>> rows = new HashSet<>();
+
+    private final Deque<Batch> inFlight = new ArrayDeque<>();
+
+    private int insertedRows;
+
+    private int executedBatches;
+
+    /**
+     * Constructor for BulkInserter.
+     *
+     * @param session
+     *            - the session to execute the batches.
+     * @param context
+     *            - the context of the mutation, to log.
+     * @param directives
+     *            - the directives of the script, applied to the batches.
+     * @param batchSize
+     *            - the maximum number of rows of a batch.
+     * @param window
+     *            - the maximum number of batches in flight.
+     */
+    BulkInserter(Session session, Context context, CqlDirectives directives, int batchSize, int window) {
+        this.session = session;
+        this.context = context;
+        this.directives = directives;
+        this.batchSize = Math.max(1, batchSize);
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * @return true if no row was added since the last flush.
+     */
+    boolean isIdle() {
+        return rows.isEmpty() && inFlight.isEmpty();
+    }
+
+    /**
+     * Add the row of an insert to its batch.
+     *
+     * @param insert
+     *            - the insert.
+     * @return false if the insert can not be executed in bulk, the caller executes it once the inserter is
+     *         flushed.
+     */
+    boolean add(CqlInsert insert) {
+        Shape shape = getShape(insert);
+        if (shape == null) {
+            return false;
+        }
+
+        // bind the values
+        ColumnDefinitions variables = shape.prepared.getVariables();
+        Object[] values = new Object[variables.size()];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = insert.getValue(i, variables.getType(i));
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Not binding \"{}\" : {}", insert, e.getMessage());
+            return false;
+        }
+
+        // the previous inserts of the same row complete first
+        if (!rows.add(shape.key(insert, shape.primaryKey))) {
+            flush();
+            rows.add(shape.key(insert, shape.primaryKey));
+        }
+
+        List<String> partition = shape.key(insert, shape.partitionKey);
+        Batch batch = pending.get(partition);
+        if (batch == null) {
+            batch = new Batch(insert);
+            pending.put(partition, batch);
+        }
+        batch.statement.add(shape.prepared.bind(values));
+        insertedRows++;
+        if (batch.statement.size() >= batchSize) {
+            pending.remove(partition);
+            send(batch);
+        }
+        return true;
+    }
+
+    private Shape getShape(CqlInsert insert) {
+        String cql = insert.getShape();
+        if (unsupportedShapes.contains(cql)) {
+            return null;
+        }
+        Shape shape = shapes.get(cql);
+        if (shape == null) {
+            shape = prepare(insert);
+            if (shape == null) {
+                unsupportedShapes.add(cql);
+                return null;
+            }
+            shapes.put(cql, shape);
+        }
+        return shape;
+    }
+
+    private Shape prepare(CqlInsert insert) {
+        String keyspace = insert.getKeyspace() != null ? insert.getKeyspace() : session.getLoggedKeyspace();
+        KeyspaceMetadata keyspaceMetadata = keyspace != null
+                ? session.getCluster().getMetadata().getKeyspace(keyspace) : null;
+        TableMetadata table = keyspaceMetadata != null ? keyspaceMetadata.getTable(insert.getTable()) : null;
+        if (table == null) {
+            LOGGER.debug("No metadata of the table of \"{}\", not executed in bulk", insert);
+            return null;
+        }
+        int[] partitionKey = indexes(insert, table.getPartitionKey());
+        int[] primaryKey = indexes(insert, table.getPrimaryKey());
+        if (partitionKey == null || primaryKey == null) {
+            return null;
+        }
+        try {
+            PreparedStatement prepared = session.prepare(insert.getShape());
+            context.debug("Prepared \"{}\" for bulk inserts", insert.getShape());
+            return new Shape(keyspace + "." + insert.getTable(), prepared, partitionKey, primaryKey);
+        } catch (DriverException e) {
+            LOGGER.debug("Could not prepare \"{}\", not executed in bulk", insert.getShape(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the indexes of key columns in the columns of an insert, or null if one is missing.
+     */
+    private static int[] indexes(CqlInsert insert, List<ColumnMetadata> key) {
+        int[] indexes = new int[key.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = insert.getColumns().indexOf(key.get(i).getName());
+            if (indexes[i] == -1) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+
+    private void send(Batch batch) {
+        while (inFlight.size() >= window) {
+            await(inFlight.removeFirst());
+        }
+        batch.future = session.executeAsync(directives.apply(batch.statement));
+        inFlight.addLast(batch);
+    }
+
+    private void await(Batch batch) {
+        try {
+            directives.getResult(batch.future);
+        } catch (TimeoutException e) {
+            throw CqlExecutor.onTimeout(context, batch.toString(), directives);
+        } catch (RuntimeException e) {
+            throw CqlExecutor.onFailure(context, batch.toString(), e);
+        }
+        executedBatches++;
+    }
+
+    /**
+     * Send the batches being filled and wait for all the batches in flight.
+     */
+    void flush() {
+        List<Batch> batches = new ArrayList<>(pending.values());
+        pending.clear();
+        for (Batch batch : batches) {
+            send(batch);
+        }
+        while (!inFlight.isEmpty()) {
+            await(inFlight.removeFirst());
+        }
+        if (!rows.isEmpty()) {
+            context.debug("Inserted {} rows in {} batches", insertedRows, executedBatches);
+        }
+        rows.clear();
+    }
+
+    /**
+     * Wait for the batches in flight after a failure, ignoring their result.
+     */
+    void awaitQuietly() {
+        pending.clear();
+        rows.clear();
+        for (Batch batch : inFlight) {
+            try {
+                batch.future.getUninterruptibly();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Ignoring failure of concurrent batch", e);
+            }
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * @return the number of rows inserted in bulk.
+     */
+    int getInsertedRows() {
+        return insertedRows;
+    }
+
+    /**
+     * @return the number of executed batches.
+     */
+    int getExecutedBatches() {
+        return executedBatches;
+    }
+
+    /**
+     * A prepared insert, with the indexes of the key columns in its values.
+     */
+    private static class Shape {
+
+        private final String table;
+
+        private final PreparedStatement prepared;
+
+        private final int[] partitionKey;
+
+        private final int[] primaryKey;
+
+        Shape(String table, PreparedStatement prepared, int[] partitionKey, int[] primaryKey) {
+            this.table = table;
+            this.prepared = prepared;
+            this.partitionKey = partitionKey;
+            this.primaryKey = primaryKey;
+        }
+
+        /**
+         * @return the table and the literal values of key columns of an insert.
+         */
+        List<String> key(CqlInsert insert, int[] indexes) {
+            String[] key = new String[indexes.length + 1];
+            key[0] = table;
+            for (int i = 0; i < indexes.length; i++) {
+                key[i + 1] = insert.getValueText(indexes[i]);
+            }
+            return Arrays.asList(key);
+        }
+    }
+
+    /**
+     * An unlogged batch of rows of a partition.
+     */
+    private static class Batch {
+
+        private final BatchStatement statement = new BatchStatement(BatchStatement.Type.UNLOGGED);
+
+        private final CqlInsert first;
+
+        private ResultSetFuture future;
+
+        Batch(CqlInsert first) {
+            this.first = first;
+        }
+
+        @Override
+        public String toString() {
+            return "BEGIN UNLOGGED BATCH " + first.getCql() + " ... (" + statement.size() + " rows) APPLY BATCH";
+        }
+    }
+}
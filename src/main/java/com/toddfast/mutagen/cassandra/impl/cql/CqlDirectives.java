@@ -0,0 +1,210 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The execution directives of a CQL script, written as comments before its first statement:<br>
+ * -- @consistency LOCAL_QUORUM<br>
+ * -- @readTimeoutMs 60000<br>
+ * -- @concurrency 64<br>
+ * -- @fetchSize 5000<br>
+ * The consistency and the fetch size are set on each statement. The read timeout bounds the wait for the result
+ * of each statement; the driver still gives up on a host after the read timeout of the socket options of the
+ * cluster, which must be at least as long. The concurrency replaces the statement parallelism and the bulk
+ * insert window for the script.
+ * Other tags of the header, such as -- @author, are ignored with a warning.
+ */
+public class CqlDirectives {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CqlDirectives.class);
+
+    /**
+     * No directive: the statements are executed with the defaults of the session.
+     */
+    public static final CqlDirectives NONE = new CqlDirectives();
+
+    private static final Pattern DIRECTIVE = Pattern.compile("\\s*(?:--|//)\\s*@(\\w+)(?:\\s+(\\S+))?\\s*");
+
+    private static final Set<String> NAMES = ImmutableSet.of("consistency", "readTimeoutMs", "concurrency",
+            "fetchSize");
+
+    private static final Pattern COMMENT = Pattern.compile("\\s*((?:--|//).*)?");
+
+    private ConsistencyLevel consistency;
+
+    private long readTimeoutMillis;
+
+    private int concurrency;
+
+    private int fetchSize;
+
+    /**
+     * Read the directives in the comment lines at the beginning of a script.
+     *
+     * @param script
+     *            - the script, between position and limit.
+     * @return the directives, {@link #NONE} if there is no directive.
+     * @throws IllegalArgumentException
+     *             if a directive has no value or an invalid value.
+     */
+    public static CqlDirectives parse(ByteBuffer script) {
+        ByteBuffer bytes = script.duplicate();
+        CqlDirectives directives = null;
+        StringBuilder line = new StringBuilder();
+        // skip a byte order mark
+        if (bytes.remaining() >= 3 && bytes.get(bytes.position()) == (byte) 0xEF
+                && bytes.get(bytes.position() + 1) == (byte) 0xBB && bytes.get(bytes.position() + 2) == (byte) 0xBF) {
+            bytes.position(bytes.position() + 3);
+        }
+        while (bytes.hasRemaining()) {
+            line.setLength(0);
+            char c;
+            while (bytes.hasRemaining() && (c = (char) (bytes.get() & 0xFF)) != '\n') {
+                if (c != '\r') {
+                    line.append(c);
+                }
+            }
+            if (!COMMENT.matcher(line).matches()) {
+                // the first statement
+                break;
+            }
+            Matcher matcher = DIRECTIVE.matcher(line);
+            if (matcher.matches()) {
+                if (!NAMES.contains(matcher.group(1))) {
+                    LOGGER.warn("Ignoring unknown directive @{} in \"{}\"", matcher.group(1), line.toString().trim());
+                    continue;
+                }
+                if (directives == null) {
+                    directives = new CqlDirectives();
+                }
+                directives.set(matcher.group(1), matcher.group(2));
+            }
+        }
+        return directives != null ? directives : NONE;
+    }
+
+    private void set(String name, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing value of directive @" + name);
+        }
+        switch (name) {
+        case "consistency":
+            try {
+                consistency = ConsistencyLevel.valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown consistency level \"" + value + "\"", e);
+            }
+            break;
+        case "readTimeoutMs":
+            readTimeoutMillis = parsePositive(name, value);
+            break;
+        case "concurrency":
+            concurrency = (int) parsePositive(name, value);
+            break;
+        case "fetchSize":
+            fetchSize = (int) parsePositive(name, value);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown directive @" + name);
+        }
+    }
+
+    private static long parsePositive(String name, String value) {
+        try {
+            long result = Long.parseLong(value);
+            if (result > 0 && result <= Integer.MAX_VALUE) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Directive @" + name + " should be a positive integer instead of \""
+                + value + "\"");
+    }
+
+    /**
+     * Set the consistency and the fetch size of the directives on a statement.
+     *
+     * @param statement
+     *            - the statement.
+     * @return the statement.
+     */
+    public Statement apply(Statement statement) {
+        if (consistency != null) {
+            statement.setConsistencyLevel(consistency);
+        }
+        if (fetchSize > 0) {
+            statement.setFetchSize(fetchSize);
+        }
+        return statement;
+    }
+
+    /**
+     * Wait for the result of a statement, at most the read timeout of the directives.
+     *
+     * @param future
+     *            - the result of the statement.
+     * @return the result.
+     * @throws TimeoutException
+     *             if the result did not come in time, the statement is then cancelled.
+     */
+    public ResultSet getResult(ResultSetFuture future) throws TimeoutException {
+        if (readTimeoutMillis <= 0) {
+            return future.getUninterruptibly();
+        }
+        try {
+            return future.getUninterruptibly(readTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the consistency level of the statements, or null for the default of the session.
+     */
+    public ConsistencyLevel getConsistency() {
+        return consistency;
+    }
+
+    /**
+     * @return the maximum time to wait for a statement in milliseconds, 0 to wait for the driver.
+     */
+    public long getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * @return the maximum number of statements in flight, 0 for the configured parallelism.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the fetch size of the statements, 0 for the default of the session.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "[consistency=" + consistency + ", readTimeoutMs=" + readTimeoutMillis + ", concurrency="
+                + concurrency + ", fetchSize=" + fetchSize + "]";
+    }
+}
@@ -0,0 +1,517 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.exceptions.QueryExecutionException;
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.Mutation.Context;
+import com.toddfast.mutagen.cassandra.impl.version.StatementCheckpoint;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
+
+/**
+ * Execute the statements of a CQL script.
+ * With a parallelism greater than 1, a statement is sent as soon as the earlier statements
+ * it conflicts with are done (see {@link CqlStatement#conflictsWith(CqlStatement)}),
+ * with at most parallelism statements in flight. Otherwise the statements are executed one by one.
+ * When schema changes are grouped, consecutive independent DDL statements are sent back to back
+ * and the schema agreement is checked once for the group, before the next statement.
+ * With bulk inserts enabled, the inserts of literal values are executed by a {@link BulkInserter}
+ * and the other statements wait for them.
+ * The statements and the batches are executed with the {@link CqlDirectives} of the script.
+ * With checkpoints enabled, each statement executed successfully on its own is recorded with its index and hash,
+ * as well as the inserts executed in bulk once they are flushed. The checkpoints are written asynchronously and
+ * awaited before the execution ends. A rerun skips the statements recorded with the same hash at the same index.
+ */
+public class CqlExecutor {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CqlExecutor.class);
+
+    private static final long SCHEMA_AGREEMENT_TIMEOUT_MILLIS = 30000;
+
+    private static final long SCHEMA_AGREEMENT_POLL_MILLIS = 200;
+
+    private static final int CHECKPOINT_WINDOW = 256;
+
+    private final Session session;
+
+    private final Context context;
+
+    private final int parallelism;
+
+    private final boolean groupSchemaChanges;
+
+    // in flight statements, in order of the script
+    private final Map<CqlStatement, ResultSetFuture> inFlight = new LinkedHashMap<>();
+
+    // DDL statements sent since the last schema agreement check
+    private final List<CqlStatement> schemaGroup = new ArrayList<>();
+
+    private boolean schemaGroupInAgreement = true;
+
+    // when the first statement of the group was sent
+    private long schemaGroupStart;
+
+    private int schemaGroups;
+
+    private int schemaAgreementWaits;
+
+    private long schemaAgreementMillis;
+
+    private BulkInserter bulkInserter;
+
+    private CqlDirectives directives = CqlDirectives.NONE;
+
+    private VersionTableDao checkpointDao;
+
+    private String checkpointVersionId;
+
+    // statements executed by a previous run, by index of their first statement
+    private Map<Integer, StatementCheckpoint> checkpoints;
+
+    // inserts executed in bulk since the last flush, and the index of the first one
+    private final List<String> bulkStatements = new ArrayList<>();
+
+    private int bulkFirstStatement;
+
+    // indexes of the statements in flight
+    private final Map<CqlStatement, Integer> statementIndexes = new HashMap<>();
+
+    // checkpoints being written
+    private final Deque<ResultSetFuture> checkpointWrites = new ArrayDeque<>();
+
+    private int skippedStatements;
+
+    /**
+     * The keyspace of the unqualified names, changed by USE statements.
+     */
+    private String keyspace;
+
+    /**
+     * Constructor for CqlExecutor.
+     * 
+     * @param session
+     *            - the session to execute the statements.
+     * @param context
+     *            - the context of the mutation, to log.
+     * @param parallelism
+     *            - the maximum number of statements in flight.
+     * @param groupSchemaChanges
+     *            - true to wait for schema agreement once per group of independent DDL statements.
+     */
+    public CqlExecutor(Session session, Context context, int parallelism, boolean groupSchemaChanges) {
+        this.session = session;
+        this.context = context;
+        this.parallelism = Math.max(1, parallelism);
+        this.groupSchemaChanges = groupSchemaChanges;
+        this.keyspace = session.getLoggedKeyspace();
+    }
+
+    /**
+     * Set the directives of the script, before enabling bulk inserts.
+     * 
+     * @param directives
+     *            - the directives.
+     */
+    public void setDirectives(CqlDirectives directives) {
+        this.directives = directives;
+    }
+
+    /**
+     * Record the executed statements, and skip the statements recorded by a previous run.
+     * The checkpoints are all written when {@link #execute(Iterator)} returns or throws.
+     * 
+     * @param dao
+     *            - the dao of the table Version, where the checkpoints are recorded.
+     * @param versionId
+     *            - the version id of the mutation.
+     */
+    public void enableCheckpoints(VersionTableDao dao, String versionId) {
+        checkpointDao = dao;
+        checkpointVersionId = versionId;
+        checkpoints = dao.getStatementCheckpoints(versionId);
+    }
+
+    /**
+     * Execute the inserts of literal values as prepared statements, grouped by partition in unlogged batches.
+     * 
+     * @param batchSize
+     *            - the maximum number of rows of a batch.
+     * @param window
+     *            - the maximum number of batches in flight.
+     */
+    public void enableBulkInserts(int batchSize, int window) {
+        bulkInserter = new BulkInserter(session, context, directives, batchSize, window);
+    }
+
+    /**
+     * Execute statements in order of the script.
+     * 
+     * @param statements
+     *            - the statements.
+     */
+    public void execute(Iterator<String> statements) {
+        LOGGER.trace("Entering execute(parallelism={}, groupSchemaChanges={}, directives={})", parallelism,
+                groupSchemaChanges, directives);
+        ResumedStatements resumed = new ResumedStatements(statements);
+        try {
+            while (resumed.hasNext()) {
+                String cql = resumed.next();
+                int index = resumed.getIndex();
+                if (bulkInserter != null) {
+                    CqlInsert insert = CqlInsert.parse(cql);
+                    if (insert != null) {
+                        if (bulkInserter.isIdle()) {
+                            awaitAll();
+                        }
+                        if (bulkInserter.add(insert)) {
+                            if (checkpointDao != null) {
+                                if (bulkStatements.isEmpty()) {
+                                    bulkFirstStatement = index;
+                                }
+                                bulkStatements.add(cql);
+                            }
+                            continue;
+                        }
+                    }
+                    flushBulkInserts();
+                }
+                CqlStatement statement = CqlStatement.parse(cql, keyspace);
+                if (statement.getUsedKeyspace() != null) {
+                    keyspace = statement.getUsedKeyspace();
+                }
+                boolean grouped = groupSchemaChanges && statement.isDdl();
+
+                // the schema must agree before a statement which is not part of the group
+                if (!schemaGroup.isEmpty()
+                        && (!grouped || schemaGroup.size() >= parallelism || conflictsWithSchemaGroup(statement))) {
+                    closeSchemaGroup();
+                }
+
+                // keep the order with the conflicting statements
+                List<CqlStatement> dependencies = new ArrayList<>();
+                for (CqlStatement previous : inFlight.keySet()) {
+                    if (statement.conflictsWith(previous)) {
+                        dependencies.add(previous);
+                    }
+                }
+                for (CqlStatement dependency : dependencies) {
+                    await(dependency);
+                }
+
+                // the statements of a group are sent back to back, a group holds at most parallelism statements
+                while (inFlight.size() >= parallelism) {
+                    await(inFlight.keySet().iterator().next());
+                }
+
+                if (statement.isBarrier() || parallelism == 1) {
+                    context.debug("Executing CQL statement \"{}\"", statement);
+                } else {
+                    context.debug("Executing CQL statement \"{}\" touching {}", statement, statement.getObjects());
+                }
+                inFlight.put(statement, session.executeAsync(directives.apply(new SimpleStatement(statement.getCql()))));
+                statementIndexes.put(statement, index);
+                if (grouped) {
+                    if (schemaGroup.isEmpty()) {
+                        schemaGroupStart = System.currentTimeMillis();
+                    }
+                    schemaGroup.add(statement);
+                }
+            }
+
+            if (bulkInserter != null) {
+                flushBulkInserts();
+            }
+            awaitAll();
+            if (skippedStatements > 0) {
+                context.info("Skipped {} statements executed by a previous run", skippedStatements);
+            }
+        } finally {
+            bulkStatements.clear();
+            if (bulkInserter != null) {
+                bulkInserter.awaitQuietly();
+            }
+            // on failure, let the statements already sent complete before reporting it,
+            // and record the ones which succeeded
+            for (Map.Entry<CqlStatement, ResultSetFuture> entry : inFlight.entrySet()) {
+                try {
+                    entry.getValue().getUninterruptibly();
+                    checkpoint(entry.getKey());
+                } catch (RuntimeException e) {
+                    LOGGER.debug("Ignoring failure of concurrent statement", e);
+                }
+            }
+            inFlight.clear();
+            statementIndexes.clear();
+            while (!checkpointWrites.isEmpty()) {
+                awaitCheckpoint(checkpointWrites.removeFirst());
+            }
+        }
+        LOGGER.trace("Leaving execute()");
+    }
+
+    /**
+     * Wait for the inserts executed in bulk, then record them.
+     */
+    private void flushBulkInserts() {
+        bulkInserter.flush();
+        if (checkpointDao != null && !bulkStatements.isEmpty()) {
+            checkpoint(new StatementCheckpoint(bulkFirstStatement, bulkFirstStatement + bulkStatements.size() - 1,
+                    StatementCheckpoint.hash(bulkStatements)));
+            bulkStatements.clear();
+        }
+    }
+
+    /**
+     * Record a statement executed successfully.
+     */
+    private void checkpoint(CqlStatement statement) {
+        Integer index = statementIndexes.remove(statement);
+        if (checkpointDao != null && index != null) {
+            checkpoint(new StatementCheckpoint(index, index,
+                    StatementCheckpoint.hash(Collections.singletonList(statement.getCql()))));
+        }
+    }
+
+    /**
+     * Write a checkpoint asynchronously, with at most CHECKPOINT_WINDOW checkpoints in flight.
+     */
+    private void checkpoint(StatementCheckpoint checkpoint) {
+        while (checkpointWrites.size() >= CHECKPOINT_WINDOW) {
+            awaitCheckpoint(checkpointWrites.removeFirst());
+        }
+        checkpointWrites.addLast(checkpointDao.getSession().executeAsync(
+                checkpointDao.bindStatementCheckpoint(checkpointVersionId, checkpoint)));
+    }
+
+    private void awaitCheckpoint(ResultSetFuture future) {
+        try {
+            future.getUninterruptibly();
+        } catch (RuntimeException e) {
+            // the statements are executed again if the mutation is resumed
+            LOGGER.warn("Could not record a statement checkpoint", e);
+        }
+    }
+
+    /**
+     * Wait for all the statements in flight and for schema agreement.
+     */
+    private void awaitAll() {
+        if (!schemaGroup.isEmpty()) {
+            closeSchemaGroup();
+        }
+        while (!inFlight.isEmpty()) {
+            await(inFlight.keySet().iterator().next());
+        }
+    }
+
+    private boolean conflictsWithSchemaGroup(CqlStatement statement) {
+        for (CqlStatement member : schemaGroup) {
+            if (statement.conflictsWith(member)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wait for the statements of the group, then for schema agreement unless they all reported it.
+     */
+    private void closeSchemaGroup() {
+        for (CqlStatement member : schemaGroup) {
+            if (inFlight.containsKey(member)) {
+                await(member);
+            }
+        }
+
+        boolean agreement = true;
+        if (!schemaGroupInAgreement) {
+            long start = System.currentTimeMillis();
+            while (!(agreement = session.getCluster().getMetadata().checkSchemaAgreement())
+                    && System.currentTimeMillis() - start < SCHEMA_AGREEMENT_TIMEOUT_MILLIS) {
+                Uninterruptibles.sleepUninterruptibly(SCHEMA_AGREEMENT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            schemaAgreementWaits++;
+        }
+
+        // the driver waits for the agreement of each statement, the whole group is counted
+        long waited = System.currentTimeMillis() - schemaGroupStart;
+        schemaAgreementMillis += waited;
+        schemaGroups++;
+        if (agreement) {
+            context.debug("Schema agreement after {} statements reached in {} ms", schemaGroup.size(), waited);
+        } else {
+            context.info("Schema agreement after {} statements not reached in {} ms", schemaGroup.size(), waited);
+        }
+        schemaGroup.clear();
+        schemaGroupInAgreement = true;
+    }
+
+    private void await(CqlStatement statement) {
+        ResultSetFuture future = inFlight.remove(statement);
+        ResultSet result;
+        try {
+            result = directives.getResult(future);
+        } catch (TimeoutException e) {
+            throw onTimeout(context, statement.getCql(), directives);
+        } catch (RuntimeException e) {
+            throw onFailure(context, statement.getCql(), e);
+        }
+        context.debug("Successfully executed CQL statement \"{}\" in {} attempts", statement, result);
+        checkpoint(statement);
+        if (schemaGroup.contains(statement) && !result.getExecutionInfo().isSchemaInAgreement()) {
+            schemaGroupInAgreement = false;
+        }
+    }
+
+    static RuntimeException onFailure(Context context, String statement, RuntimeException e) {
+        if (e instanceof QueryValidationException) {
+            context.error("Statement Validatation Exception executing CQL \"{}\"", statement, e);
+            return new MutagenException("Statement Validation Exception executing CQL \"" +
+                    statement + "\"", e);
+        }
+        if (e instanceof QueryExecutionException) {
+            context.error("Statement Execution Exception executing CQL \"{}\"", statement, e);
+            return new MutagenException("Statement Execution Exception executing CQL \"" +
+                    statement + "\"", e);
+        }
+        return e;
+    }
+
+    static MutagenException onTimeout(Context context, String statement, CqlDirectives directives) {
+        context.error("Timed out after {} ms executing CQL \"{}\"", directives.getReadTimeoutMillis(), statement);
+        return new MutagenException("Timed out after " + directives.getReadTimeoutMillis() +
+                " ms executing CQL \"" + statement + "\"");
+    }
+
+    /**
+     * The statements of the script with their index, without the statements recorded by a previous run
+     * with the same hash at the same index.
+     */
+    private class ResumedStatements implements Iterator<String> {
+
+        private final Iterator<String> statements;
+
+        // statements read to compare with a checkpoint they did not match
+        private final Deque<String> readAhead = new ArrayDeque<>();
+
+        private int next;
+
+        private int index = -1;
+
+        ResumedStatements(Iterator<String> statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        public boolean hasNext() {
+            skip();
+            return !readAhead.isEmpty() || statements.hasNext();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            index = next++;
+            return !readAhead.isEmpty() ? readAhead.removeFirst() : statements.next();
+        }
+
+        /**
+         * @return the index in the script of the last statement returned.
+         */
+        int getIndex() {
+            return index;
+        }
+
+        private void skip() {
+            StatementCheckpoint checkpoint;
+            while (readAhead.isEmpty() && checkpoints != null && (checkpoint = checkpoints.get(next)) != null
+                    && statements.hasNext()) {
+                List<String> covered = new ArrayList<>(Math.min(checkpoint.size(), 1024));
+                while (covered.size() < checkpoint.size() && statements.hasNext()) {
+                    covered.add(statements.next());
+                }
+                if (covered.size() == checkpoint.size()
+                        && StatementCheckpoint.hash(covered).equals(checkpoint.getHash())) {
+                    context.debug("Skipping statements {} to {} executed by a previous run", next + 1,
+                            next + covered.size());
+                    skippedStatements += covered.size();
+                    next += covered.size();
+                } else {
+                    context.info("Statements {} to {} changed since they were executed", next + 1,
+                            next + covered.size());
+                    readAhead.addAll(covered);
+                }
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @return the number of groups of DDL statements.
+     */
+    public int getSchemaGroups() {
+        return schemaGroups;
+    }
+
+    /**
+     * @return the number of explicit schema agreement waits.
+     */
+    public int getSchemaAgreementWaits() {
+        return schemaAgreementWaits;
+    }
+
+    /**
+     * @return the time from the first statement of each group of DDL statements to the schema agreement,
+     *         in milliseconds.
+     */
+    public long getSchemaAgreementMillis() {
+        return schemaAgreementMillis;
+    }
+
+    /**
+     * @return the number of statements skipped because a previous run executed them.
+     */
+    public int getSkippedStatements() {
+        return skippedStatements;
+    }
+
+    /**
+     * @return the number of rows inserted in bulk.
+     */
+    public int getBulkInsertedRows() {
+        return bulkInserter != null ? bulkInserter.getInsertedRows() : 0;
+    }
+
+    /**
+     * @return the number of batches of rows inserted in bulk.
+     */
+    public int getBulkInsertBatches() {
+        return bulkInserter != null ? bulkInserter.getExecutedBatches() : 0;
+    }
+}
@@ -0,0 +1,366 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.datastax.driver.core.DataType;
+import com.google.common.io.BaseEncoding;
+import com.google.common.net.InetAddresses;
+
+/**
+ * An INSERT statement whose values are all literals:<br>
+ * INSERT INTO [keyspace.]table (column, ...) VALUES (literal, ...)<br>
+ * Inserts of the same table and columns have the same shape, they are executed with one prepared statement
+ * bound with the values of each insert. Inserts with options (USING, IF NOT EXISTS), function calls,
+ * collections or bind markers are not recognised.
+ */
+public class CqlInsert {
+
+    static final Pattern IDENTIFIER = Pattern.compile("\"(?:[^\"]|\"\")+\"|[A-Za-z_]\\w*");
+
+    private static final Pattern UUID_LITERAL = Pattern.compile(
+            "[0-9A-Fa-f]{8}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12}(?![\\w-])");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?(?![\\w.])");
+
+    private static final Pattern BLOB_LITERAL = Pattern.compile("0[xX][0-9A-Fa-f]*(?!\\w)");
+
+    private static final Pattern WORD_LITERAL = Pattern.compile("(?i)(true|false|null)(?!\\w)");
+
+    /**
+     * The kind of a literal value.
+     */
+    enum Kind {
+        STRING, INTEGER, FLOAT, BOOLEAN, UUID, BLOB, NULL
+    }
+
+    private final String cql;
+
+    private final String keyspace;
+
+    private final String table;
+
+    private final List<String> columns;
+
+    private final List<Kind> kinds;
+
+    private final List<String> values;
+
+    private final String shape;
+
+    private CqlInsert(String cql, String keyspace, String table, List<String> columns, List<String> columnsCql,
+            List<Kind> kinds, List<String> values) {
+        this.cql = cql;
+        this.keyspace = keyspace;
+        this.table = table;
+        this.columns = Collections.unmodifiableList(columns);
+        this.kinds = Collections.unmodifiableList(kinds);
+        this.values = Collections.unmodifiableList(values);
+
+        StringBuilder builder = new StringBuilder("INSERT INTO ");
+        if (keyspace != null) {
+            builder.append(keyspace).append('.');
+        }
+        builder.append(table).append(" (");
+        for (int i = 0; i < columnsCql.size(); i++) {
+            builder.append(i > 0 ? ", " : "").append(columnsCql.get(i));
+        }
+        builder.append(") VALUES (");
+        for (int i = 0; i < columnsCql.size(); i++) {
+            builder.append(i > 0 ? ", ?" : "?");
+        }
+        this.shape = builder.append(')').toString();
+    }
+
+    /**
+     * Recognise an insert of literal values.
+     *
+     * @param cql
+     *            - a statement.
+     * @return the insert, or null if the statement is not an insert of literal values.
+     */
+    public static CqlInsert parse(String cql) {
+        Scanner scanner = new Scanner(cql);
+        if (!scanner.keyword("INSERT") || !scanner.keyword("INTO")) {
+            return null;
+        }
+        String keyspace = null;
+        String table = scanner.identifier();
+        if (table != null && scanner.symbol('.')) {
+            keyspace = table;
+            table = scanner.identifier();
+        }
+        if (table == null || !scanner.symbol('(')) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>();
+        List<String> columnsCql = new ArrayList<>();
+        do {
+            String column = scanner.identifier();
+            if (column == null) {
+                return null;
+            }
+            columnsCql.add(column);
+            columns.add(normalize(column));
+        } while (scanner.symbol(','));
+        if (!scanner.symbol(')') || !scanner.keyword("VALUES") || !scanner.symbol('(')) {
+            return null;
+        }
+        List<Kind> kinds = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        do {
+            if (!scanner.literal(kinds, values)) {
+                return null;
+            }
+        } while (scanner.symbol(','));
+        if (!scanner.symbol(')') || values.size() != columns.size()) {
+            return null;
+        }
+        scanner.symbol(';');
+        if (!scanner.atEnd()) {
+            return null;
+        }
+        return new CqlInsert(cql, keyspace, table, columns, columnsCql, kinds, values);
+    }
+
+    /**
+     * Unquoted identifiers are case insensitive.
+     */
+    static String normalize(String identifier) {
+        if (identifier.startsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1).replace("\"\"", "\"");
+        }
+        return identifier.toLowerCase();
+    }
+
+    /**
+     * @return the statement.
+     */
+    public String getCql() {
+        return cql;
+    }
+
+    /**
+     * @return the keyspace as written in the statement, or null.
+     */
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    /**
+     * @return the table as written in the statement.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the names of the columns, unquoted.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the text of the literal value of a column.
+     */
+    public String getValueText(int index) {
+        return kinds.get(index) + ":" + values.get(index);
+    }
+
+    /**
+     * @return the statement to prepare for the inserts of this shape, with a bind marker for each column.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * Convert the literal value of a column to the Java type bound for a CQL type.
+     *
+     * @param index
+     *            - the index of the column.
+     * @param type
+     *            - the type of the column.
+     * @return the value.
+     * @throws IllegalArgumentException
+     *             if the literal can't be converted to the type.
+     */
+    public Object getValue(int index, DataType type) {
+        Kind kind = kinds.get(index);
+        String value = values.get(index);
+        if (kind == Kind.NULL) {
+            return null;
+        }
+        switch (type.getName()) {
+        case ASCII:
+        case TEXT:
+        case VARCHAR:
+            check(kind, Kind.STRING);
+            return value;
+        case INET:
+            check(kind, Kind.STRING);
+            return InetAddresses.forString(value);
+        case INT:
+            check(kind, Kind.INTEGER);
+            return Integer.valueOf(value);
+        case BIGINT:
+            check(kind, Kind.INTEGER);
+            return Long.valueOf(value);
+        case TIMESTAMP:
+            check(kind, Kind.INTEGER);
+            return new Date(Long.parseLong(value));
+        case VARINT:
+            check(kind, Kind.INTEGER);
+            return new BigInteger(value);
+        case DECIMAL:
+            checkNumber(kind);
+            return new BigDecimal(value);
+        case DOUBLE:
+            checkNumber(kind);
+            return Double.valueOf(value);
+        case FLOAT:
+            checkNumber(kind);
+            return Float.valueOf(value);
+        case BOOLEAN:
+            check(kind, Kind.BOOLEAN);
+            return Boolean.valueOf(value);
+        case UUID:
+        case TIMEUUID:
+            check(kind, Kind.UUID);
+            return UUID.fromString(value);
+        case BLOB:
+            check(kind, Kind.BLOB);
+            return ByteBuffer.wrap(BaseEncoding.base16().decode(value.toUpperCase()));
+        default:
+            throw new IllegalArgumentException("Unsupported type " + type + " for literal " + value);
+        }
+    }
+
+    private static void check(Kind kind, Kind expected) {
+        if (kind != expected) {
+            throw new IllegalArgumentException("Expected a literal " + expected + " instead of " + kind);
+        }
+    }
+
+    private static void checkNumber(Kind kind) {
+        if (kind != Kind.INTEGER && kind != Kind.FLOAT) {
+            throw new IllegalArgumentException("Expected a number literal instead of " + kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return cql;
+    }
+
+    /**
+     * Read the tokens of an insert.
+     */
+    private static class Scanner {
+
+        private final String cql;
+
+        private int position;
+
+        Scanner(String cql) {
+            this.cql = cql;
+        }
+
+        private void skipWhitespace() {
+            while (position < cql.length() && Character.isWhitespace(cql.charAt(position))) {
+                position++;
+            }
+        }
+
+        private String match(Pattern pattern) {
+            skipWhitespace();
+            Matcher matcher = pattern.matcher(cql);
+            matcher.region(position, cql.length());
+            if (!matcher.lookingAt()) {
+                return null;
+            }
+            position = matcher.end();
+            return matcher.group();
+        }
+
+        boolean keyword(String keyword) {
+            skipWhitespace();
+            int end = position + keyword.length();
+            if (cql.regionMatches(true, position, keyword, 0, keyword.length())
+                    && (end == cql.length() || !Character.isLetterOrDigit(cql.charAt(end)))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        String identifier() {
+            return match(IDENTIFIER);
+        }
+
+        boolean symbol(char symbol) {
+            skipWhitespace();
+            if (position < cql.length() && cql.charAt(position) == symbol) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean atEnd() {
+            skipWhitespace();
+            return position == cql.length();
+        }
+
+        boolean literal(List<Kind> kinds, List<String> values) {
+            skipWhitespace();
+            if (position < cql.length() && cql.charAt(position) == '\'') {
+                StringBuilder value = new StringBuilder();
+                int i = position + 1;
+                while (i < cql.length()) {
+                    char c = cql.charAt(i++);
+                    if (c == '\'') {
+                        if (i < cql.length() && cql.charAt(i) == '\'') {
+                            i++;
+                        } else {
+                            position = i;
+                            kinds.add(Kind.STRING);
+                            values.add(value.toString());
+                            return true;
+                        }
+                    }
+                    value.append(c);
+                }
+                return false;
+            }
+            String value;
+            if ((value = match(UUID_LITERAL)) != null) {
+                kinds.add(Kind.UUID);
+                values.add(value);
+            } else if ((value = match(BLOB_LITERAL)) != null) {
+                kinds.add(Kind.BLOB);
+                values.add(value.substring(2));
+            } else if ((value = match(NUMBER_LITERAL)) != null) {
+                kinds.add(value.indexOf('.') == -1 && value.indexOf('e') == -1 && value.indexOf('E') == -1
+                        ? Kind.INTEGER : Kind.FLOAT);
+                values.add(value);
+            } else if ((value = match(WORD_LITERAL)) != null) {
+                String word = value.toLowerCase();
+                kinds.add("null".equals(word) ? Kind.NULL : Kind.BOOLEAN);
+                values.add(word);
+            } else {
+                return false;
+            }
+            return true;
+        }
+    }
+}
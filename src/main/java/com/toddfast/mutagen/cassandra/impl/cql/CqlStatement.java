@@ -0,0 +1,219 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Joiner;
+
+/**
+ * A CQL statement of a script with the schema objects it touches.
+ * Two statements which touch different objects do not depend on each other and may run concurrently.
+ * A statement which could not be analysed is a barrier: it depends on all the others.
+ * The names qualified by the keyspace of the session are the same objects as the unqualified names.
+ */
+public class CqlStatement {
+
+    private static final String NAME = "((?:\"[^\"]+\"|\\w+)(?:\\s*\\.\\s*(?:\"[^\"]+\"|\\w+))?)";
+
+    private static final String IF_NOT_EXISTS = "(?:IF\\s+NOT\\s+EXISTS\\s+)?";
+
+    private static final String IF_EXISTS = "(?:IF\\s+EXISTS\\s+)?";
+
+    private static final Pattern CREATE_TABLE = compile("CREATE\\s+(?:TABLE|COLUMNFAMILY)\\s+" + IF_NOT_EXISTS + NAME);
+
+    private static final Pattern ALTER_TABLE = compile("ALTER\\s+(?:TABLE|COLUMNFAMILY)\\s+" + NAME);
+
+    private static final Pattern DROP_TABLE = compile("DROP\\s+(?:TABLE|COLUMNFAMILY)\\s+" + IF_EXISTS + NAME);
+
+    private static final Pattern TRUNCATE = compile("TRUNCATE\\s+(?:TABLE\\s+)?" + NAME);
+
+    private static final Pattern CREATE_TYPE = compile("CREATE\\s+TYPE\\s+" + IF_NOT_EXISTS + NAME);
+
+    private static final Pattern ALTER_TYPE = compile("ALTER\\s+TYPE\\s+" + NAME);
+
+    private static final Pattern DROP_TYPE = compile("DROP\\s+TYPE\\s+" + IF_EXISTS + NAME);
+
+    private static final Pattern CREATE_INDEX = compile("CREATE\\s+(?:CUSTOM\\s+)?INDEX\\s+" + IF_NOT_EXISTS
+            + "(?:(?:\"[^\"]+\"|\\w+)\\s+)?ON\\s+" + NAME);
+
+    private static final Pattern CREATE_TRIGGER = compile("CREATE\\s+TRIGGER\\s+" + IF_NOT_EXISTS
+            + "(?:\"[^\"]+\"|\\w+)\\s+ON\\s+" + NAME);
+
+    private static final Pattern INSERT = compile("INSERT\\s+INTO\\s+" + NAME);
+
+    private static final Pattern UPDATE = compile("UPDATE\\s+" + NAME);
+
+    private static final Pattern DELETE = compile("DELETE\\s+.*?\\bFROM\\s+" + NAME);
+
+    private static final Pattern SELECT = compile("SELECT\\s+.*?\\bFROM\\s+" + NAME);
+
+    private static final Pattern USE = compile("USE\\s+(\"[^\"]+\"|\\w+)");
+
+    private static final Pattern FROZEN_TYPE = Pattern.compile("frozen\\s*<\\s*" + NAME + "\\s*>",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String cql;
+
+    private final Set<String> objects;
+
+    private final boolean ddl;
+
+    private final String usedKeyspace;
+
+    private CqlStatement(String cql, Set<String> objects, boolean ddl, String usedKeyspace) {
+        this.cql = cql;
+        this.objects = objects;
+        this.ddl = ddl;
+        this.usedKeyspace = usedKeyspace;
+    }
+
+    private static Pattern compile(String regex) {
+        return Pattern.compile("^\\s*" + regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    /**
+     * Analyse a statement, whose names are all kept as written.
+     * 
+     * @param cql
+     *            - the statement.
+     * @return the analysed statement.
+     */
+    public static CqlStatement parse(String cql) {
+        return parse(cql, null);
+    }
+
+    /**
+     * Analyse a statement executed in a keyspace.
+     * 
+     * @param cql
+     *            - the statement.
+     * @param keyspace
+     *            - the keyspace of the session as written in CQL, whose qualifier is removed from the names, or null.
+     * @return the analysed statement.
+     */
+    public static CqlStatement parse(String cql, String keyspace) {
+        if (keyspace != null) {
+            keyspace = normalize(keyspace, null);
+        }
+        Set<String> objects = new HashSet<>();
+
+        String table;
+        String type;
+        boolean ddl = true;
+        if ((table = match(CREATE_TABLE, cql, keyspace)) != null
+                || (table = match(ALTER_TABLE, cql, keyspace)) != null) {
+            objects.add("table:" + table);
+            addTypeReferences(cql, keyspace, objects);
+        } else if ((table = match(DROP_TABLE, cql, keyspace)) != null
+                || (table = match(TRUNCATE, cql, keyspace)) != null
+                || (table = match(CREATE_INDEX, cql, keyspace)) != null
+                || (table = match(CREATE_TRIGGER, cql, keyspace)) != null) {
+            objects.add("table:" + table);
+        } else if ((type = match(CREATE_TYPE, cql, keyspace)) != null
+                || (type = match(ALTER_TYPE, cql, keyspace)) != null) {
+            objects.add("type:" + type);
+            addTypeReferences(cql, keyspace, objects);
+        } else if ((type = match(DROP_TYPE, cql, keyspace)) != null) {
+            objects.add("type:" + type);
+        } else if ((table = match(INSERT, cql, keyspace)) != null
+                || (table = match(UPDATE, cql, keyspace)) != null
+                || (table = match(DELETE, cql, keyspace)) != null
+                || (table = match(SELECT, cql, keyspace)) != null) {
+            ddl = false;
+            objects.add("table:" + table);
+        } else {
+            // keyspaces, batches, DROP INDEX, USE... : a barrier
+            Matcher use = USE.matcher(cql);
+            return new CqlStatement(cql, null, true, use.find() ? use.group(1) : null);
+        }
+
+        return new CqlStatement(cql, Collections.unmodifiableSet(objects), ddl, null);
+    }
+
+    private static String match(Pattern pattern, String cql, String keyspace) {
+        Matcher matcher = pattern.matcher(cql);
+        return matcher.find() ? normalize(matcher.group(1), keyspace) : null;
+    }
+
+    /**
+     * Add the user types referenced as frozen column types.
+     */
+    private static void addTypeReferences(String cql, String keyspace, Set<String> objects) {
+        Matcher matcher = FROZEN_TYPE.matcher(cql);
+        while (matcher.find()) {
+            objects.add("type:" + normalize(matcher.group(1), keyspace));
+        }
+    }
+
+    /**
+     * Normalize a possibly qualified name: unquoted identifiers are case insensitive,
+     * and the qualifier is removed when it is the keyspace of the session.
+     */
+    private static String normalize(String name, String keyspace) {
+        List<String> parts = new ArrayList<>(2);
+        for (String part : name.split("\\s*\\.\\s*(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)")) {
+            if (part.startsWith("\"") && part.endsWith("\"") && part.length() > 1) {
+                parts.add(part.substring(1, part.length() - 1));
+            } else {
+                parts.add(part.toLowerCase());
+            }
+        }
+        if (parts.size() > 1 && parts.get(0).equals(keyspace)) {
+            parts.remove(0);
+        }
+        return Joiner.on('.').join(parts);
+    }
+
+    /**
+     * Check if this statement must keep its order relative to another one.
+     * 
+     * @param other
+     *            - another statement.
+     * @return true if one of the statements is a barrier or if they touch a common object.
+     */
+    public boolean conflictsWith(CqlStatement other) {
+        return isBarrier() || other.isBarrier() || !Collections.disjoint(objects, other.objects);
+    }
+
+    public String getCql() {
+        return cql;
+    }
+
+    /**
+     * @return the touched objects, prefixed by table: or type:, or null for a barrier.
+     */
+    public Set<String> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return true if the statement could not be analysed.
+     */
+    public boolean isBarrier() {
+        return objects == null;
+    }
+
+    /**
+     * @return true if the statement changes the schema.
+     */
+    public boolean isDdl() {
+        return ddl;
+    }
+
+    /**
+     * @return the keyspace as written in a USE statement, or null for other statements.
+     */
+    public String getUsedKeyspace() {
+        return usedKeyspace;
+    }
+
+    @Override
+    public String toString() {
+        return cql;
+    }
+}
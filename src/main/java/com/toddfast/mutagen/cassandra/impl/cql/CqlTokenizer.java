@@ -0,0 +1,264 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Split a CQL script into statements, lazily.
+ * The script is read character by character, so a semicolon inside a string literal, a quoted
+ * identifier or a comment does not end a statement. Quotes are escaped by doubling them, as in CQL.
+ * Comments (--, // and block comments) are removed from the statements.
+ * Only the current statement is held in memory.
+ */
+public class CqlTokenizer implements Iterator<String>, Closeable {
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+
+    private final ByteBuffer bytes;
+
+    private final CharsetDecoder decoder;
+
+    private boolean flushed;
+
+    private final char[] buffer = new char[8192];
+
+    private int position;
+
+    private int limit;
+
+    private int peeked = NONE;
+
+    private final StringBuilder statement = new StringBuilder();
+
+    private String next;
+
+    /**
+     * Constructor for CqlTokenizer.
+     * 
+     * @param reader
+     *            - the script, closed with the tokenizer.
+     */
+    public CqlTokenizer(Reader reader) {
+        this.reader = reader;
+        this.bytes = null;
+        this.decoder = null;
+    }
+
+    /**
+     * Constructor for a script in a buffer, decoded as UTF-8 as it is read.
+     * 
+     * @param bytes
+     *            - the script, between position and limit. The buffer is consumed.
+     */
+    public CqlTokenizer(ByteBuffer bytes) {
+        this.reader = null;
+        this.bytes = bytes;
+        this.decoder = Charsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readStatement();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String statement = next;
+        next = null;
+        return statement;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the next statement, with its semicolon, or null at the end of the script.
+     */
+    private String readStatement() throws IOException {
+        statement.setLength(0);
+        int c;
+        while ((c = read()) != -1) {
+            switch (c) {
+            case '\'':
+            case '"':
+                statement.append((char) c);
+                copyQuoted((char) c);
+                break;
+            case '$':
+                statement.append('$');
+                if (peek() == '$') {
+                    statement.append((char) read());
+                    copyDollarQuoted();
+                }
+                break;
+            case '-':
+                if (peek() == '-') {
+                    skipLine();
+                } else {
+                    statement.append('-');
+                }
+                break;
+            case '/':
+                if (peek() == '/') {
+                    skipLine();
+                } else if (peek() == '*') {
+                    read();
+                    skipBlockComment();
+                    statement.append(' ');
+                } else {
+                    statement.append('/');
+                }
+                break;
+            case ';':
+                statement.append(';');
+                String cql = statement.toString().trim();
+                statement.setLength(0);
+                if (cql.length() > 1) {
+                    return cql;
+                }
+                break;
+            default:
+                statement.append((char) c);
+            }
+        }
+
+        // a last statement without semicolon
+        String cql = statement.toString().trim();
+        statement.setLength(0);
+        return cql.isEmpty() ? null : cql;
+    }
+
+    /**
+     * Copy a string literal or a quoted identifier up to its closing quote.
+     */
+    private void copyQuoted(char quote) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            statement.append((char) c);
+            if (c == quote) {
+                if (peek() != quote) {
+                    return;
+                }
+                // escaped quote
+                statement.append((char) read());
+            }
+        }
+    }
+
+    /**
+     * Copy a $$ string literal up to its closing $$.
+     */
+    private void copyDollarQuoted() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            statement.append((char) c);
+            if (c == '$' && peek() == '$') {
+                statement.append((char) read());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skip a line comment, keeping the end of line.
+     */
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && c != '\n' && c != '\r') {
+            read();
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '*' && peek() == '/') {
+                read();
+                return;
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (peeked == NONE) {
+            peeked = readBuffered();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        if (peeked != NONE) {
+            int c = peeked;
+            peeked = NONE;
+            return c;
+        }
+        return readBuffered();
+    }
+
+    private int readBuffered() throws IOException {
+        if (position == limit) {
+            limit = reader != null ? reader.read(buffer, 0, buffer.length) : decode();
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Decode the next characters of the buffer.
+     * 
+     * @return the number of characters decoded, -1 at the end of the buffer.
+     */
+    private int decode() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(buffer);
+        while (chars.position() == 0) {
+            if (flushed) {
+                return -1;
+            }
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isUnderflow()) {
+                decoder.flush(chars);
+                flushed = true;
+            } else if (result.isError()) {
+                result.throwException();
+            }
+        }
+        return chars.position();
+    }
+}
@@ -0,0 +1,134 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read the records of a CSV file one at a time (RFC 4180): fields are separated by commas,
+ * a field in double quotes may contain commas, line breaks and doubled double quotes.
+ * An empty field without quotes is read as null, and empty lines are skipped.
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader reader;
+
+    private int next = -2;
+
+    private int line = 1;
+
+    private int recordLine;
+
+    /**
+     * Constructor for CsvReader.
+     *
+     * @param reader
+     *            - the CSV text.
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    private int peek() throws IOException {
+        if (next == -2) {
+            next = reader.read();
+        }
+        return next;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        next = -2;
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * Read a line as is.
+     *
+     * @return the line without its line break, or null at the end of the file.
+     */
+    public String readLine() throws IOException {
+        if (peek() == -1) {
+            return null;
+        }
+        recordLine = line;
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                builder.append((char) c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the fields of the record, or null at the end of the file.
+     * @throws IOException
+     *             if the file can't be read or a quoted field is not closed.
+     */
+    public List<String> readRecord() throws IOException {
+        // skip empty lines
+        while (peek() == '\r' || peek() == '\n') {
+            read();
+        }
+        if (peek() == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        while (true) {
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            if (peek() == '"') {
+                read();
+                quoted = true;
+                while (true) {
+                    int c = read();
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field at line " + recordLine);
+                    }
+                    if (c == '"') {
+                        if (peek() != '"') {
+                            break;
+                        }
+                        read();
+                    }
+                    field.append((char) c);
+                }
+            }
+            int c;
+            while ((c = peek()) != -1 && c != ',' && c != '\n' && c != '\r') {
+                field.append((char) read());
+            }
+            fields.add(quoted || field.length() > 0 ? field.toString() : null);
+            c = read();
+            if (c == ',') {
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            return fields;
+        }
+    }
+
+    /**
+     * @return the line where the last record or line read started.
+     */
+    public int getLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
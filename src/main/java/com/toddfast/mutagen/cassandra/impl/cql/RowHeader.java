@@ -0,0 +1,148 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.toddfast.mutagen.MutagenException;
+
+/**
+ * The header naming the table and the columns of loaded rows:<br>
+ * [keyspace.]table(column, ...)<br>
+ * The names are written as in CQL, quoted to keep their case.
+ */
+public class RowHeader {
+
+    private static final String NAME = CqlInsert.IDENTIFIER.pattern();
+
+    private static final Pattern HEADER = Pattern.compile("\\s*(" + NAME + ")(?:\\s*\\.\\s*(" + NAME
+            + "))?\\s*\\((.*)\\)\\s*");
+
+    private static final Pattern COLUMN = Pattern.compile("\\s*(" + NAME + ")\\s*(?:,|$)");
+
+    private final String keyspace;
+
+    private final String table;
+
+    private final List<String> columns;
+
+    private RowHeader(String keyspace, String table, List<String> columns) {
+        this.keyspace = keyspace;
+        this.table = table;
+        this.columns = columns;
+    }
+
+    /**
+     * Parse a header.
+     *
+     * @param header
+     *            - the header.
+     * @return the parsed header.
+     * @throws MutagenException
+     *             if the header is invalid.
+     */
+    public static RowHeader parse(String header) {
+        Matcher matcher = header != null ? HEADER.matcher(header) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new MutagenException("The header of the rows should be "
+                    + "[keyspace.]table(column, ...) instead of \"" + header + "\"");
+        }
+        String keyspace = matcher.group(2) != null ? matcher.group(1) : null;
+        String table = matcher.group(2) != null ? matcher.group(2) : matcher.group(1);
+        return new RowHeader(keyspace, table, parseColumns(matcher.group(3), header));
+    }
+
+    private static List<String> parseColumns(String text, String header) {
+        List<String> columns = new ArrayList<>();
+        Matcher matcher = COLUMN.matcher(text);
+        int position = 0;
+        while (position < text.length() && matcher.find(position) && matcher.start() == position) {
+            columns.add(matcher.group(1));
+            position = matcher.end();
+        }
+        if (columns.isEmpty() || position < text.length()) {
+            throw new MutagenException("Invalid columns in the header \"" + header + "\"");
+        }
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * @return the keyspace as written, or null for the keyspace of the session.
+     */
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    /**
+     * @return the table as written.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the columns as written.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the names of the columns in the schema.
+     */
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            names.add(CqlInsert.normalize(column));
+        }
+        return names;
+    }
+
+    /**
+     * Build the insert of a row.
+     *
+     * @param keyspace
+     *            - the keyspace written before the table, or null to use the keyspace of the header.
+     * @return the insert, with a bind marker per column.
+     */
+    public String getInsert(String keyspace) {
+        if (keyspace == null) {
+            keyspace = this.keyspace;
+        }
+        StringBuilder builder = new StringBuilder("INSERT INTO ");
+        builder.append(keyspace != null ? keyspace + "." : "").append(table).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            builder.append(i > 0 ? ", " : "").append(columns.get(i));
+        }
+        builder.append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            builder.append(i > 0 ? ", ?" : "?");
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * Get the metadata of the table.
+     *
+     * @param session
+     *            - the session, whose keyspace is used when the header names none.
+     * @return the metadata, or null if the table is unknown.
+     */
+    public TableMetadata getTableMetadata(Session session) {
+        // the metadata look up names as written in CQL
+        String keyspaceName = keyspace != null ? keyspace : session.getLoggedKeyspace();
+        KeyspaceMetadata keyspaceMetadata = keyspaceName != null
+                ? session.getCluster().getMetadata().getKeyspace(keyspaceName) : null;
+        return keyspaceMetadata != null ? keyspaceMetadata.getTable(table) : null;
+    }
+
+    @Override
+    public String toString() {
+        return (keyspace != null ? keyspace + "." : "") + table + columns;
+    }
+}
@@ -0,0 +1,347 @@
+package com.toddfast.mutagen.cassandra.impl.cql;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.google.common.io.BaseEncoding;
+import com.google.common.net.InetAddresses;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.Mutation.Context;
+
+/**
+ * Load rows into a table, read from a CSV file or produced by Java code. The table and the columns are named by
+ * a {@link RowHeader}.
+ * The rows are inserted with a prepared statement as they are read, with at most window inserts in flight,
+ * and the progress is logged periodically. The values of a CSV record are decoded according to the types of the
+ * columns. When a row is inserted again, the inserts in flight are awaited first so that the last row wins.
+ */
+public class RowLoader {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(RowLoader.class);
+
+    private static final String[] DATE_FORMATS = { "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ssXXX",
+            "yyyy-MM-dd HH:mm:ss.SSSXXX", "yyyy-MM-dd HH:mm:ssXXX", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd" };
+
+    private static final long PROGRESS_MILLIS = 10000;
+
+    private final Session session;
+
+    private final Context context;
+
+    private final int window;
+
+    private final Deque<Insert> inFlight = new ArrayDeque<>();
+
+    // primary keys of the rows in flight
+    private final Set<List<Object>> inFlightKeys = new HashSet<>();
+
+    private String cql;
+
+    private PreparedStatement prepared;
+
+    private List<String> columns;
+
+    private int[] primaryKey;
+
+    private int rows;
+
+    private long start;
+
+    private long lastProgress;
+
+    /**
+     * Constructor for RowLoader.
+     *
+     * @param session
+     *            - the session to insert the rows.
+     * @param context
+     *            - the context of the mutation, to log.
+     * @param window
+     *            - the maximum number of inserts in flight.
+     */
+    public RowLoader(Session session, Context context, int window) {
+        this.session = session;
+        this.context = context;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * Insert the rows of a CSV file, whose first line is the header.
+     *
+     * @param reader
+     *            - the CSV file.
+     * @return the number of inserted rows.
+     */
+    public int load(CsvReader reader) throws IOException {
+        try {
+            prepare(reader.readLine());
+            ColumnDefinitions variables = prepared.getVariables();
+            List<String> fields;
+            while ((fields = reader.readRecord()) != null) {
+                if (fields.size() != columns.size()) {
+                    throw new MutagenException("Expected " + columns.size() + " values instead of " + fields.size()
+                            + " at line " + reader.getLine());
+                }
+                Object[] values = new Object[fields.size()];
+                for (int i = 0; i < values.length; i++) {
+                    try {
+                        values[i] = decode(fields.get(i), variables.getType(i));
+                    } catch (IllegalArgumentException e) {
+                        throw new MutagenException("Invalid value \"" + fields.get(i) + "\" for column "
+                                + columns.get(i) + " at line " + reader.getLine(), e);
+                    }
+                }
+                insert(values, "line " + reader.getLine());
+            }
+            awaitAll();
+            return rows;
+        } finally {
+            awaitQuietly();
+        }
+    }
+
+    /**
+     * Insert rows of values of the Java types bound for the types of the columns.
+     *
+     * @param header
+     *            - the table and the columns.
+     * @param source
+     *            - the values of each row, in the order of the columns.
+     * @return the number of inserted rows.
+     */
+    public int load(String header, Iterator<Object[]> source) {
+        try {
+            prepare(header);
+            while (source.hasNext()) {
+                Object[] values = source.next();
+                if (values.length != columns.size()) {
+                    throw new MutagenException("Expected " + columns.size() + " values instead of " + values.length
+                            + " for row " + (rows + 1));
+                }
+                insert(values, "row " + (rows + 1));
+            }
+            awaitAll();
+            return rows;
+        } finally {
+            awaitQuietly();
+        }
+    }
+
+    /**
+     * Prepare the insert of a header.
+     */
+    private void prepare(String header) {
+        RowHeader rowHeader = RowHeader.parse(header);
+        columns = rowHeader.getColumns();
+        cql = rowHeader.getInsert(null);
+
+        try {
+            prepared = session.prepare(cql);
+        } catch (DriverException e) {
+            throw CqlExecutor.onFailure(context, cql, e);
+        }
+        primaryKey = getPrimaryKey(rowHeader);
+        if (primaryKey == null) {
+            LOGGER.debug("No primary key of the table of \"{}\", inserting the rows one by one", cql);
+        }
+        context.debug("Inserting rows with \"{}\"", cql);
+        start = lastProgress = System.currentTimeMillis();
+    }
+
+    private void insert(Object[] values, String description) {
+        List<Object> key = null;
+        if (primaryKey != null) {
+            key = new ArrayList<>(primaryKey.length);
+            for (int index : primaryKey) {
+                key.add(values[index]);
+            }
+            if (inFlightKeys.contains(key)) {
+                awaitAll();
+            }
+        }
+        while (inFlight.size() >= (primaryKey != null ? window : 1)) {
+            await(inFlight.removeFirst());
+        }
+        inFlight.addLast(new Insert(key, description, session.executeAsync(prepared.bind(values))));
+        if (key != null) {
+            inFlightKeys.add(key);
+        }
+        rows++;
+
+        long now = System.currentTimeMillis();
+        if (now - lastProgress >= PROGRESS_MILLIS) {
+            lastProgress = now;
+            context.info("{} rows inserted with \"{}\", {} rows/s", rows, cql, rows * 1000L / (now - start));
+        }
+    }
+
+    /**
+     * On failure, let the inserts already sent complete before reporting it.
+     */
+    private void awaitQuietly() {
+        for (Insert insert : inFlight) {
+            try {
+                insert.future.getUninterruptibly();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Ignoring failure of concurrent insert", e);
+            }
+        }
+        inFlight.clear();
+        inFlightKeys.clear();
+    }
+
+    /**
+     * @return the indexes of the primary key columns, or null if the table is unknown.
+     */
+    private int[] getPrimaryKey(RowHeader rowHeader) {
+        TableMetadata tableMetadata = rowHeader.getTableMetadata(session);
+        if (tableMetadata == null) {
+            return null;
+        }
+        List<String> names = rowHeader.getColumnNames();
+        List<ColumnMetadata> primaryKey = tableMetadata.getPrimaryKey();
+        int[] indexes = new int[primaryKey.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = names.indexOf(primaryKey.get(i).getName());
+            if (indexes[i] == -1) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+
+    private void await(Insert insert) {
+        if (insert.key != null) {
+            inFlightKeys.remove(insert.key);
+        }
+        try {
+            insert.future.getUninterruptibly();
+        } catch (RuntimeException e) {
+            throw CqlExecutor.onFailure(context, "insert of " + insert.description, e);
+        }
+    }
+
+    private void awaitAll() {
+        while (!inFlight.isEmpty()) {
+            await(inFlight.removeFirst());
+        }
+    }
+
+    /**
+     * Decode a CSV field to the Java type bound for a CQL type.
+     *
+     * @param field
+     *            - the field, null if it was empty.
+     * @param type
+     *            - the type of the column.
+     * @return the value.
+     * @throws IllegalArgumentException
+     *             if the field is not a value of the type.
+     */
+    public static Object decode(String field, DataType type) {
+        if (field == null) {
+            return null;
+        }
+        switch (type.getName()) {
+        case ASCII:
+        case TEXT:
+        case VARCHAR:
+            return field;
+        case INET:
+            return InetAddresses.forString(field.trim());
+        case INT:
+            return Integer.valueOf(field.trim());
+        case BIGINT:
+            return Long.valueOf(field.trim());
+        case VARINT:
+            return new BigInteger(field.trim());
+        case DECIMAL:
+            return new BigDecimal(field.trim());
+        case DOUBLE:
+            return Double.valueOf(field.trim());
+        case FLOAT:
+            return Float.valueOf(field.trim());
+        case BOOLEAN:
+            if ("true".equalsIgnoreCase(field.trim()) || "false".equalsIgnoreCase(field.trim())) {
+                return Boolean.valueOf(field.trim());
+            }
+            throw new IllegalArgumentException("Not a boolean");
+        case UUID:
+        case TIMEUUID:
+            return UUID.fromString(field.trim());
+        case TIMESTAMP:
+            return decodeTimestamp(field.trim());
+        case BLOB:
+            String hex = field.trim();
+            if (hex.startsWith("0x") || hex.startsWith("0X")) {
+                hex = hex.substring(2);
+            }
+            return ByteBuffer.wrap(BaseEncoding.base16().decode(hex.toUpperCase()));
+        default:
+            throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+
+    /**
+     * Decode milliseconds since the epoch or an ISO 8601 date, in UTC without time zone.
+     */
+    private static Date decodeTimestamp(String field) {
+        if (field.matches("-?\\d+")) {
+            return new Date(Long.parseLong(field));
+        }
+        for (String format : DATE_FORMATS) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(format);
+            dateFormat.setLenient(false);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            ParsePosition position = new ParsePosition(0);
+            Date date = dateFormat.parse(field, position);
+            if (date != null && position.getIndex() == field.length()) {
+                return date;
+            }
+        }
+        throw new IllegalArgumentException("Not a timestamp");
+    }
+
+    /**
+     * An insert in flight.
+     */
+    private static class Insert {
+
+        private final List<Object> key;
+
+        private final String description;
+
+        private final ResultSetFuture future;
+
+        Insert(List<Object> key, String description, ResultSetFuture future) {
+            this.key = key;
+            this.description = description;
+            this.future = future;
+        }
+    }
+}
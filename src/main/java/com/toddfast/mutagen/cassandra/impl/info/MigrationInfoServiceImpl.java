@@ -10,6 +10,7 @@ import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 public class MigrationInfoServiceImpl implements MigrationInfoService {
 
@@ -42,11 +43,8 @@ public class MigrationInfoServiceImpl implements MigrationInfoService {
     public ResultSet getAllRecords() {
         // get version record
         ResultSet resultSet = null;
-        String selectStatement = "SELECT * FROM \"" +
-                "Version" + "\"" +
-                " limit 1000000000 " + ";";
         try {
-            resultSet = session.execute(selectStatement);
+            resultSet = VersionTableDao.forSession(session).getVersionRecords();
         } catch (InvalidQueryException e) {
             System.out.println("Warnning : The version table is not created!!!");
         }
@@ -0,0 +1,44 @@
+package com.toddfast.mutagen.cassandra.impl.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.datastax.driver.core.Session;
+
+/**
+ * VM-wide locks for the migrations, one per cluster and keyspace.
+ * The migrations of unrelated keyspaces run concurrently, the migrations of the same keyspace
+ * are mutually exclusive.
+ */
+public class KeyspaceLocks {
+
+    private static final ConcurrentMap<String, Lock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * private constructor to prevent instantiation.
+     */
+    private KeyspaceLocks() {
+    }
+
+    /**
+     * Get the lock of the cluster and logged keyspace of a session.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @return the lock.
+     */
+    public static Lock forSession(Session session) {
+        String key = session.getCluster().getMetadata().getClusterName() + "/" + session.getLoggedKeyspace();
+        Lock lock = LOCKS.get(key);
+        if (lock == null) {
+            Lock newLock = new ReentrantLock();
+            lock = LOCKS.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+}
@@ -0,0 +1,312 @@
+package com.toddfast.mutagen.cassandra.impl.lock;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.toddfast.mutagen.MutagenException;
+
+/**
+ * A cluster-wide lease on the migrations of a keyspace, stored in the table MigrationLease
+ * with lightweight transactions.
+ * <p>
+ * The lease row is inserted with IF NOT EXISTS and a TTL, so a crashed holder loses it when the TTL expires.
+ * The holder renews it with a heartbeat. Each acquisition gets a fencing token, greater than the tokens
+ * of all the previous holders. Before each mutation and before recording it, the holder checks its token
+ * with a lightweight transaction on the lease row (see {@link #checkFence()}), so an instance which lost
+ * the lease, for example during a long GC pause, neither starts nor records a mutation once another
+ * instance holds the lease. The statements it already sent are not fenced.
+ */
+public class MigrationLease {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(MigrationLease.class);
+
+    private static final String TABLE = "\"MigrationLease\"";
+
+    private static final String FENCE_SUFFIX = ".fence";
+
+    private final Session session;
+
+    private final String name;
+
+    private final String owner;
+
+    private final int ttlSeconds;
+
+    private PreparedStatement selectStatement;
+
+    private PreparedStatement insertFenceStatement;
+
+    private PreparedStatement updateFenceStatement;
+
+    private PreparedStatement insertLeaseStatement;
+
+    private PreparedStatement renewLeaseStatement;
+
+    private PreparedStatement deleteLeaseStatement;
+
+    private ScheduledExecutorService heartbeat;
+
+    private volatile long token;
+
+    private volatile boolean held;
+
+    private volatile long expiresAtNanos;
+
+    /**
+     * Constructor for MigrationLease.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @param name
+     *            - the name of the lease.
+     * @param ttlSeconds
+     *            - the time to live of the lease, renewed by the heartbeat.
+     */
+    public MigrationLease(Session session, String name, int ttlSeconds) {
+        if (ttlSeconds < 3) {
+            throw new IllegalArgumentException("The lease time to live must be at least 3 seconds, got " + ttlSeconds);
+        }
+        this.session = session;
+        this.name = name;
+        this.ttlSeconds = ttlSeconds;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+    }
+
+    /**
+     * Create the table MigrationLease and prepare the statements.
+     */
+    private synchronized void init() {
+        if (selectStatement != null) {
+            return;
+        }
+        session.execute("CREATE TABLE IF NOT EXISTS " + TABLE
+                + "( name varchar, owner varchar, token bigint, PRIMARY KEY(name))");
+
+        selectStatement = session.prepare("SELECT owner, token FROM " + TABLE + " WHERE name = ?");
+        insertFenceStatement = session.prepare("INSERT INTO " + TABLE + " (name, token) VALUES (?, ?) IF NOT EXISTS");
+        updateFenceStatement = session.prepare("UPDATE " + TABLE + " SET token = ? WHERE name = ? IF token = ?");
+        insertLeaseStatement = session.prepare("INSERT INTO " + TABLE
+                + " (name, owner, token) VALUES (?, ?, ?) IF NOT EXISTS USING TTL ?");
+        renewLeaseStatement = session.prepare("UPDATE " + TABLE
+                + " USING TTL ? SET owner = ?, token = ? WHERE name = ? IF owner = ? AND token = ?");
+        deleteLeaseStatement = session.prepare("DELETE FROM " + TABLE + " WHERE name = ? IF owner = ?");
+    }
+
+    /**
+     * @return true if the conditional statement was applied.
+     */
+    private static boolean wasApplied(ResultSet resultSet) {
+        Row row = resultSet.one();
+        return row != null && row.getBool("[applied]");
+    }
+
+    /**
+     * Get a new fencing token, greater than all the tokens given before.
+     */
+    private long nextToken() {
+        while (true) {
+            Row row = session.execute(selectStatement.bind(name + FENCE_SUFFIX)).one();
+            if (row == null || row.isNull("token")) {
+                if (wasApplied(session.execute(insertFenceStatement.bind(name + FENCE_SUFFIX, 1L)))) {
+                    return 1L;
+                }
+            } else {
+                long current = row.getLong("token");
+                if (wasApplied(session.execute(updateFenceStatement.bind(current + 1, name + FENCE_SUFFIX, current)))) {
+                    return current + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the owner of the lease, with a plain read.
+     * 
+     * @return the owner, or null if the lease is free.
+     */
+    public String getHolder() {
+        init();
+        Row row = session.execute(selectStatement.bind(name)).one();
+        return row != null ? row.getString("owner") : null;
+    }
+
+    /**
+     * Try to acquire the lease once.
+     * 
+     * @return true if the lease was acquired.
+     */
+    public synchronized boolean tryAcquire() {
+        init();
+        if (held) {
+            return true;
+        }
+        // a plain read first, so that the instances waiting for the lease do not run lightweight transactions
+        if (getHolder() != null) {
+            return false;
+        }
+
+        long newToken = nextToken();
+        long now = System.nanoTime();
+        if (!wasApplied(session.execute(insertLeaseStatement.bind(name, owner, newToken, ttlSeconds)))) {
+            return false;
+        }
+
+        token = newToken;
+        held = true;
+        expiresAtNanos = now + TimeUnit.SECONDS.toNanos(ttlSeconds);
+        startHeartbeat();
+
+        LOGGER.info("Migration lease {} acquired by {} with token {}", name, owner, token);
+        return true;
+    }
+
+    /**
+     * Acquire the lease, waiting until it is released by its holder.
+     * 
+     * @param maxWaitMillis
+     *            - the maximum time to wait.
+     * @throws MutagenException
+     *             if the lease could not be acquired in time.
+     */
+    public void acquire(long maxWaitMillis) {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        long sleepMillis = 500;
+        while (!tryAcquire()) {
+            if (System.currentTimeMillis() + sleepMillis > deadline) {
+                throw new MutagenException("Could not acquire migration lease " + name + " in " + maxWaitMillis
+                        + " ms, held by " + getHolder());
+            }
+            LOGGER.info("Migration lease {} held by {}, waiting", name, getHolder());
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MutagenException("Interrupted while waiting for migration lease " + name, e);
+            }
+            sleepMillis = Math.min(sleepMillis * 2, 5000);
+        }
+    }
+
+    private void startHeartbeat() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mutagen-lease-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long period = TimeUnit.SECONDS.toMillis(ttlSeconds) / 3;
+        heartbeat.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                renew();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renew the lease for another time to live.
+     */
+    private void renew() {
+        long now = System.nanoTime();
+        try {
+            if (wasApplied(session.execute(renewLeaseStatement.bind(ttlSeconds, owner, token, name, owner, token)))) {
+                expiresAtNanos = now + TimeUnit.SECONDS.toNanos(ttlSeconds);
+                LOGGER.trace("Migration lease {} renewed", name);
+            } else {
+                LOGGER.error("Migration lease {} with token {} was lost", name, token);
+                held = false;
+            }
+        } catch (RuntimeException e) {
+            // keep the lease until it expires, the next heartbeat may succeed
+            LOGGER.warn("Could not renew migration lease {}", name, e);
+        }
+    }
+
+    /**
+     * Check that the lease is still held, before doing work guarded by it.
+     * 
+     * @throws MutagenException
+     *             if the lease was lost or has expired.
+     */
+    public void checkHeld() {
+        if (!held || System.nanoTime() - expiresAtNanos >= 0) {
+            throw new MutagenException("Migration lease " + name + " with token " + token + " is no longer held");
+        }
+    }
+
+    /**
+     * Check with a lightweight transaction that the lease row still has the owner and the token of this
+     * acquisition, renewing the lease. Unlike {@link #checkHeld()}, this does not rely on the local clock.
+     * 
+     * @throws MutagenException
+     *             if another instance acquired the lease since, or if the lease row could not be checked.
+     */
+    public void checkFence() {
+        checkHeld();
+        long now = System.nanoTime();
+        boolean applied;
+        try {
+            applied = wasApplied(session.execute(renewLeaseStatement.bind(ttlSeconds, owner, token, name, owner,
+                    token)));
+        } catch (RuntimeException e) {
+            throw new MutagenException("Could not check migration lease " + name + " with token " + token, e);
+        }
+        if (!applied) {
+            held = false;
+            throw new MutagenException("Migration lease " + name + " with token " + token
+                    + " was acquired by another instance");
+        }
+        expiresAtNanos = now + TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Release the lease if it is held.
+     */
+    public synchronized void release() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+        if (held) {
+            held = false;
+            try {
+                session.execute(deleteLeaseStatement.bind(name, owner));
+                LOGGER.info("Migration lease {} with token {} released", name, token);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not release migration lease {}, it will expire", name, e);
+            }
+        }
+    }
+
+    /**
+     * @return the fencing token of the last acquisition.
+     */
+    public long getToken() {
+        return token;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public boolean isHeld() {
+        return held;
+    }
+}
@@ -0,0 +1,32 @@
+package com.toddfast.mutagen.cassandra.impl.lock;
+
+/**
+ * What an instance does when another instance of the cluster holds the migration lease.
+ */
+public enum MigrationLockMode {
+    /**
+     * No cluster-wide lease, only the instances of the same VM are synchronized.
+     */
+    NONE,
+
+    /**
+     * Wait until the lease is released, then migrate.
+     */
+    WAIT,
+
+    /**
+     * Skip the migration.
+     */
+    SKIP;
+
+    /**
+     * Parse a mode name of the configuration.
+     * 
+     * @param name
+     *            - none, wait or skip.
+     * @return the mode.
+     */
+    public static MigrationLockMode fromName(String name) {
+        return MigrationLockMode.valueOf(name.trim().toUpperCase());
+    }
+}
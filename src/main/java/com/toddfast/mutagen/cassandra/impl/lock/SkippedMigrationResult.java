@@ -0,0 +1,86 @@
+package com.toddfast.mutagen.cassandra.impl.lock;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.Mutation;
+import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.State;
+
+/**
+ * The result of a migration skipped because another instance holds the migration lease.
+ * No mutation was executed and the schema may not be up to date yet: the migration is not complete,
+ * without being failed either. The pending mutations are not known, they were not planned.
+ */
+public class SkippedMigrationResult implements Plan.Result<String> {
+
+    private final State<String> lastState;
+
+    private final String holder;
+
+    /**
+     * Constructor for SkippedMigrationResult.
+     *
+     * @param lastState
+     *            - the current state of the database, or null if it is not known.
+     * @param holder
+     *            - the owner of the lease, or null if it was released meanwhile.
+     */
+    public SkippedMigrationResult(State<String> lastState, String holder) {
+        this.lastState = lastState;
+        this.holder = holder;
+    }
+
+    /**
+     * @return the owner of the migration lease when the migration was skipped.
+     */
+    public String getHolder() {
+        return holder;
+    }
+
+    /**
+     * @return null, no mutation was planned.
+     */
+    @Override
+    public Plan<String> getPlan() {
+        return null;
+    }
+
+    /**
+     * @return false, the instance holding the lease may still be migrating.
+     */
+    @Override
+    public boolean isMutationComplete() {
+        return false;
+    }
+
+    /**
+     * @return the last applied version read from the version fingerprint without reading the table Version,
+     *         or null if there is no fingerprint.
+     */
+    @Override
+    public State<String> getLastState() {
+        return lastState;
+    }
+
+    @Override
+    public List<Mutation<String>> getCompletedMutations() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Mutation<String>> getRemainingMutations() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public MutagenException getException() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "Migration skipped, lease held by " + holder;
+    }
+}
@@ -0,0 +1,62 @@
+package com.toddfast.mutagen.cassandra.impl.manifest;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.toddfast.mutagen.cassandra.impl.JavaMutation;
+
+/**
+ * The generated factories of Java mutations, found once per class loader.
+ */
+public final class JavaMutationFactories {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(JavaMutationFactories.class);
+
+    // factories by class loader: the factories, loaded by the class loader, must not keep their key alive
+    private static final Map<ClassLoader, SoftReference<List<JavaMutationFactory>>> FACTORIES = new WeakHashMap<>();
+
+    private JavaMutationFactories() {
+    }
+
+    /**
+     * Instantiate a Java mutation with a generated factory.
+     * 
+     * @param className
+     *            - the fully qualified name of the mutation class.
+     * @param loader
+     *            - the class loader of the factories.
+     * @return a new instance, or null if no factory knows the class.
+     */
+    public static JavaMutation newMutation(String className, ClassLoader loader) {
+        for (JavaMutationFactory factory : getFactories(loader)) {
+            JavaMutation mutation = factory.newMutation(className);
+            if (mutation != null) {
+                return mutation;
+            }
+        }
+        return null;
+    }
+
+    private static List<JavaMutationFactory> getFactories(ClassLoader loader) {
+        synchronized (FACTORIES) {
+            SoftReference<List<JavaMutationFactory>> reference = FACTORIES.get(loader);
+            List<JavaMutationFactory> factories = reference != null ? reference.get() : null;
+            if (factories == null) {
+                factories = new ArrayList<>();
+                for (JavaMutationFactory factory : ServiceLoader.load(JavaMutationFactory.class, loader)) {
+                    LOGGER.debug("Found Java mutation factory {}", factory.getClass().getName());
+                    factories.add(factory);
+                }
+                FACTORIES.put(loader, new SoftReference<>(factories));
+            }
+            return factories;
+        }
+    }
+}
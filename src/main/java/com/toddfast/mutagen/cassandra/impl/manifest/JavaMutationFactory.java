@@ -0,0 +1,20 @@
+package com.toddfast.mutagen.cassandra.impl.manifest;
+
+import com.toddfast.mutagen.cassandra.impl.JavaMutation;
+
+/**
+ * Instantiates Java mutations without reflection.
+ * Implementations are generated at build time by {@link JavaMutationFactoryProcessor}
+ * and registered in META-INF/services/com.toddfast.mutagen.cassandra.impl.manifest.JavaMutationFactory.
+ */
+public interface JavaMutationFactory {
+
+    /**
+     * Instantiate a Java mutation.
+     * 
+     * @param className
+     *            - the fully qualified name of the mutation class.
+     * @return a new instance, or null if the class is unknown to this factory.
+     */
+    JavaMutation newMutation(String className);
+}
@@ -0,0 +1,158 @@
+package com.toddfast.mutagen.cassandra.impl.manifest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@link JavaMutationFactory} for the Java mutations of each package, so that they are
+ * instantiated without reflection. The factories are registered in
+ * META-INF/services/com.toddfast.mutagen.cassandra.impl.manifest.JavaMutationFactory.
+ * The processor runs for every compilation having mutagen-cassandra on its class path.
+ */
+@SupportedAnnotationTypes("*")
+public class JavaMutationFactoryProcessor extends AbstractProcessor {
+
+    private static final String JAVA_MUTATION = "com.toddfast.mutagen.cassandra.impl.JavaMutation";
+
+    private static final String FACTORY_PACKAGE = "mutagen.generated";
+
+    private static final Pattern MUTATION_NAME = Pattern.compile("M\\d{12}_.*");
+
+    // generated factories
+    private final List<String> factories = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement javaMutation = processingEnv.getElementUtils().getTypeElement(JAVA_MUTATION);
+        if (javaMutation == null) {
+            return false;
+        }
+
+        if (roundEnv.processingOver()) {
+            writeServices();
+            return false;
+        }
+
+        // mutations by package
+        Map<String, List<String>> mutations = new LinkedHashMap<>();
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            if (isMutation(type, javaMutation)) {
+                String packageName = ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString();
+                if (!mutations.containsKey(packageName)) {
+                    mutations.put(packageName, new ArrayList<String>());
+                }
+                mutations.get(packageName).add(type.getQualifiedName().toString());
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry : mutations.entrySet()) {
+            writeFactory(entry.getKey(), entry.getValue());
+        }
+        return false;
+    }
+
+    /**
+     * Check that a type is a Java mutation with a public no-arg constructor.
+     */
+    private boolean isMutation(TypeElement type, TypeElement javaMutation) {
+        if (type.getKind() != ElementKind.CLASS
+                || type.getEnclosingElement().getKind() != ElementKind.PACKAGE
+                || !type.getModifiers().contains(Modifier.PUBLIC)
+                || type.getModifiers().contains(Modifier.ABSTRACT)
+                || !MUTATION_NAME.matcher(type.getSimpleName()).matches()
+                || !processingEnv.getTypeUtils().isSubtype(
+                        processingEnv.getTypeUtils().erasure(type.asType()),
+                        processingEnv.getTypeUtils().erasure(javaMutation.asType()))) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeFactory(String packageName, List<String> classNames) {
+        String simpleName = "MutationFactory_" + packageName.replace('.', '_');
+        while (factories.contains(FACTORY_PACKAGE + "." + simpleName)) {
+            // mutations of the same package found in a later round
+            simpleName += "_";
+        }
+        String factoryName = FACTORY_PACKAGE + "." + simpleName;
+
+        List<Element> originatingElements = new ArrayList<>();
+        for (String className : classNames) {
+            originatingElements.add(processingEnv.getElementUtils().getTypeElement(className));
+        }
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(factoryName,
+                originatingElements.toArray(new Element[originatingElements.size()])).openWriter()) {
+            writer.write("package " + FACTORY_PACKAGE + ";\n\n");
+            writer.write("/**\n * Generated by " + getClass().getName() + ", do not edit.\n */\n");
+            writer.write("public final class " + simpleName + " implements "
+                    + JavaMutationFactory.class.getName() + " {\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public " + JAVA_MUTATION + " newMutation(String className) {\n");
+            writer.write("        switch (className) {\n");
+            for (String className : classNames) {
+                writer.write("        case \"" + className + "\":\n");
+                writer.write("            return new " + className + "();\n");
+            }
+            writer.write("        default:\n");
+            writer.write("            return null;\n");
+            writer.write("        }\n");
+            writer.write("    }\n");
+            writer.write("}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not generate the mutation factory " + factoryName + " : " + e);
+            return;
+        }
+        factories.add(factoryName);
+    }
+
+    private void writeServices() {
+        if (factories.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject services = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    "META-INF/services/" + JavaMutationFactory.class.getName());
+            try (Writer writer = services.openWriter()) {
+                for (String factory : factories) {
+                    writer.write(factory + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not register the mutation factories : " + e);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.toddfast.mutagen.cassandra.impl.manifest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Charsets;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.utils.LoadResources;
+
+/**
+ * The list of the mutation resources of a location, written at build time by {@link MutationManifestGenerator}
+ * so that resources are not scanned at runtime.
+ * Each line holds the version, the resource name and the checksum of a resource, separated by tabs.
+ * A manifest lists the resources of its own class path entry: the entries holding the location without a manifest
+ * are still scanned.
+ */
+public class MutationManifest {
+
+    /**
+     * The directory of the manifests on the class path.
+     */
+    public static final String DIRECTORY = "META-INF/mutagen/";
+
+    /**
+     * The name of the manifest of a location.
+     */
+    public static final String FILENAME = "mutations.manifest";
+
+    private static final String NO_CHECKSUM = "-";
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * The URLs of the class path entries whose manifests were read.
+     */
+    private final Set<String> roots = new HashSet<>();
+
+    /**
+     * Get the path of the manifest of a location.
+     * 
+     * @param location
+     *            - the resource path of the mutations.
+     * @return the resource path of the manifest.
+     */
+    public static String getPath(String location) {
+        return DIRECTORY + trim(location) + "/" + FILENAME;
+    }
+
+    private static String trim(String location) {
+        String path = location.replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Get the URL of the class path entry of a resource.
+     */
+    private static String getRoot(URL url, String path) {
+        String root = url.toString();
+        if (root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        return root.endsWith(path) ? root.substring(0, root.length() - path.length()) : null;
+    }
+
+    /**
+     * Read the manifests of a location, from every class path entry.
+     * 
+     * @param loader
+     *            - the class loader.
+     * @param location
+     *            - the resource path of the mutations.
+     * @return the manifest, or null if there is none.
+     */
+    public static MutationManifest find(ClassLoader loader, String location) throws IOException {
+        String path = getPath(location);
+        Enumeration<URL> urls = loader.getResources(path);
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        MutationManifest manifest = new MutationManifest();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            try (Reader reader = new InputStreamReader(url.openStream(), Charsets.UTF_8)) {
+                manifest.read(reader);
+            }
+            manifest.roots.add(getRoot(url, path));
+        }
+        return manifest;
+    }
+
+    /**
+     * Get the class path entries which hold the location but no manifest of it, to scan them.
+     * 
+     * @param loader
+     *            - the class loader.
+     * @param location
+     *            - the resource path of the mutations.
+     * @return the URLs of the class path entries.
+     */
+    public List<URL> getRootsWithoutManifest(ClassLoader loader, String location) throws IOException {
+        String path = trim(location);
+        List<URL> urls = new ArrayList<>();
+        Enumeration<URL> resources = loader.getResources(path);
+        while (resources.hasMoreElements()) {
+            String root = getRoot(resources.nextElement(), path);
+            if (root != null && !roots.contains(root)) {
+                urls.add(new URL(root));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Get the directories of the class path whose manifests were read. Unlike a jar, built with its manifest,
+     * a directory may hold resources added after its manifest was generated.
+     * 
+     * @return the URLs of the directories.
+     */
+    public List<URL> getDirectoryRoots() throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String root : roots) {
+            if (root != null && root.startsWith("file:")) {
+                urls.add(new URL(root));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @return the names of the listed resources, relative to the class path.
+     */
+    public Set<String> getResourceNames() {
+        Set<String> names = new HashSet<>();
+        for (Entry entry : entries) {
+            names.add(entry.resource);
+        }
+        return names;
+    }
+
+    /**
+     * Add the entries of a manifest.
+     * 
+     * @param reader
+     *            - the manifest.
+     */
+    public void read(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                throw new IOException("Invalid mutation manifest line \"" + line + "\"");
+            }
+            add(fields[0], fields[1], NO_CHECKSUM.equals(fields[2]) ? null : fields[2]);
+        }
+    }
+
+    /**
+     * Write the manifest.
+     * 
+     * @param writer
+     *            - the destination.
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write("# Mutation manifest, generated at build time\n");
+        for (Entry entry : entries) {
+            writer.write(entry.version + "\t" + entry.resource + "\t"
+                    + (entry.checksum != null ? entry.checksum : NO_CHECKSUM) + "\n");
+        }
+    }
+
+    /**
+     * Add a resource.
+     * 
+     * @param version
+     *            - the version of the resource, or an empty string.
+     * @param resource
+     *            - the resource name, as returned by the resource scanner.
+     * @param checksum
+     *            - the checksum in the recorded format, or null.
+     */
+    public void add(String version, String resource, String checksum) {
+        entries.add(new Entry(version, resource, checksum));
+    }
+
+    /**
+     * Get the resource names, sorted as scanned resources are.
+     * 
+     * @param resourceScannerPatternFilter
+     *            - the pattern of the resource names.
+     * @return the resource names.
+     */
+    public List<String> getResources(String resourceScannerPatternFilter) {
+        List<String> resources = new ArrayList<>();
+        for (Entry entry : getEntries(resourceScannerPatternFilter)) {
+            resources.add(entry.resource);
+        }
+        return resources;
+    }
+
+    /**
+     * Create the mutation resources, with their checksums computed at build time.
+     * 
+     * @param resourceScannerPatternFilter
+     *            - the pattern of the resource names.
+     * @return the mutation resources, sorted as scanned resources are.
+     */
+    public List<MutationResource> toMutationResources(String resourceScannerPatternFilter) {
+        List<MutationResource> resources = new ArrayList<>();
+        for (Entry entry : getEntries(resourceScannerPatternFilter)) {
+            MutationResource resource = new MutationResource(entry.resource);
+            resource.setChecksum(entry.checksum);
+            resources.add(resource);
+        }
+        return resources;
+    }
+
+    private List<Entry> getEntries(String resourceScannerPatternFilter) {
+        Pattern filter = Pattern.compile(resourceScannerPatternFilter);
+        Map<String, Entry> entriesByName = new HashMap<>();
+        for (Entry entry : entries) {
+            if (filter.matcher(entry.resource).matches()) {
+                entriesByName.put(entry.resource, entry);
+            }
+        }
+        // manifests of several class path entries are merged
+        List<String> names = new ArrayList<>(entriesByName.keySet());
+        LoadResources.sortResources(names);
+
+        List<Entry> sorted = new ArrayList<>(names.size());
+        for (String name : names) {
+            sorted.add(entriesByName.get(name));
+        }
+        return sorted;
+    }
+
+    /**
+     * @return the number of resources.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * A resource of the manifest.
+     */
+    private static class Entry {
+
+        private final String version;
+
+        private final String resource;
+
+        private final String checksum;
+
+        Entry(String version, String resource, String checksum) {
+            this.version = version;
+            this.resource = resource;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.toddfast.mutagen.cassandra.impl.manifest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.google.common.base.Charsets;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+import com.toddfast.mutagen.cassandra.utils.LoadResources;
+
+/**
+ * Writes the manifests of mutation locations at build time, after compilation.
+ * For example with the exec-maven-plugin, in the process-classes phase :
+ * 
+ * <pre>
+ * java com.toddfast.mutagen.cassandra.impl.manifest.MutationManifestGenerator
+ *     target/classes my/cassandra/mutations[,other/mutations] [checksumAlgorithm]
+ * </pre>
+ */
+public class MutationManifestGenerator {
+
+    /**
+     * Write the manifests.
+     * 
+     * @param args
+     *            - the output directory, the locations separated by commas, and optionally the checksum algorithm.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage : MutationManifestGenerator <outputDirectory> <location>[,<location>...] [checksumAlgorithm]");
+            System.exit(1);
+        }
+        File outputDirectory = new File(args[0]);
+        ChecksumAlgorithm algorithm = args.length > 2 ? ChecksumAlgorithms.forName(args[2]) : ChecksumAlgorithms.MD5;
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = MutationManifestGenerator.class.getClassLoader();
+        }
+
+        for (String location : args[1].split(",")) {
+            location = location.trim();
+            MutationManifest manifest = generate(loader, location, algorithm);
+            File file = new File(outputDirectory, MutationManifest.getPath(location));
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Could not create " + file.getParentFile());
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8)) {
+                manifest.write(writer);
+            }
+            System.out.println("Wrote " + manifest.size() + " mutation resources to " + file);
+        }
+    }
+
+    /**
+     * Scan a location and compute the checksums of its resources.
+     * 
+     * @param loader
+     *            - the class loader to scan.
+     * @param location
+     *            - the resource path of the mutations.
+     * @param algorithm
+     *            - the checksum algorithm.
+     * @return the manifest.
+     */
+    public static MutationManifest generate(ClassLoader loader, String location, ChecksumAlgorithm algorithm)
+            throws IOException {
+        MutationManifest manifest = new MutationManifest();
+        for (String resource : LoadResources.scanResources(loader, location, ".*")) {
+            // resource names relative to the class path, not to the build directory
+            String name = LoadResources.relativize(resource, location).replace(File.separatorChar, '/');
+
+            long parsed = MutationVersion.parseResourceName(name);
+            String version = parsed != -1 ? MutationVersion.valueOf(parsed).getID() : "";
+
+            String checksum = null;
+            if (!name.endsWith(".java")) {
+                checksum = ChecksumAlgorithms.checksum(algorithm, new MutationResource(name, loader).getBuffer());
+            }
+            manifest.add(version, name, checksum);
+        }
+        return manifest;
+    }
+}
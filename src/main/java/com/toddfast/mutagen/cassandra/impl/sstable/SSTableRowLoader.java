@@ -0,0 +1,464 @@
+package com.toddfast.mutagen.cassandra.impl.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.Schema;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.io.sstable.CQLSSTableWriter;
+import org.apache.cassandra.io.sstable.SSTableLoader;
+import org.apache.cassandra.streaming.ProgressInfo;
+import org.apache.cassandra.streaming.StreamEvent;
+import org.apache.cassandra.streaming.StreamEventHandler;
+import org.apache.cassandra.streaming.StreamResultFuture;
+import org.apache.cassandra.streaming.StreamState;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.OutputHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.Mutation.Context;
+import com.toddfast.mutagen.cassandra.impl.cql.CsvReader;
+import com.toddfast.mutagen.cassandra.impl.cql.RowHeader;
+import com.toddfast.mutagen.cassandra.impl.cql.RowLoader;
+
+/**
+ * Load rows into a table offline, read from a CSV file or produced by Java code. The table and the columns are
+ * named by a {@link RowHeader}. The rows are written to SSTables in a work directory by a {@link CQLSSTableWriter},
+ * then the SSTables are streamed to the replicas of their token ranges by a {@link SSTableLoader}, as with the
+ * sstableloader tool. The progress of both steps is logged periodically.
+ * <p>
+ * The token ranges and the replicas are read from the metadata of the session, and the streaming connects to the
+ * storage port of the nodes. This loader needs the Cassandra server classes, cassandra-all, in the classpath:
+ * the dependency is optional, and its version should match the version of the cluster. As for the other loads,
+ * when a row is written twice the last one wins.
+ */
+public class SSTableRowLoader {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SSTableRowLoader.class);
+
+    private static final long PROGRESS_MILLIS = 10000;
+
+    private static final int BUFFER_SIZE_MB = 64;
+
+    private final Session session;
+
+    private final Context context;
+
+    private final File directory;
+
+    private TableMetadata table;
+
+    private List<String> columns;
+
+    private CQLSSTableWriter writer;
+
+    private int rows;
+
+    private long start;
+
+    private long lastProgress;
+
+    /**
+     * Constructor for SSTableRowLoader.
+     *
+     * @param session
+     *            - the session, to read the schema and the token ranges of the cluster.
+     * @param context
+     *            - the context of the mutation, to log.
+     * @param directory
+     *            - the directory of the work directories where the SSTables are written.
+     */
+    public SSTableRowLoader(Session session, Context context, File directory) {
+        this.session = session;
+        this.context = context;
+        this.directory = directory;
+    }
+
+    /**
+     * Load the rows of a CSV file, whose first line is the header.
+     *
+     * @param reader
+     *            - the CSV file.
+     * @return the number of loaded rows.
+     */
+    public int load(CsvReader reader) throws IOException {
+        Path work = createWorkDirectory();
+        try {
+            File tableDirectory = open(reader.readLine(), work);
+            DataType[] types = new DataType[columns.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = table.getColumn(columns.get(i)).getType();
+            }
+            List<String> fields;
+            while ((fields = reader.readRecord()) != null) {
+                if (fields.size() != columns.size()) {
+                    throw new MutagenException("Expected " + columns.size() + " values instead of " + fields.size()
+                            + " at line " + reader.getLine());
+                }
+                Object[] values = new Object[fields.size()];
+                for (int i = 0; i < values.length; i++) {
+                    try {
+                        values[i] = RowLoader.decode(fields.get(i), types[i]);
+                    } catch (IllegalArgumentException e) {
+                        throw new MutagenException("Invalid value \"" + fields.get(i) + "\" for column "
+                                + columns.get(i) + " at line " + reader.getLine(), e);
+                    }
+                }
+                write(values, "line " + reader.getLine());
+            }
+            close();
+            stream(tableDirectory);
+            return rows;
+        } finally {
+            closeQuietly();
+            delete(work);
+        }
+    }
+
+    /**
+     * Load rows of values of the Java types bound for the types of the columns.
+     *
+     * @param header
+     *            - the table and the columns.
+     * @param source
+     *            - the values of each row, in the order of the columns.
+     * @return the number of loaded rows.
+     */
+    public int load(String header, Iterator<Object[]> source) {
+        Path work = createWorkDirectory();
+        try {
+            File tableDirectory = open(header, work);
+            while (source.hasNext()) {
+                Object[] values = source.next();
+                if (values.length != columns.size()) {
+                    throw new MutagenException("Expected " + columns.size() + " values instead of " + values.length
+                            + " for row " + (rows + 1));
+                }
+                write(values, "row " + (rows + 1));
+            }
+            close();
+            stream(tableDirectory);
+            return rows;
+        } finally {
+            closeQuietly();
+            delete(work);
+        }
+    }
+
+    private Path createWorkDirectory() {
+        try {
+            Files.createDirectories(directory.toPath());
+            return Files.createTempDirectory(directory.toPath(), "mutagen");
+        } catch (IOException e) {
+            throw new MutagenException("Could not create a work directory in \"" + directory + "\"", e);
+        }
+    }
+
+    /**
+     * Open the writer of a header, in the directory keyspace/table of the work directory where the loader
+     * expects it.
+     *
+     * @return the directory of the SSTables.
+     */
+    private File open(String header, Path work) {
+        RowHeader rowHeader = RowHeader.parse(header);
+        columns = rowHeader.getColumns();
+        table = rowHeader.getTableMetadata(session);
+        if (table == null) {
+            throw new MutagenException("The table of the header \"" + header
+                    + "\" should exist to write its SSTables");
+        }
+        for (String column : columns) {
+            if (table.getColumn(column) == null) {
+                throw new MutagenException("Unknown column " + column + " in the header \"" + header + "\"");
+            }
+        }
+
+        String keyspace = table.getKeyspace().getName();
+        File tableDirectory = work.resolve(keyspace).resolve(table.getName()).toFile();
+        if (!tableDirectory.mkdirs()) {
+            throw new MutagenException("Could not create the directory \"" + tableDirectory + "\"");
+        }
+        String insert = rowHeader.getInsert(Metadata.quote(keyspace));
+        try {
+            writer = CQLSSTableWriter.builder()
+                    .inDirectory(tableDirectory)
+                    .forTable(table.asCQLQuery())
+                    .using(insert)
+                    .withPartitioner(getPartitioner(session))
+                    .withBufferSizeInMB(BUFFER_SIZE_MB)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new MutagenException("Could not write SSTables with \"" + insert + "\"", e);
+        }
+        context.debug("Writing rows with \"{}\" to SSTables in {}", insert, tableDirectory);
+        start = lastProgress = System.currentTimeMillis();
+        return tableDirectory;
+    }
+
+    private static IPartitioner getPartitioner(Session session) {
+        String partitioner = session.getCluster().getMetadata().getPartitioner();
+        try {
+            return FBUtilities.newPartitioner(partitioner);
+        } catch (ConfigurationException e) {
+            throw new MutagenException("Unknown partitioner " + partitioner, e);
+        }
+    }
+
+    private void write(Object[] values, String description) {
+        try {
+            writer.addRow(values);
+        } catch (InvalidRequestException | ClassCastException e) {
+            throw new MutagenException("Invalid values of " + description + " for " + table.getName(), e);
+        } catch (IOException e) {
+            throw new MutagenException("Could not write " + description + " to SSTables", e);
+        }
+        rows++;
+
+        long now = System.currentTimeMillis();
+        if (now - lastProgress >= PROGRESS_MILLIS) {
+            lastProgress = now;
+            context.info("{} rows of {} written to SSTables, {} rows/s", rows, table.getName(),
+                    rows * 1000L / (now - start));
+        }
+    }
+
+    /**
+     * Flush the last rows to SSTables.
+     */
+    private void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new MutagenException("Could not write SSTables of " + table.getName(), e);
+        } finally {
+            writer = null;
+        }
+        context.info("{} rows of {} written to SSTables in {} ms", rows, table.getName(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * On failure, close the writer before deleting its SSTables.
+     */
+    private void closeQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Ignoring failure to close the SSTables", e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Stream the SSTables of a table directory to the cluster.
+     */
+    private void stream(File tableDirectory) {
+        if (rows == 0) {
+            return;
+        }
+        long streamStart = System.currentTimeMillis();
+        SSTableLoader loader = new SSTableLoader(tableDirectory, new SessionClient(session), new Output(context));
+        StreamResultFuture future = loader.stream(Collections.<InetAddress> emptySet(), new Progress(context,
+                table.getName()));
+        StreamState state;
+        try {
+            state = Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            context.error("Could not stream the SSTables of {}", table.getName(), e.getCause());
+            throw new MutagenException("Could not stream the SSTables of " + table.getName(), e.getCause());
+        }
+        if (state.hasFailedSession()) {
+            throw new MutagenException("Could not stream the SSTables of " + table.getName()
+                    + " to every replica");
+        }
+        context.info("Streamed {} rows of {} in {} ms", rows, table.getName(),
+                System.currentTimeMillis() - streamStart);
+    }
+
+    private static void delete(Path work) {
+        try {
+            Files.walkFileTree(work, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete the work directory {}", work, e);
+        }
+    }
+
+    /**
+     * A client of the loader reading the token ranges and the replicas of the keyspace from the metadata of the
+     * session, instead of connecting through Thrift.
+     */
+    private static class SessionClient extends SSTableLoader.Client {
+
+        private final Session session;
+
+        SessionClient(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void init(String keyspace) {
+            Metadata metadata = session.getCluster().getMetadata();
+            try {
+                setPartitioner(metadata.getPartitioner());
+            } catch (ConfigurationException e) {
+                throw new MutagenException("Unknown partitioner " + metadata.getPartitioner(), e);
+            }
+            org.apache.cassandra.dht.Token.TokenFactory<?> tokenFactory = getPartitioner().getTokenFactory();
+            for (TokenRange tokenRange : metadata.getTokenRanges()) {
+                Range<org.apache.cassandra.dht.Token> range = new Range<org.apache.cassandra.dht.Token>(
+                        tokenFactory.fromString(tokenRange.getStart().getValue().toString()),
+                        tokenFactory.fromString(tokenRange.getEnd().getValue().toString()));
+                for (Host replica : metadata.getReplicas(Metadata.quote(keyspace), tokenRange)) {
+                    addRangeForEndpoint(range, replica.getAddress());
+                }
+            }
+        }
+
+        /**
+         * The schema of the table was loaded by the writer, but with a local id: the streamed files must carry the id
+         * of the table in the cluster, read from the schema tables as the client of the bulk loader does.
+         */
+        @Override
+        public CFMetaData getCFMetaData(String keyspace, String table) {
+            CFMetaData metadata = Schema.instance.getCFMetaData(keyspace, table);
+            if (metadata == null) {
+                return null;
+            }
+            Row row = session.execute("SELECT cf_id FROM system.schema_columnfamilies"
+                    + " WHERE keyspace_name = ? AND columnfamily_name = ?", keyspace, table).one();
+            if (row == null || row.isNull("cf_id")) {
+                throw new MutagenException("Unknown id of the table " + keyspace + "." + table + " in the cluster");
+            }
+            return metadata.copy(row.getUUID("cf_id"));
+        }
+    }
+
+    /**
+     * The output of the loader, logged through the context.
+     */
+    private static class Output implements OutputHandler {
+
+        private final Context context;
+
+        Output(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void output(String message) {
+            context.info(message);
+        }
+
+        @Override
+        public void debug(String message) {
+            context.debug(message);
+        }
+
+        @Override
+        public void warn(String message) {
+            context.error(message);
+        }
+
+        @Override
+        public void warn(String message, Throwable throwable) {
+            context.error(message, throwable);
+        }
+    }
+
+    /**
+     * Log the progress of the streaming periodically. The events come from the streaming threads.
+     */
+    private static class Progress implements StreamEventHandler {
+
+        private final Context context;
+
+        private final String table;
+
+        // bytes sent, by peer and file
+        private final Map<String, Long> sentBytes = new HashMap<>();
+
+        private long totalBytes;
+
+        private long lastProgress = System.currentTimeMillis();
+
+        Progress(Context context, String table) {
+            this.context = context;
+            this.table = table;
+        }
+
+        @Override
+        public synchronized void handleStreamEvent(StreamEvent event) {
+            if (event.eventType == StreamEvent.Type.STREAM_PREPARED) {
+                totalBytes += ((StreamEvent.SessionPreparedEvent) event).session.getTotalSizeToSend();
+            } else if (event.eventType == StreamEvent.Type.FILE_PROGRESS) {
+                ProgressInfo progress = ((StreamEvent.ProgressEvent) event).progress;
+                sentBytes.put(progress.peer + "/" + progress.fileName, progress.currentBytes);
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgress >= PROGRESS_MILLIS) {
+                    lastProgress = now;
+                    long sent = 0;
+                    for (long bytes : sentBytes.values()) {
+                        sent += bytes;
+                    }
+                    context.info("{} of {} bytes of the SSTables of {} streamed", sent, totalBytes, table);
+                }
+            }
+        }
+
+        @Override
+        public void onSuccess(StreamState state) {
+            LOGGER.debug("Done streaming the SSTables of {}", table);
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) {
+            LOGGER.debug("Failed streaming the SSTables of {}", table, throwable);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+
+/**
+ * Access to the table VersionV2.
+ * The records are stored in two partitions, one for the applied records and one for the failed records,
+ * with versionid as a descending clustering column. The current version is the first row of the
+ * applied partition.
+ */
+public class ClusteredVersionTableDao extends VersionTableDao {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ClusteredVersionTableDao.class);
+
+    static final String APPLIED = "applied";
+
+    static final String FAILED = "failed";
+
+    static final String UPGRADE_TABLE = "VersionUpgrade";
+
+    // true once the upgrade marker was read, until the table is created again
+    private volatile boolean upgraded;
+
+    /**
+     * Constructor for ClusteredVersionTableDao.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     */
+    protected ClusteredVersionTableDao(Session session) {
+        super(session);
+    }
+
+    @Override
+    public VersionTableLayout getLayout() {
+        return VersionTableLayout.CLUSTERED;
+    }
+
+    @Override
+    protected String getCreateTableStatement() {
+        return "CREATE TABLE IF NOT EXISTS " + getTable()
+                + "( bucket varchar, versionid varchar, filename varchar,checksum varchar,"
+                + "execution_date timestamp,execution_time int,"
+                + "status varchar, PRIMARY KEY(bucket, versionid))"
+                + " WITH CLUSTERING ORDER BY (versionid DESC)";
+    }
+
+    /**
+     * Create the table VersionV2, without the upgrade marker: the table is not used until
+     * {@link #upgrade(Session)} marks it complete.
+     */
+    @Override
+    public void createTable() {
+        upgraded = false;
+        super.createTable();
+    }
+
+    @Override
+    public void dropTable() {
+        upgraded = false;
+        super.dropTable();
+        getSession().execute("DROP TABLE IF EXISTS \"" + UPGRADE_TABLE + "\"");
+    }
+
+    /**
+     * @return the partition of a record with the given status.
+     */
+    private static String getBucket(String status) {
+        return MutationStatus.FAILED.getValue().equals(status) ? FAILED : APPLIED;
+    }
+
+    @Override
+    public ResultSet getVersionRecordByVersionId(String versionId) {
+        return getSession().execute(prepare("SELECT * FROM " + getTable()
+                + " WHERE bucket IN ('" + APPLIED + "', '" + FAILED + "') AND versionid = ?").bind(versionId));
+    }
+
+    @Override
+    public BoundStatement bindVersionRecord(String version, String filename, String checksum, Date executionDate,
+            int executionTime, String status) {
+        return prepare("INSERT INTO " + getTable() + " (bucket,versionid,filename,checksum,"
+                + "execution_date,execution_time,status) VALUES (?,?,?,?,?,?,?)")
+                .bind(getBucket(status), version, filename, checksum, executionDate, executionTime, status);
+    }
+
+    @Override
+    public void deleteVersionRecord(String versionId) {
+        String delete = "DELETE FROM " + getTable() + " WHERE bucket = ? AND versionid = ?";
+        getSession().execute(prepare(delete).bind(APPLIED, versionId));
+        getSession().execute(prepare(delete).bind(FAILED, versionId));
+        deleteFingerprint();
+    }
+
+    /**
+     * Delete the partition of the failed records.
+     */
+    @Override
+    public void deleteFailedVersionRecords() {
+        LOGGER.trace("Entering deleteFailedVersionRecords()");
+        getSession().execute(prepare("DELETE FROM " + getTable() + " WHERE bucket = ?").bind(FAILED));
+    }
+
+    /**
+     * Read the current version with a single partition LIMIT 1 read.
+     * The table is created if it does not exist yet.
+     */
+    @Override
+    public String getCurrentState() {
+        LOGGER.trace("Entering getCurrentState()");
+
+        if (!exists()) {
+            createTable();
+        }
+        Row row = getSession().execute(prepare("SELECT versionid FROM " + getTable()
+                + " WHERE bucket = ? LIMIT 1").bind(APPLIED)).one();
+        String version = row != null ? row.getString("versionid") : "000000000000";
+
+        LOGGER.trace("Leaving getCurrentState() : {}", version);
+        return version;
+    }
+
+    /**
+     * Check if the records of the legacy table Version were all copied into the table VersionV2,
+     * from the marker written at the end of the copy.
+     * 
+     * @return true if the table VersionV2 can be used.
+     */
+    public boolean isUpgraded() {
+        if (upgraded) {
+            return true;
+        }
+        if (!exists() || !VersionTableLayout.tableExists(getSession(), UPGRADE_TABLE)) {
+            return false;
+        }
+        upgraded = getSession().execute(prepare("SELECT version_table FROM \"" + UPGRADE_TABLE
+                + "\" WHERE version_table = ?").bind(getLayout().getTableName())).one() != null;
+        return upgraded;
+    }
+
+    /**
+     * Check if the table VersionV2 of the logged keyspace of a session can be used.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @return true if the upgrade of the table Version is complete.
+     */
+    public static boolean isUpgraded(Session session) {
+        return ((ClusteredVersionTableDao) forSession(session, VersionTableLayout.CLUSTERED)).isUpgraded();
+    }
+
+    /**
+     * Create the table VersionV2 and copy the records of the legacy table Version, then write the upgrade marker
+     * which makes {@link VersionTableLayout#detect(Session)} use the table VersionV2.
+     * Nothing is done if the marker exists. An upgrade interrupted before the marker is written is restarted:
+     * the records already in the table VersionV2 are not copied again. The legacy table is left untouched.
+     * The caller holds the migration lease, so that a single instance copies the records.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     */
+    public static void upgrade(Session session) {
+        ClusteredVersionTableDao dao = (ClusteredVersionTableDao) forSession(session, VersionTableLayout.CLUSTERED);
+        if (dao.isUpgraded()) {
+            return;
+        }
+
+        if (dao.exists()) {
+            LOGGER.info("Resuming the upgrade of version table {}", dao.getTable());
+        } else {
+            LOGGER.info("Creating version table {}", dao.getTable());
+        }
+        dao.createTable();
+
+        VersionTableDao legacy = forSession(session, VersionTableLayout.LEGACY);
+        int count = 0;
+        if (legacy.exists()) {
+            int skipped = 0;
+            for (Row row : legacy.getVersionRecords()) {
+                if (dao.isVersionIdPresent(row.getString("versionid"))) {
+                    // copied by an interrupted upgrade
+                    skipped++;
+                    continue;
+                }
+                session.execute(dao.bindVersionRecord(row.getString("versionid"),
+                        row.getString("filename"),
+                        row.getString("checksum"),
+                        row.getDate("execution_date"),
+                        row.getInt("execution_time"),
+                        row.getString("status")));
+                count++;
+            }
+            LOGGER.info("Copied {} records of version table {} into {}, {} already copied", count,
+                    legacy.getTable(), dao.getTable(), skipped);
+        }
+
+        // the table VersionV2 is used from now on
+        session.execute("CREATE TABLE IF NOT EXISTS \"" + UPGRADE_TABLE + "\""
+                + "( version_table varchar, source_table varchar, records int, upgrade_date timestamp,"
+                + "PRIMARY KEY(version_table))");
+        session.execute(dao.prepare("INSERT INTO \"" + UPGRADE_TABLE + "\" (version_table,source_table,records,"
+                + "upgrade_date) VALUES (?,?,?,?)").bind(dao.getLayout().getTableName(),
+                legacy.getLayout().getTableName(), count, new Date()));
+        dao.upgraded = true;
+    }
+}
@@ -0,0 +1,56 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.Date;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+
+/**
+ * Access to the table Version keyed by versionid alone.
+ * Finding the current version needs a scan of the whole table.
+ */
+public class LegacyVersionTableDao extends VersionTableDao {
+
+    /**
+     * Constructor for LegacyVersionTableDao.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     */
+    protected LegacyVersionTableDao(Session session) {
+        super(session);
+    }
+
+    @Override
+    public VersionTableLayout getLayout() {
+        return VersionTableLayout.LEGACY;
+    }
+
+    @Override
+    protected String getCreateTableStatement() {
+        return "CREATE TABLE IF NOT EXISTS " + getTable()
+                + "( versionid varchar, filename varchar,checksum varchar,"
+                + "execution_date timestamp,execution_time int,"
+                + "status varchar, PRIMARY KEY(versionid))";
+    }
+
+    @Override
+    public ResultSet getVersionRecordByVersionId(String versionId) {
+        return getSession().execute(prepare("SELECT * FROM " + getTable() + " WHERE versionid = ?").bind(versionId));
+    }
+
+    @Override
+    public BoundStatement bindVersionRecord(String version, String filename, String checksum, Date executionDate,
+            int executionTime, String status) {
+        return prepare("INSERT INTO " + getTable() + " (versionid,filename,checksum,"
+                + "execution_date,execution_time,status) VALUES (?,?,?,?,?,?)")
+                .bind(version, filename, checksum, executionDate, executionTime, status);
+    }
+
+    @Override
+    public void deleteVersionRecord(String versionId) {
+        getSession().execute(prepare("DELETE FROM " + getTable() + " WHERE versionid = ?").bind(versionId));
+        deleteFingerprint();
+    }
+}
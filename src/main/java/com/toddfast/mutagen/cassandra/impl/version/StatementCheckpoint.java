@@ -0,0 +1,81 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+
+/**
+ * Consecutive statements of a CQL mutation recorded as executed in the table VersionCheckpoint:
+ * a single statement, or the inserts of a script executed in bulk between two flushes.
+ */
+public class StatementCheckpoint {
+
+    private final int firstStatement;
+
+    private final int lastStatement;
+
+    private final String hash;
+
+    /**
+     * Constructor for StatementCheckpoint.
+     *
+     * @param firstStatement
+     *            - the index of the first statement in the script.
+     * @param lastStatement
+     *            - the index of the last statement in the script.
+     * @param hash
+     *            - the hash of the statements, see {@link #hash(List)}.
+     */
+    public StatementCheckpoint(int firstStatement, int lastStatement, String hash) {
+        this.firstStatement = firstStatement;
+        this.lastStatement = lastStatement;
+        this.hash = hash;
+    }
+
+    /**
+     * Hash consecutive statements.
+     *
+     * @param statements
+     *            - the statements.
+     * @return the hash recorded in their checkpoint.
+     */
+    public static String hash(List<String> statements) {
+        Hasher hasher = ChecksumAlgorithms.MD5.newHasher();
+        for (String statement : statements) {
+            hasher.putInt(statement.length()).putString(statement, Charsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return the index of the first statement in the script.
+     */
+    public int getFirstStatement() {
+        return firstStatement;
+    }
+
+    /**
+     * @return the index of the last statement in the script.
+     */
+    public int getLastStatement() {
+        return lastStatement;
+    }
+
+    /**
+     * @return the number of statements.
+     */
+    public int size() {
+        return lastStatement - firstStatement + 1;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + firstStatement + ".." + lastStatement + ", hash=" + hash + "]";
+    }
+}
@@ -0,0 +1,142 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.Collection;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.toddfast.mutagen.Mutation;
+import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithm;
+
+/**
+ * An aggregate fingerprint of the applied mutations, the sum of a hash of each (versionid, checksum),
+ * with the number of mutations and the greatest version.
+ * The sum does not depend on the order of the mutations, so it is updated as version records are appended.
+ * All the checksums of a fingerprint are computed with the same algorithm.
+ */
+public class VersionFingerprint {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final String algorithm;
+
+    private long fingerprint;
+
+    private int mutations;
+
+    private long maxVersion;
+
+    /**
+     * Constructor for the fingerprint of no mutation.
+     *
+     * @param algorithm
+     *            - the name of the algorithm of the checksums.
+     */
+    public VersionFingerprint(String algorithm) {
+        this(algorithm, 0, 0, 0);
+    }
+
+    /**
+     * Constructor for VersionFingerprint.
+     *
+     * @param algorithm
+     *            - the name of the algorithm of the checksums.
+     * @param fingerprint
+     *            - the sum of the hashes of the mutations.
+     * @param mutations
+     *            - the number of mutations.
+     * @param maxVersion
+     *            - the greatest version.
+     */
+    public VersionFingerprint(String algorithm, long fingerprint, int mutations, long maxVersion) {
+        this.algorithm = algorithm;
+        this.fingerprint = fingerprint;
+        this.mutations = mutations;
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * Compute the fingerprint of mutations.
+     *
+     * @param mutations
+     *            - the mutations.
+     * @param algorithm
+     *            - the algorithm of the checksums.
+     * @return the fingerprint.
+     */
+    public static VersionFingerprint of(Collection<? extends Mutation<String>> mutations, ChecksumAlgorithm algorithm) {
+        VersionFingerprint result = new VersionFingerprint(algorithm.getName());
+        for (Mutation<String> mutation : mutations) {
+            AbstractCassandraMutation cassandraMutation = (AbstractCassandraMutation) mutation;
+            result.add(cassandraMutation.getVersion().getID(), cassandraMutation.getChecksum(algorithm));
+        }
+        return result;
+    }
+
+    /**
+     * Add a mutation.
+     *
+     * @param versionId
+     *            - the version id.
+     * @param checksum
+     *            - the checksum of the mutation, computed with the algorithm of the fingerprint.
+     */
+    public void add(String versionId, String checksum) {
+        fingerprint += hash(versionId, checksum);
+        mutations++;
+        maxVersion = Math.max(maxVersion, MutationVersion.parseId(versionId));
+    }
+
+    private static long hash(String versionId, String checksum) {
+        return HASH.newHasher()
+                .putString(versionId, Charsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(checksum != null ? checksum : "", Charsets.UTF_8)
+                .hash().asLong();
+    }
+
+    /**
+     * @return the name of the algorithm of the checksums.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getMutations() {
+        return mutations;
+    }
+
+    /**
+     * @return the greatest version id.
+     */
+    public String getMaxVersion() {
+        return MutationVersion.valueOf(maxVersion).getID();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof VersionFingerprint)) {
+            return false;
+        }
+        VersionFingerprint other = (VersionFingerprint) obj;
+        return algorithm.equals(other.algorithm) && fingerprint == other.fingerprint
+                && mutations == other.mutations && maxVersion == other.maxVersion;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + ":" + Long.toHexString(fingerprint) + "[mutations=" + mutations + ", maxVersion="
+                + getMaxVersion() + "]";
+    }
+}
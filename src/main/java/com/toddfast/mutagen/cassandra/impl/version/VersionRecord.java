@@ -0,0 +1,80 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import com.datastax.driver.core.Row;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+
+/**
+ * An immutable copy of one record of the table Version.
+ */
+public class VersionRecord {
+
+    private final String versionId;
+
+    private final String filename;
+
+    private final String checksum;
+
+    private final String status;
+
+    /**
+     * Constructor for VersionRecord.
+     * 
+     * @param versionId
+     *            - version id.
+     * @param filename
+     *            - name of the executed script file.
+     * @param checksum
+     *            - checksum of the executed script file.
+     * @param status
+     *            - result of the migration.
+     */
+    public VersionRecord(String versionId, String filename, String checksum, String status) {
+        this.versionId = versionId;
+        this.filename = filename;
+        this.checksum = checksum;
+        this.status = status;
+    }
+
+    /**
+     * Copy a row of the table Version.
+     * 
+     * @param row
+     *            - a version record.
+     * @return the version record.
+     */
+    public static VersionRecord fromRow(Row row) {
+        return new VersionRecord(row.getString("versionid"),
+                row.getString("filename"),
+                row.getString("checksum"),
+                row.getString("status"));
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the mutation of this record has failed.
+     */
+    public boolean isFailed() {
+        return MutationStatus.FAILED.getValue().equals(status);
+    }
+
+    @Override
+    public String toString() {
+        return "VersionRecord[versionid=" + versionId + ", filename=" + filename + ", checksum=" + checksum
+                + ", status=" + status + "]";
+    }
+}
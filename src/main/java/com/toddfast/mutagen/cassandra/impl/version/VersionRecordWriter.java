@@ -0,0 +1,127 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+
+/**
+ * Appends version records asynchronously with a bounded number of writes in flight.
+ * Only the history which does not gate the next runs is written this way, such as the records
+ * before a baseline; the records of executed mutations are written synchronously.
+ * Callers must {@link #flush()} before relying on the records being written, a failed write is reported there.
+ */
+public class VersionRecordWriter {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(VersionRecordWriter.class);
+
+    private final VersionTableDao dao;
+
+    private final int maxInFlight;
+
+    private final Semaphore permits;
+
+    private final AtomicReference<MutagenException> failure = new AtomicReference<>();
+
+    // checksums of the applied mutations, added to the fingerprint on flush
+    private final Map<String, String> appliedChecksums = new LinkedHashMap<>();
+
+    /**
+     * Constructor for VersionRecordWriter.
+     * 
+     * @param dao
+     *            - the dao of the table Version.
+     * @param maxInFlight
+     *            - the maximum number of writes in flight.
+     */
+    public VersionRecordWriter(VersionTableDao dao, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The number of writes in flight must be positive, got " + maxInFlight);
+        }
+        this.dao = dao;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Append the version record in the table Version without waiting for the write.
+     * Blocks while the maximum number of writes are in flight.
+     * 
+     * @see VersionTableDao#appendVersionRecord(String, String, String, int, String)
+     */
+    public void appendVersionRecord(final String version, String filename, String checksum, int executionTime,
+            String status) {
+        LOGGER.trace("Entering appendVersionRecord(version={}, filename={}, checksum={}, execution_time={}, status={})",
+                version, filename, checksum, executionTime, status);
+
+        permits.acquireUninterruptibly();
+
+        ResultSetFuture future;
+        try {
+            future = dao.getSession().executeAsync(
+                    dao.bindVersionRecord(version, filename, checksum, executionTime, status));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        if (!MutationStatus.FAILED.getValue().equals(status)) {
+            synchronized (appliedChecksums) {
+                appliedChecksums.put(version, checksum);
+            }
+        }
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failure.compareAndSet(null, new MutagenException("Could not append version record " + version, t));
+                permits.release();
+            }
+        }, MoreExecutors.directExecutor());
+
+        LOGGER.trace("Leaving appendVersionRecord()");
+    }
+
+    /**
+     * Wait until all the writes in flight are done.
+     * 
+     * @throws MutagenException
+     *             if one of the writes failed.
+     */
+    public void flush() {
+        LOGGER.trace("Flushing version records");
+        permits.acquireUninterruptibly(maxInFlight);
+        permits.release(maxInFlight);
+        MutagenException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+
+        synchronized (appliedChecksums) {
+            if (!appliedChecksums.isEmpty()) {
+                dao.updateFingerprint(appliedChecksums);
+                appliedChecksums.clear();
+            }
+        }
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+}
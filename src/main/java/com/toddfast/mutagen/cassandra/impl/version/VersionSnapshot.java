@@ -0,0 +1,186 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+
+/**
+ * In-memory index of the table Version, read with a single scan.
+ * The planner answers all its questions about already executed mutations
+ * from this snapshot instead of querying the database for each mutation.
+ * The versions are also kept in sorted arrays of longs, searched by binary search;
+ * records whose versionid is not a 12 digits version are only found by their id.
+ */
+public class VersionSnapshot {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(VersionSnapshot.class);
+
+    private final Map<String, VersionRecord> records;
+
+    private final long[] versions;
+
+    private final long[] appliedVersions;
+
+    /**
+     * Constructor for VersionSnapshot.
+     * 
+     * @param records
+     *            - the version records indexed by version id.
+     */
+    public VersionSnapshot(Map<String, VersionRecord> records) {
+        this.records = Collections.unmodifiableMap(records);
+
+        long[] versions = new long[records.size()];
+        long[] appliedVersions = new long[records.size()];
+        int size = 0;
+        int appliedSize = 0;
+        for (VersionRecord record : records.values()) {
+            long version = MutationVersion.parseId(record.getVersionId());
+            if (version != -1) {
+                versions[size++] = version;
+                if (!record.isFailed()) {
+                    appliedVersions[appliedSize++] = version;
+                }
+            }
+        }
+        this.versions = Arrays.copyOf(versions, size);
+        this.appliedVersions = Arrays.copyOf(appliedVersions, appliedSize);
+        Arrays.sort(this.versions);
+        Arrays.sort(this.appliedVersions);
+    }
+
+    /**
+     * Read the whole table Version once.
+     * The table is created if it does not exist yet.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @return the snapshot of the table Version.
+     */
+    public static VersionSnapshot load(Session session) {
+        return load(VersionTableDao.forSession(session));
+    }
+
+    /**
+     * Read the whole table Version once.
+     * The table is created if it does not exist yet.
+     * 
+     * @param dao
+     *            - the dao of the table Version.
+     * @return the snapshot of the table Version.
+     */
+    public static VersionSnapshot load(VersionTableDao dao) {
+        LOGGER.trace("Entering load(dao={})", dao);
+
+        Map<String, VersionRecord> records = new HashMap<>();
+        for (Row row : dao.getOrCreateVersionRecords()) {
+            VersionRecord record = VersionRecord.fromRow(row);
+            records.put(record.getVersionId(), record);
+        }
+
+        LOGGER.trace("Leaving load() : {} records", records.size());
+        return new VersionSnapshot(records);
+    }
+
+    /**
+     * @return true if the version id is present in the snapshot.
+     */
+    public boolean isVersionIdPresent(String versionId) {
+        long version = MutationVersion.parseId(versionId);
+        if (version == -1) {
+            return records.containsKey(versionId);
+        }
+        return Arrays.binarySearch(versions, version) >= 0;
+    }
+
+    /**
+     * @return true if the version is present in the snapshot.
+     */
+    public boolean isVersionPresent(MutationVersion version) {
+        return Arrays.binarySearch(versions, version.longValue()) >= 0;
+    }
+
+    /**
+     * @return true if the version is present in the snapshot and has not failed.
+     */
+    public boolean isVersionApplied(MutationVersion version) {
+        return Arrays.binarySearch(appliedVersions, version.longValue()) >= 0;
+    }
+
+    /**
+     * @return true if the recorded checksum of the version id is equal to the given hash.
+     */
+    public boolean isMutationHashCorrect(String versionId, String hash) {
+        VersionRecord record = records.get(versionId);
+        return record != null && hash.equals(record.getChecksum());
+    }
+
+    /**
+     * @return true if the recorded checksum of the version id is the checksum of the mutation,
+     *         computed with the algorithm which computed the recorded one.
+     */
+    public boolean isMutationHashCorrect(String versionId, AbstractCassandraMutation mutation) {
+        VersionRecord record = records.get(versionId);
+        return record != null && mutation.isChecksumCorrect(record.getChecksum());
+    }
+
+    /**
+     * @return true if the mutation of the version id has failed.
+     */
+    public boolean isMutationFailed(String versionId) {
+        VersionRecord record = records.get(versionId);
+        return record != null && record.isFailed();
+    }
+
+    /**
+     * Get the current version, the greatest version id which has not failed.
+     * 
+     * @return the current version.
+     */
+    public String getCurrentVersion() {
+        return getCurrentMutationVersion().getID();
+    }
+
+    /**
+     * Get the current version, the greatest version which has not failed.
+     * 
+     * @return the current version, {@link MutationVersion#NONE} if there is none.
+     */
+    public MutationVersion getCurrentMutationVersion() {
+        if (appliedVersions.length == 0) {
+            return MutationVersion.NONE;
+        }
+        return MutationVersion.valueOf(appliedVersions[appliedVersions.length - 1]);
+    }
+
+    /**
+     * @return the record of the version id, or null if absent.
+     */
+    public VersionRecord get(String versionId) {
+        return records.get(versionId);
+    }
+
+    /**
+     * @return all the records of the snapshot.
+     */
+    public Collection<VersionRecord> getRecords() {
+        return records.values();
+    }
+
+    /**
+     * @return the number of records of the snapshot.
+     */
+    public int size() {
+        return records.size();
+    }
+}
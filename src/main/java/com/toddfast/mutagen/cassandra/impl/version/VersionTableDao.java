@@ -0,0 +1,470 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.google.common.collect.MapMaker;
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+
+/**
+ * Access to the table Version.
+ * Every statement is prepared once per session and the prepared statements are cached,
+ * so the hot paths of migrate and baseline do not prepare or parse cql again.
+ * The subclasses implement the {@link VersionTableLayout layouts} of the table.
+ */
+public abstract class VersionTableDao {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(VersionTableDao.class);
+
+    private static final String FINGERPRINT_TABLE = "VersionFingerprint";
+
+    private static final String CHECKPOINT_TABLE = "VersionCheckpoint";
+
+    private static final ConcurrentMap<Session, Map<VersionTableLayout, VersionTableDao>> INSTANCES =
+            new MapMaker().weakKeys().makeMap();
+
+    private final Session session;
+
+    private final ConcurrentMap<String, PreparedStatement> preparedStatements = new MapMaker().makeMap();
+
+    /**
+     * Constructor for VersionTableDao.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     */
+    protected VersionTableDao(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Get the dao of a session for the layout of the table Version found in the keyspace.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @return the dao bound to the session.
+     */
+    public static VersionTableDao forSession(Session session) {
+        return forSession(session, VersionTableLayout.detect(session));
+    }
+
+    /**
+     * Get the dao of a session for a layout, created on first use.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @param layout
+     *            - the layout of the table Version.
+     * @return the dao bound to the session.
+     */
+    public static VersionTableDao forSession(Session session, VersionTableLayout layout) {
+        Map<VersionTableLayout, VersionTableDao> daos = INSTANCES.get(session);
+        if (daos == null) {
+            Map<VersionTableLayout, VersionTableDao> newDaos = new EnumMap<>(VersionTableLayout.class);
+            newDaos.put(VersionTableLayout.LEGACY, new LegacyVersionTableDao(session));
+            newDaos.put(VersionTableLayout.CLUSTERED, new ClusteredVersionTableDao(session));
+            daos = INSTANCES.putIfAbsent(session, newDaos);
+            if (daos == null) {
+                daos = newDaos;
+            }
+        }
+        return daos.get(layout);
+    }
+
+    /**
+     * Drop the tables of all the layouts.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     */
+    public static void dropTables(Session session) {
+        for (VersionTableLayout layout : VersionTableLayout.values()) {
+            forSession(session, layout).dropTable();
+        }
+        session.execute("DROP TABLE IF EXISTS \"" + FINGERPRINT_TABLE + "\"");
+        session.execute("DROP TABLE IF EXISTS \"" + CHECKPOINT_TABLE + "\"");
+    }
+
+    /**
+     * Prepare a statement, or get it from the cache if it was already prepared.
+     * 
+     * @param cql
+     *            - the statement to prepare.
+     * @return the prepared statement.
+     */
+    protected PreparedStatement prepare(String cql) {
+        PreparedStatement preparedStatement = preparedStatements.get(cql);
+        if (preparedStatement == null) {
+            LOGGER.trace("Preparing statement {}", cql);
+            preparedStatement = session.prepare(cql);
+            PreparedStatement previous = preparedStatements.putIfAbsent(cql, preparedStatement);
+            if (previous != null) {
+                preparedStatement = previous;
+            }
+        }
+        return preparedStatement;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * @return the layout of the table.
+     */
+    public abstract VersionTableLayout getLayout();
+
+    /**
+     * @return the quoted name of the table.
+     */
+    protected String getTable() {
+        return "\"" + getLayout().getTableName() + "\"";
+    }
+
+    /**
+     * @return the statement creating the table if it does not exist.
+     */
+    protected abstract String getCreateTableStatement();
+
+    /**
+     * Create table Version.
+     */
+    public void createTable() {
+        LOGGER.trace("Creating version table {}", getTable());
+        session.execute(getCreateTableStatement());
+    }
+
+    /**
+     * Drop table Version, and its fingerprint.
+     */
+    public void dropTable() {
+        LOGGER.trace("Dropping version table {}", getTable());
+        session.execute("DROP TABLE IF EXISTS " + getTable());
+        deleteFingerprint();
+    }
+
+    /**
+     * @return true if the table exists.
+     */
+    public boolean exists() {
+        return VersionTableLayout.exists(session, getLayout());
+    }
+
+    /**
+     * @return all the records in version table.
+     */
+    public ResultSet getVersionRecords() {
+        LOGGER.trace("getting version records");
+        return session.execute(prepare("SELECT * FROM " + getTable() + " LIMIT 1000000000").bind());
+    }
+
+    /**
+     * @return true if the table Version is empty.
+     */
+    public boolean isEmpty() {
+        LOGGER.trace("Checking for empty version table");
+        return session.execute(prepare("SELECT * FROM " + getTable() + " LIMIT 1").bind()).isExhausted();
+    }
+
+    /**
+     * Retrive record for a given versionId.
+     * 
+     * @return Result set with one row if versionId present, empty otherwise
+     */
+    public abstract ResultSet getVersionRecordByVersionId(String versionId);
+
+    /**
+     * Bind the insert statement of a version record.
+     * 
+     * @param version
+     *            Id of version record,usually represented by the datetime.
+     * @param filename
+     *            name of script file that was executed.
+     * @param checksum
+     *            checksum for validation.
+     * @param executionDate
+     *            The date of the execution.
+     * @param executionTime
+     *            The execution time(ms) for this script file.
+     * @param status
+     *            represents the result of migration.
+     * @return the bound insert statement.
+     */
+    public abstract BoundStatement bindVersionRecord(String version, String filename, String checksum,
+            Date executionDate, int executionTime, String status);
+
+    /**
+     * Bind the insert statement of a version record executed now.
+     * 
+     * @see #bindVersionRecord(String, String, String, Date, int, String)
+     */
+    public BoundStatement bindVersionRecord(String version, String filename, String checksum, int executionTime,
+            String status) {
+        return bindVersionRecord(version, filename, checksum, new Date(), executionTime, status);
+    }
+
+    /**
+     * Append the version record in the table Version.
+     * 
+     * @see #bindVersionRecord(String, String, String, Date, int, String)
+     */
+    public void appendVersionRecord(String version, String filename, String checksum, int executionTime,
+            String status) {
+        LOGGER.trace("Entering appendVersionRecord(version={}, filename={}, checksum={}, execution_time={}, status={})",
+                version, filename, checksum, executionTime, status);
+
+        session.execute(bindVersionRecord(version, filename, checksum, executionTime, status));
+        if (!MutationStatus.FAILED.getValue().equals(status)) {
+            updateFingerprint(Collections.singletonMap(version, checksum));
+        }
+
+        LOGGER.trace("Leaving appendVersionRecord()");
+    }
+
+    /**
+     * Read the fingerprint of the applied mutations, one row of the table VersionFingerprint.
+     * 
+     * @return the fingerprint, or null if there is none.
+     */
+    public VersionFingerprint getFingerprint() {
+        if (!VersionTableLayout.tableExists(session, FINGERPRINT_TABLE)) {
+            return null;
+        }
+        Row row = session.execute(prepare("SELECT * FROM \"" + FINGERPRINT_TABLE + "\" WHERE version_table = ?")
+                .bind(getLayout().getTableName())).one();
+        if (row == null || row.getString("algorithm") == null) {
+            return null;
+        }
+        return new VersionFingerprint(row.getString("algorithm"), row.getLong("fingerprint"), row.getInt("mutations"),
+                MutationVersion.parseId(row.getString("max_version")));
+    }
+
+    /**
+     * Write the fingerprint of the applied mutations, creating the table VersionFingerprint if it does not exist yet.
+     * 
+     * @param fingerprint
+     *            - the fingerprint.
+     */
+    public void saveFingerprint(VersionFingerprint fingerprint) {
+        LOGGER.trace("Saving version fingerprint {}", fingerprint);
+        if (!VersionTableLayout.tableExists(session, FINGERPRINT_TABLE)) {
+            session.execute("CREATE TABLE IF NOT EXISTS \"" + FINGERPRINT_TABLE + "\""
+                    + "( version_table varchar, algorithm varchar, fingerprint bigint,"
+                    + "mutations int, max_version varchar, PRIMARY KEY(version_table))");
+        }
+        session.execute(prepare("INSERT INTO \"" + FINGERPRINT_TABLE + "\" (version_table,algorithm,fingerprint,"
+                + "mutations,max_version) VALUES (?,?,?,?,?)").bind(getLayout().getTableName(),
+                fingerprint.getAlgorithm(), fingerprint.getFingerprint(), fingerprint.getMutations(),
+                fingerprint.getMaxVersion()));
+    }
+
+    /**
+     * Add applied mutations to the fingerprint, if there is one.
+     * The fingerprint is deleted if a checksum was not computed with its algorithm,
+     * the next plan verifies all the mutations and writes it again.
+     * 
+     * @param checksums
+     *            - the checksums of the applied mutations by version id.
+     */
+    void updateFingerprint(Map<String, String> checksums) {
+        VersionFingerprint fingerprint = getFingerprint();
+        if (fingerprint == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : checksums.entrySet()) {
+            String checksum = entry.getValue() != null ? entry.getValue() : "";
+            if (!ChecksumAlgorithms.forChecksum(checksum).getName().equals(fingerprint.getAlgorithm())) {
+                LOGGER.debug("Checksum {} not computed with {}, deleting version fingerprint", checksum,
+                        fingerprint.getAlgorithm());
+                deleteFingerprint();
+                return;
+            }
+            fingerprint.add(entry.getKey(), checksum);
+        }
+        saveFingerprint(fingerprint);
+    }
+
+    /**
+     * Delete the fingerprint of the applied mutations, when records are deleted:
+     * the next plan verifies all the mutations and writes it again.
+     */
+    protected void deleteFingerprint() {
+        if (VersionTableLayout.tableExists(session, FINGERPRINT_TABLE)) {
+            LOGGER.debug("Deleting version fingerprint of {}", getTable());
+            session.execute(prepare("DELETE FROM \"" + FINGERPRINT_TABLE + "\" WHERE version_table = ?")
+                    .bind(getLayout().getTableName()));
+        }
+    }
+
+    /**
+     * Read the checkpoints of the executed statements of a mutation, creating the table VersionCheckpoint
+     * if it does not exist yet.
+     * 
+     * @param versionId
+     *            - version id.
+     * @return the checkpoints by index of their first statement in the script.
+     */
+    public Map<Integer, StatementCheckpoint> getStatementCheckpoints(String versionId) {
+        if (!VersionTableLayout.tableExists(session, CHECKPOINT_TABLE)) {
+            session.execute("CREATE TABLE IF NOT EXISTS \"" + CHECKPOINT_TABLE + "\""
+                    + "( versionid varchar, statement int, last_statement int, hash varchar,"
+                    + "PRIMARY KEY(versionid, statement))");
+        }
+        Map<Integer, StatementCheckpoint> checkpoints = new HashMap<>();
+        for (Row row : session.execute(prepare("SELECT statement, last_statement, hash FROM \"" + CHECKPOINT_TABLE
+                + "\" WHERE versionid = ?").bind(versionId))) {
+            checkpoints.put(row.getInt("statement"), new StatementCheckpoint(row.getInt("statement"),
+                    row.getInt("last_statement"), row.getString("hash")));
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Bind the insert statement recording statements of a mutation as executed.
+     * 
+     * @param versionId
+     *            - version id.
+     * @param checkpoint
+     *            - the executed statements.
+     * @return the bound insert statement.
+     */
+    public BoundStatement bindStatementCheckpoint(String versionId, StatementCheckpoint checkpoint) {
+        return prepare("INSERT INTO \"" + CHECKPOINT_TABLE
+                + "\" (versionid,statement,last_statement,hash) VALUES (?,?,?,?)").bind(versionId,
+                checkpoint.getFirstStatement(), checkpoint.getLastStatement(), checkpoint.getHash());
+    }
+
+    /**
+     * Delete the checkpoints of the statements of a mutation, once its version record is written.
+     * 
+     * @param versionId
+     *            - version id.
+     */
+    public void deleteStatementCheckpoints(String versionId) {
+        session.execute(prepare("DELETE FROM \"" + CHECKPOINT_TABLE + "\" WHERE versionid = ?").bind(versionId));
+    }
+
+    /**
+     * Delete version record, and the fingerprint which includes it.
+     * 
+     * @param versionId
+     *            - version id.
+     */
+    public abstract void deleteVersionRecord(String versionId);
+
+    /**
+     * Delete all failed version records.
+     */
+    public void deleteFailedVersionRecords() {
+        LOGGER.trace("Entering deleteFailedVersionRecords()");
+
+        for (VersionRecord record : VersionSnapshot.load(this).getRecords()) {
+            if (record.isFailed()) {
+                LOGGER.info("The following record has been selected for deletion : {}", record);
+                deleteVersionRecord(record.getVersionId());
+            }
+        }
+    }
+
+    /**
+     * Check if the versionId exists in the database.
+     * 
+     * @return true if versionId is in the database
+     */
+    public boolean isVersionIdPresent(String versionId) {
+        return !getVersionRecordByVersionId(versionId).isExhausted();
+    }
+
+    /**
+     * Check if the mutation has failed.
+     * 
+     * @return true if the record of versionId has the status failed.
+     */
+    public boolean isMutationFailed(String versionId) {
+        Row row = getVersionRecordByVersionId(versionId).one();
+        return row != null && MutationStatus.FAILED.getValue().equals(row.getString("status"));
+    }
+
+    /**
+     * Check if the mutation checksum is the recorded one.
+     * 
+     * @param versionId
+     *            - version id.
+     * @param hash
+     *            - mutation hash.
+     * @return true if the recorded checksum is equal to the hash.
+     */
+    public boolean isMutationHashCorrect(String versionId, String hash) {
+        Row row = getVersionRecordByVersionId(versionId).one();
+        return row != null && hash.equals(row.getString("checksum"));
+    }
+
+    /**
+     * check the recorded checksum of a mutation with the algorithm which computed it.
+     * 
+     * @param versionId
+     *            - version id.
+     * @param mutation
+     *            - the mutation.
+     * @return true if the recorded checksum is the checksum of the mutation.
+     */
+    public boolean isMutationHashCorrect(String versionId, AbstractCassandraMutation mutation) {
+        Row row = getVersionRecordByVersionId(versionId).one();
+        return row != null && mutation.isChecksumCorrect(row.getString("checksum"));
+    }
+
+    /**
+     * Get the current timestamp in the database.
+     * The table Version is created if it does not exist yet.
+     * 
+     * @return
+     *         the current timestamp in the database.
+     */
+    public String getCurrentState() {
+        LOGGER.trace("Entering getCurrentState()");
+
+        String version = VersionSnapshot.load(this).getCurrentVersion();
+
+        LOGGER.trace("Leaving getCurrentState() : {}", version);
+        return version;
+    }
+
+    /**
+     * Read all the version records, creating the table Version if it does not exist yet.
+     * 
+     * @return all the records in version table.
+     */
+    ResultSet getOrCreateVersionRecords() {
+        try {
+            return getVersionRecords();
+        } catch (Exception e) {
+            LOGGER.trace("Failed to get version records, trying to create version table");
+            try {
+                createTable();
+            } catch (Exception e2) {
+                throw new MutagenException("Could not create version table", e2);
+            }
+            try {
+                return getVersionRecords();
+            } catch (Exception e3) {
+                throw new MutagenException("could not retreive Version table information", e3);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.toddfast.mutagen.cassandra.impl.version;
+
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Session;
+
+/**
+ * The layouts of the table Version.
+ */
+public enum VersionTableLayout {
+    /**
+     * The table Version keyed by versionid alone.
+     */
+    LEGACY("Version"),
+
+    /**
+     * The table VersionV2, with versionid as a descending clustering column
+     * of two partitions, one for the applied records and one for the failed records.
+     */
+    CLUSTERED("VersionV2");
+
+    private final String tableName;
+
+    VersionTableLayout(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Parse a layout name of the configuration.
+     * 
+     * @param name
+     *            - legacy or clustered.
+     * @return the layout.
+     */
+    public static VersionTableLayout fromName(String name) {
+        return VersionTableLayout.valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * Detect the layout of the logged keyspace of a session.
+     * The clustered layout is used once its table exists and the upgrade marked it complete,
+     * see {@link ClusteredVersionTableDao#upgrade(Session)}.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @return the layout.
+     */
+    public static VersionTableLayout detect(Session session) {
+        return exists(session, CLUSTERED) && ClusteredVersionTableDao.isUpgraded(session) ? CLUSTERED : LEGACY;
+    }
+
+    /**
+     * Check from the cluster metadata if the table of a layout exists.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @param layout
+     *            - the layout.
+     * @return true if the table of the layout exists.
+     */
+    public static boolean exists(Session session, VersionTableLayout layout) {
+        return tableExists(session, layout.getTableName());
+    }
+
+    /**
+     * Check from the cluster metadata if a table of the logged keyspace exists.
+     * 
+     * @param session
+     *            - the session to execute cql.
+     * @param tableName
+     *            - the name of the table, case sensitive.
+     * @return true if the table exists.
+     */
+    static boolean tableExists(Session session, String tableName) {
+        String keyspace = session.getLoggedKeyspace();
+        if (keyspace == null) {
+            return false;
+        }
+        KeyspaceMetadata keyspaceMetadata = session.getCluster().getMetadata().getKeyspace("\"" + keyspace + "\"");
+        return keyspaceMetadata != null && keyspaceMetadata.getTable("\"" + tableName + "\"") != null;
+    }
+}
@@ -1,20 +1,17 @@
 package com.toddfast.mutagen.cassandra.utils;
 
-import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-
-import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
-import com.toddfast.mutagen.MutagenException;
 
+/**
+ * Static helpers for the keyspace and the table Version.
+ * The table Version helpers delegate to the {@link VersionTableDao} of the session.
+ */
 public class DBUtils {
     private static Logger log = LoggerFactory.getLogger(DBUtils.class);
 
@@ -48,29 +45,21 @@ public class DBUtils {
     /**
      * Create table Version.
      * 
+     * @deprecated use {@link VersionTableDao#createTable()}
      */
+    @Deprecated
     public static void createSchemaVersionTable(Session session) {
-        log.trace("Entering createSchemaVersionTable(session={})", session);
-
-        // Create table if it doesn't exist
-        String createStatement = "CREATE TABLE IF NOT EXISTS \"" +
-                "Version" +
-                "\"( versionid varchar, filename varchar,checksum varchar,"
-                + "execution_date timestamp,execution_time int,"
-                + "status varchar, PRIMARY KEY(versionid))";
-
-        session.execute(createStatement);
-        log.trace("Leaving createSchemaVersionTable()");
-
+        VersionTableDao.forSession(session).createTable();
     }
 
     /**
      * Drop table Version.
+     * 
+     * @deprecated use {@link VersionTableDao#dropTable()}
      */
+    @Deprecated
     public static void dropSchemaVersionTable(Session session) {
-        log.trace("Dropping version table");
-        String dropStatement = "DROP TABLE IF EXISTS \"Version\";";
-        session.execute(dropStatement);
+        VersionTableDao.forSession(session).dropTable();
     }
 
     /**
@@ -78,179 +67,94 @@ public class DBUtils {
      * 
      * @return
      *         all the records in version table.
+     * @deprecated use {@link VersionTableDao#getVersionRecords()}
      */
-
+    @Deprecated
     public static ResultSet getVersionRecords(Session session) {
-        log.trace("getting version records");
-
-        // get version record
-        String selectStatement = "SELECT * FROM \"" +
-                "Version" + "\"" +
-                "limit 1000000000;";
-        return session.execute(selectStatement);
+        return VersionTableDao.forSession(session).getVersionRecords();
     }
 
     /**
      * check if the table is empty.
      * 
-     * @param session
-     *            - the session to execute cql.
-     * @return - bool
+     * @deprecated use {@link VersionTableDao#isEmpty()}
      */
+    @Deprecated
     public static boolean isEmptyVersionTable(Session session) {
-        log.trace("Checking for empty version table");
-
-        ResultSet rs = session.execute("SELECT * FROM \"Version\";");
-        return rs.isExhausted();
+        return VersionTableDao.forSession(session).isEmpty();
     }
 
     /**
      * append the version record in the table Version.
      * 
-     * @param session
-     *            the session to execute cql.
-     * @param version
-     *            Id of version record,usually represented by the datetime.
-     * @param filename
-     *            name of script file that was executed.
-     * @param checksum
-     *            checksum for validation.
-     * @param execution_time
-     *            The execution time(ms) for this script file.
-     * @param status
-     *            represents the result of migration.
+     * @deprecated use {@link VersionTableDao#appendVersionRecord(String, String, String, int, String)}
      */
+    @Deprecated
     public static void appendVersionRecord(Session session, String version, String filename, String checksum,
             int execution_time,
             String status) {
-
-        log.trace(
-                "Entering appendVersionRecord(session={}, version={}, filename={}, checksum={}, execution_time={}, status={})",
-                session, version, filename, checksum, execution_time, status);
-
-        // insert statement for version record
-        String insertStatement = "INSERT INTO \"" + "Version" + "\" (versionid,filename,checksum,"
-                + "execution_date,execution_time,status) "
-                + "VALUES (?,?,?,?,?,?);";
-        // prepare statement
-        PreparedStatement preparedInsertStatement = session.prepare(insertStatement);
-        session.execute(preparedInsertStatement.bind(version,
-                filename,
-                checksum,
-                new Timestamp(new Date().getTime()),
-                execution_time,
-                status
-                ));
-
-        log.trace("Leaving appendVersionRecord()");
+        VersionTableDao.forSession(session).appendVersionRecord(version, filename, checksum, execution_time, status);
     }
 
     /**
      * Retrive record for a given versionId
      * 
      * @return Result set with one row if versionId present, empty otherwise
+     * @deprecated use {@link VersionTableDao#getVersionRecordByVersionId(String)}
      */
+    @Deprecated
     public static ResultSet getVersionRecordByVersionId(Session session, String versionId) {
-        log.trace("getting version record for id {}", versionId);
-        String selectStatement = "SELECT * FROM \""
-                + "Version"
-                + "\" WHERE versionid = '" + versionId + "'";
-        return session.execute(selectStatement);
+        return VersionTableDao.forSession(session).getVersionRecordByVersionId(versionId);
     }
 
     /**
      * delete version record.
      * 
-     * @param session
-     *            - the session to execute cql.
-     * @param versionId
-     *            - version id.
+     * @deprecated use {@link VersionTableDao#deleteVersionRecord(String)}
      */
+    @Deprecated
     public static void deleteVersionRecord(Session session, String versionId) {
-        log.trace("deleting version record for id {}", versionId);
-
-        String deleteStatement = "DELETE FROM \"Version\" WHERE versionid = '" + versionId + "';";
-        session.execute(deleteStatement);
+        VersionTableDao.forSession(session).deleteVersionRecord(versionId);
     }
 
     /**
      * delete all failed version records.
      * 
-     * @param session
-     *            - the session to execute cql.
+     * @deprecated use {@link VersionTableDao#deleteFailedVersionRecords()}
      */
+    @Deprecated
     public static void deleteFailedVersionRecord(Session session) {
-        log.trace("Entering deleteFailedVersionRecord(session={})", session);
-
-        ResultSet rs = getVersionRecords(session);
-        List<Row> selectedRows = new ArrayList<>();
-
-        while (!rs.isExhausted()) {
-            Row r = rs.one();
-            if (r.getString("status").equals(MutationStatus.FAILED.getValue())) {
-                log.info("The following record has been selected for deletion : {}", r);
-                selectedRows.add(r);
-            }
-        }
-
-        log.info("The following record has been selected for deletion : {}", selectedRows);
-
-        for (Row r : selectedRows) {
-            log.trace("deleting row {}", r);
-            deleteVersionRecord(session, r.getString("versionid"));
-        }
+        VersionTableDao.forSession(session).deleteFailedVersionRecords();
     }
 
     /**
      * Check if the versionId exists in the database.
      * 
-     * @return true if versionId is in the database
+     * @deprecated use {@link VersionTableDao#isVersionIdPresent(String)}
      */
+    @Deprecated
     public static boolean isVersionIdPresent(Session session, String versionId) {
-        log.trace("Executing isVersionIdPresent(session={}, versionId={})", session, versionId);
-        return !getVersionRecordByVersionId(session, versionId).isExhausted();
+        return VersionTableDao.forSession(session).isVersionIdPresent(versionId);
     }
 
     /**
      * Check if the mutation fails.
      * 
-     * @return true if versionId is in the database
+     * @deprecated use {@link VersionTableDao#isMutationFailed(String)}
      */
+    @Deprecated
     public static boolean isMutationFailed(Session session, String versionId) {
-        // get rows for given version id
-        List<Row> rows = getVersionRecordByVersionId(session, versionId).all();
-
-        boolean hasFailed = false;
-
-        // if there's one and only one row, and the mutation has failed
-        if (rows.size() == 1 && rows.get(0).getString("status").equals(MutationStatus.FAILED.getValue()))
-            hasFailed = true;
-
-        log.trace("Executed isVersionIdPresent(session={}, versionId={}) : {}", session, versionId, hasFailed);
-
-        return hasFailed;
+        return VersionTableDao.forSession(session).isMutationFailed(versionId);
     }
 
     /**
      * check if the mutation checksum changes.
      * 
-     * @param session
-     *            - the session to execute cql.
-     * @param versionId
-     *            - version id.
-     * @param hash
-     *            - mutation hash.
-     * @return bool
+     * @deprecated use {@link VersionTableDao#isMutationHashCorrect(String, String)}
      */
+    @Deprecated
     public static boolean isMutationHashCorrect(Session session, String versionId, String hash) {
-        log.trace("Executing isMutationHashCorrect(session={}, versionId={}, hash={}", session, versionId, hash);
-
-        String selectStatement = "SELECT checksum FROM \"" +
-                "Version" + "\" WHERE versionid = '" + versionId + "'";
-        ResultSet result = session.execute(selectStatement);
-
-        String checksum = result.all().get(0).getString("checksum");
-        return (checksum.compareTo(hash) == 0);
+        return VersionTableDao.forSession(session).isMutationHashCorrect(versionId, hash);
     }
 
     /**
@@ -258,43 +162,10 @@ public class DBUtils {
      * 
      * @return
      *         the current timestamp in the database.
+     * @deprecated use {@link VersionTableDao#getCurrentState()}
      */
+    @Deprecated
     public static String getCurrentState(Session session) {
-        log.trace("Entering getCurrentState(session={})", session);
-
-        String version = "000000000000";
-        ResultSet results;
-        try {
-            results = getVersionRecords(session);
-        } catch (Exception e) {
-            log.trace("Failed to get version records, trying to create version table");
-            try {
-                createSchemaVersionTable(session);
-                log.trace("creationg successful, second try to get version record");
-
-                try {
-                    results = getVersionRecords(session);
-                } catch (Exception e3) {
-                    throw new MutagenException(
-                            "could not retreive Version table information", e);
-
-                }
-            } catch (Exception e2) {
-                throw new MutagenException("Could not create version table", e2);
-            }
-        }
-
-        while (!results.isExhausted()) {
-            Row r = results.one();
-            log.trace("Parsing row {}", r);
-
-            String versionid = r.getString("versionid");
-            if ((!r.getString("status").equals(MutationStatus.FAILED.getValue())) && version.compareTo(versionid) < 0)
-                version = versionid;
-        }
-
-        log.trace("Leaving getCurrentState() : {}", version);
-
-        return version;
+        return VersionTableDao.forSession(session).getCurrentState();
     }
-}
\ No newline at end of file
+}
@@ -1,71 +1,76 @@
 package com.toddfast.mutagen.cassandra.utils;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.toddfast.mutagen.MutagenException;
 import com.toddfast.mutagen.basic.ResourceScanner;
 import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.manifest.MutationManifest;
 
 public class LoadResources {
 
     private static Logger log = LoggerFactory.getLogger(LoadResources.class);
 
     /**
-     * Sorts by root file name, ignoring path and file extension
+     * Sorts by version, then by root file name, ignoring path and file extension.
+     * The file names are compared in place, without extracting substrings.
      * 
      */
     private static final Comparator<String> COMPARATOR =
             new Comparator<String>() {
                 @Override
                 public int compare(final String path1, final String path2) {
-                    try {
-                        int index1 = path1.lastIndexOf("/");
-                        int index2 = path2.lastIndexOf("/");
-
-                        String file1;
-                        if (index1 != -1) {
-                            file1 = path1.substring(index1 + 1);
-                        }
-                        else {
-                            file1 = path1;
-                        }
-
-                        String file2;
-                        if (index2 != -1) {
-                            file2 = path2.substring(index2 + 1);
-                        }
-                        else {
-                            file2 = path2;
-                        }
-
-                        index1 = file1.lastIndexOf(".");
-                        index2 = file2.lastIndexOf(".");
+                    long version1 = MutationVersion.parseResourceName(path1);
+                    long version2 = MutationVersion.parseResourceName(path2);
+                    if (version1 != version2) {
+                        return version1 < version2 ? -1 : 1;
+                    }
 
-                        if (index1 > 1) {
-                            file1 = file1.substring(0, index1);
-                        }
+                    int start1 = path1.lastIndexOf('/') + 1;
+                    int start2 = path2.lastIndexOf('/') + 1;
+                    int end1 = rootFileNameEnd(path1, start1);
+                    int end2 = rootFileNameEnd(path2, start2);
 
-                        if (index2 > 1) {
-                            file2 = file2.substring(0, index2);
+                    int length1 = end1 - start1;
+                    int length2 = end2 - start2;
+                    for (int i = 0; i < Math.min(length1, length2); i++) {
+                        char c1 = path1.charAt(start1 + i);
+                        char c2 = path2.charAt(start2 + i);
+                        if (c1 != c2) {
+                            return c1 - c2;
                         }
-
-                        return file1.compareTo(file2);
-                    }
-                    catch (StringIndexOutOfBoundsException e) {
-                        throw new StringIndexOutOfBoundsException(e.getMessage() +
-                                " (path1: \"" + path1 +
-                                "\", path2: \"" + path2 + "\")");
                     }
+                    return length1 - length2;
+                }
+
+                private int rootFileNameEnd(String path, int start) {
+                    int index = path.lastIndexOf('.');
+                    return index - start > 1 ? index : path.length();
                 }
             };
 
@@ -79,6 +84,8 @@ public class LoadResources {
     /**
      * Retrives all the scripts under the indicated resource path.
      * Sort them according their datetime, save them.
+     * The manifest of the resource path is read if it was generated at build time,
+     * otherwise the class path is scanned.
      * 
      * @param mutagen
      *            - The cassandraMutagen instance that executes mutations.
@@ -91,19 +98,279 @@ public class LoadResources {
      */
     public static List<String> loadResources(CassandraMutagen mutagen, String rootResourcePath, String resourceScannerPatternFilter) throws IOException {
         List<String> resources = new ArrayList<>();
+        for (MutationResource resource : loadLocation(mutagen, rootResourcePath, resourceScannerPatternFilter)) {
+            resources.add(resource.getName());
+        }
+        return resources;
+    }
+
+    /**
+     * Retrives all the mutation resources under the indicated resource path, like
+     * {@link #loadResources(CassandraMutagen, String, String)}. Checksums computed at build time
+     * are read from the manifest.
+     * 
+     * @param mutagen
+     *            - The cassandraMutagen instance that executes mutations.
+     * @param rootResourcePath
+     *            - resource path.
+     * @param resourceScannerPatternFilter
+     *            - Pattern filter.
+     * @return List of mutation resources founded.
+     * @throws IOException
+     */
+    public static List<MutationResource> loadMutationResources(CassandraMutagen mutagen, String rootResourcePath, String resourceScannerPatternFilter) throws IOException {
+        return mergeResources(Collections.singletonList(
+                loadLocation(mutagen, rootResourcePath, resourceScannerPatternFilter)));
+    }
+
+    /**
+     * Retrives all the mutation resources under several resource paths.
+     * The resource paths are scanned in parallel and their sorted resources are merged by version.
+     * 
+     * @param mutagen
+     *            - The cassandraMutagen instance that executes mutations.
+     * @param rootResourcePaths
+     *            - resource paths.
+     * @param resourceScannerPatternFilter
+     *            - Pattern filter.
+     * @return List of mutation resources founded.
+     * @throws IOException
+     * @throws MutagenException
+     *             if two mutations have the same version.
+     */
+    public static List<MutationResource> loadMutationResources(final CassandraMutagen mutagen, List<String> rootResourcePaths, final String resourceScannerPatternFilter) throws IOException {
+        if (rootResourcePaths.size() == 1) {
+            return loadMutationResources(mutagen, rootResourcePaths.get(0), resourceScannerPatternFilter);
+        }
+
+        int threads = Math.min(rootResourcePaths.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mutagen-resource-scan");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<List<MutationResource>>> futures = new ArrayList<>();
+            for (final String rootResourcePath : rootResourcePaths) {
+                futures.add(executor.submit(new Callable<List<MutationResource>>() {
+                    @Override
+                    public List<MutationResource> call() throws IOException {
+                        return loadLocation(mutagen, rootResourcePath, resourceScannerPatternFilter);
+                    }
+                }));
+            }
+
+            List<List<MutationResource>> locations = new ArrayList<>();
+            for (Future<List<MutationResource>> future : futures) {
+                locations.add(future.get());
+            }
+            return mergeResources(locations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading resources", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Could not load resources", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Retrives the sorted mutation resources of a resource path, from the manifests of the class path entries
+     * which have one, and by scanning the others.
+     */
+    private static List<MutationResource> loadLocation(CassandraMutagen mutagen, String rootResourcePath, String resourceScannerPatternFilter) throws IOException {
+        ClassLoader loader = mutagen.getClass().getClassLoader();
+        MutationManifest manifest = MutationManifest.find(loader, rootResourcePath);
+        if (manifest == null) {
+            return toMutationResources(scanResources(loader, rootResourcePath, resourceScannerPatternFilter));
+        }
+        log.info("Found mutation manifest for \"{}\"", rootResourcePath);
+        checkManifest(manifest, rootResourcePath);
+
+        List<MutationResource> resources = manifest.toMutationResources(resourceScannerPatternFilter);
+        List<URL> roots = manifest.getRootsWithoutManifest(loader, rootResourcePath);
+        if (roots.isEmpty()) {
+            return resources;
+        }
+        log.info("Scanning class path entries without mutation manifest for \"{}\" : {}", rootResourcePath, roots);
+        try (URLClassLoader rootLoader = new URLClassLoader(roots.toArray(new URL[roots.size()]), null)) {
+            List<MutationResource> scanned = toMutationResources(
+                    scan(rootLoader, rootResourcePath, resourceScannerPatternFilter));
+            return mergeResources(Arrays.asList(resources, scanned));
+        }
+    }
+
+    /**
+     * Check that the directories of the class path hold no resource missing from their manifests,
+     * such as a mutation added since the manifest was generated.
+     * 
+     * @throws MutagenException
+     *             if a resource is not listed.
+     */
+    private static void checkManifest(MutationManifest manifest, String rootResourcePath) throws IOException {
+        List<URL> roots = manifest.getDirectoryRoots();
+        if (roots.isEmpty()) {
+            return;
+        }
+        List<String> unlisted = new ArrayList<>();
+        Set<String> listed = manifest.getResourceNames();
+        try (URLClassLoader rootLoader = new URLClassLoader(roots.toArray(new URL[roots.size()]), null)) {
+            for (String resource : scan(rootLoader, rootResourcePath, ".*")) {
+                // named as by the manifest generator
+                String name = relativize(resource, rootResourcePath).replace(File.separatorChar, '/');
+                if (!listed.contains(name) && !name.contains("$")) {
+                    unlisted.add(name);
+                }
+            }
+        }
+        if (!unlisted.isEmpty()) {
+            throw new MutagenException("The mutation manifest for \"" + rootResourcePath
+                    + "\" does not list the resources " + unlisted + ", it should be generated again");
+        }
+    }
+
+    /**
+     * Merge lists of mutation resources, each sorted by version, into one list sorted by version.
+     * A resource found in several lists is kept once.
+     * 
+     * @param locations
+     *            - the sorted resources of each location.
+     * @return the merged resources.
+     * @throws MutagenException
+     *             if two mutations have the same version.
+     */
+    public static List<MutationResource> mergeResources(List<List<MutationResource>> locations) {
+        int size = 0;
+        PriorityQueue<ResourceCursor> queue = new PriorityQueue<>(Math.max(1, locations.size()));
+        for (List<MutationResource> location : locations) {
+            size += location.size();
+            ResourceCursor cursor = new ResourceCursor(location);
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+
+        List<MutationResource> result = new ArrayList<>(size);
+        List<String> duplicateResourceState = new ArrayList<>();
+        MutationResource last = null;
+        long lastVersion = -1;
+        while (!queue.isEmpty()) {
+            ResourceCursor cursor = queue.poll();
+            MutationResource resource = cursor.resource;
+            String name = resource.getName();
+
+            if (last != null && last.getName().equals(name)) {
+                // the same resource under overlapping locations
+                log.debug("Skipping resource \"{}\" found twice", name);
+            } else {
+                // java sources share the version of their class
+                if (!name.endsWith(".java") && cursor.version != -1) {
+                    if (cursor.version == lastVersion) {
+                        duplicateResourceState.add(cursor.getVersion());
+                    }
+                    lastVersion = cursor.version;
+                }
+                result.add(resource);
+                last = resource;
+            }
+
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+
+        if (duplicateResourceState.size() > 0) {
+            throw new MutagenException("Two migration scripts possess the same state" + duplicateResourceState);
+        }
+        return result;
+    }
+
+    /**
+     * The current resource of a sorted list, ordered by version then by name.
+     */
+    private static class ResourceCursor implements Comparable<ResourceCursor> {
+
+        private final List<MutationResource> resources;
+
+        private int index = -1;
+
+        private MutationResource resource;
+
+        private long version;
+
+        ResourceCursor(List<MutationResource> resources) {
+            this.resources = resources;
+        }
+
+        boolean next() {
+            if (++index >= resources.size()) {
+                return false;
+            }
+            resource = resources.get(index);
+            version = MutationVersion.parseResourceName(resource.getName());
+            return true;
+        }
+
+        String getVersion() {
+            return MutationVersion.valueOf(version).getID();
+        }
+
+        @Override
+        public int compareTo(ResourceCursor other) {
+            if (version != other.version) {
+                return version < other.version ? -1 : 1;
+            }
+            int result = COMPARATOR.compare(resource.getName(), other.resource.getName());
+            return result != 0 ? result : resource.getName().compareTo(other.resource.getName());
+        }
+    }
+
+    /**
+     * Scan the class path for the scripts under the indicated resource path.
+     * Sort them according their datetime.
+     * 
+     * @param loader
+     *            - the class loader to scan.
+     * @param rootResourcePath
+     *            - resource path.
+     * @param resourceScannerPatternFilter
+     *            - Pattern filter.
+     * @return List of resources founded.
+     * @throws IOException
+     */
+    public static List<String> scanResources(ClassLoader loader, String rootResourcePath, String resourceScannerPatternFilter) throws IOException {
+        List<String> resources = scan(loader, rootResourcePath, resourceScannerPatternFilter);
+        // Make sure we found some resources
+        if (resources.isEmpty()) {
+            throw new IllegalArgumentException("Could not find resources " +
+                    "on path \"" + rootResourcePath + "\"");
+        }
+        return resources;
+    }
+
+    /**
+     * Scan the class path like {@link #scanResources(ClassLoader, String, String)}, without requiring resources.
+     */
+    private static List<String> scan(ClassLoader loader, String rootResourcePath, String resourceScannerPatternFilter) throws IOException {
+        List<String> resources = new ArrayList<>();
 
         try {
             List<String> discoveredResources =
                     ResourceScanner.getInstance().getResources(
                             rootResourcePath, Pattern.compile(resourceScannerPatternFilter),
-                            mutagen.getClass().getClassLoader());
-            // Make sure we found some resources
-            if (discoveredResources.isEmpty()) {
-                throw new IllegalArgumentException("Could not find resources " +
-                        "on path \"" + rootResourcePath + "\"");
-            }
+                            loader);
             // Sort the resources with the comparator
-            Collections.sort(discoveredResources, COMPARATOR);
+            sortResources(discoveredResources);
 
             // Clean the resources
 
@@ -127,6 +394,32 @@ public class LoadResources {
         return resources;
     }
 
+    /**
+     * Sorts resources by root file name, ignoring path and file extension.
+     * 
+     * @param resources
+     *            - resource names.
+     */
+    public static void sortResources(List<String> resources) {
+        Collections.sort(resources, COMPARATOR);
+    }
+
+    /**
+     * Create the mutation resources of resource names, once per resource.
+     * Their contents are loaded on first use.
+     * 
+     * @param resources
+     *            - resource names, as returned by {@link #loadResources(CassandraMutagen, String, String)}.
+     * @return the mutation resources, in the same order.
+     */
+    public static List<MutationResource> toMutationResources(List<String> resources) {
+        List<MutationResource> mutationResources = new ArrayList<>(resources.size());
+        for (String resource : resources) {
+            mutationResources.add(new MutationResource(resource));
+        }
+        return mutationResources;
+    }
+
     /**
      * Returns a new path that points to the same location as the first parameter, but starts with the second parameter.
      * If the second parameter is not contained in the first, returns an empty string.
@@ -136,7 +429,7 @@ public class LoadResources {
      *
      * Example: x/y/z/a/b/c/d/e, a/b/c -> a/b/c/d/e
      */
-    private static String relativize(String pathToRelativize, String root) {
+    public static String relativize(String pathToRelativize, String root) {
         Path rootPath = Paths.get(root);
         Path result = Paths.get(pathToRelativize);
         while (result.getNameCount() > 1 && !result.startsWith(rootPath)) {
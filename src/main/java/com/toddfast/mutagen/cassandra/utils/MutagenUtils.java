@@ -5,6 +5,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.toddfast.mutagen.Mutation;
 import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.cassandra.impl.lock.SkippedMigrationResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,7 +27,9 @@ public class MutagenUtils {
     public static void showMigrationResults(Plan.Result<String> result) {
         printMutations("Completed mutations:", result.getCompletedMutations());
         printMutations("Remaining mutations:", result.getRemainingMutations());
-        if (result.isMutationComplete()) {
+        if (result instanceof SkippedMigrationResult) {
+            LOGGER.warn("Migration skipped, lease held by {}.", ((SkippedMigrationResult) result).getHolder());
+        } else if (result.isMutationComplete()) {
             LOGGER.info("Migration finished.");
         } else {
             LOGGER.error("Migration aborted!");
@@ -0,0 +1,104 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.toddfast.mutagen.cassandra.impl.artifact.ArtifactCache;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationArtifact;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+
+public class ArtifactCacheTest {
+
+    private static final String SCRIPT = "-- create the table\n"
+            + "CREATE TABLE \"Test1\" (key varchar PRIMARY KEY, value1 varchar);\n"
+            + "INSERT INTO \"Test1\" (key, value1) VALUES ('row1', 'caf\u00e9;');\n";
+
+    private Path directory;
+
+    private Path script;
+
+    private Path cacheFile;
+
+    @Before
+    public void createFiles() throws IOException {
+        directory = Files.createTempDirectory("mutagen-cache");
+        script = directory.resolve("M201501011225_CreateTable_1111.cqlsh.txt");
+        cacheFile = directory.resolve("artifacts.cache");
+        Files.write(script, SCRIPT.getBytes(Charsets.UTF_8));
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(script);
+        Files.deleteIfExists(cacheFile);
+        Files.deleteIfExists(directory);
+    }
+
+    private MutationArtifact load(ArtifactCache cache) {
+        return MutationArtifact.load(new MutationResource(script.toString()), true, cache);
+    }
+
+    /**
+     * Check that the checksums and the statements are read back from the cache file.
+     */
+    @Test
+    public void reuseCachedArtifacts() throws IOException {
+        List<String> expected = load(null).getStatements();
+        String checksum = load(null).getChecksum(ChecksumAlgorithms.MD5);
+
+        ArtifactCache cache = ArtifactCache.open(cacheFile);
+        MutationArtifact artifact = load(cache);
+        Assert.assertEquals(expected, artifact.getStatements());
+        Assert.assertEquals(checksum, artifact.getChecksum(ChecksumAlgorithms.MD5));
+        cache.save();
+        Assert.assertTrue(Files.exists(cacheFile));
+
+        ArtifactCache reopened = ArtifactCache.open(cacheFile);
+        String key = new MutationResource(script.toString()).getCacheKey();
+        Assert.assertEquals(checksum, reopened.getChecksums(key).get(ChecksumAlgorithms.MD5.getName()));
+        Assert.assertEquals(expected.size() * 2, reopened.getStatementOffsets(key).length);
+        Assert.assertEquals(expected, load(reopened).getStatements());
+    }
+
+    /**
+     * Check that a changed file does not use the entry of its previous contents.
+     */
+    @Test
+    public void ignoreChangedFile() throws IOException {
+        ArtifactCache cache = ArtifactCache.open(cacheFile);
+        String checksum = load(cache).getChecksum(ChecksumAlgorithms.MD5);
+        cache.save();
+
+        Files.write(script, (SCRIPT + "DROP TABLE \"Test1\";\n").getBytes(Charsets.UTF_8));
+
+        MutationArtifact artifact = load(ArtifactCache.open(cacheFile));
+        Assert.assertNotEquals(checksum, artifact.getChecksum(ChecksumAlgorithms.MD5));
+        Assert.assertEquals(3, artifact.getStatements().size());
+    }
+
+    /**
+     * Check that the statements with comments inside are parsed again rather than cached.
+     */
+    @Test
+    public void doNotCacheStatementsWithComments() throws IOException {
+        Files.write(script, "CREATE TABLE \"Test1\" /* comment */ (key varchar PRIMARY KEY);\n"
+                .getBytes(Charsets.UTF_8));
+        ArtifactCache cache = ArtifactCache.open(cacheFile);
+        List<String> statements = load(cache).getStatements();
+        cache.save();
+
+        ArtifactCache reopened = ArtifactCache.open(cacheFile);
+        Assert.assertNull(reopened.getStatementOffsets(new MutationResource(script.toString()).getCacheKey()));
+        Assert.assertEquals(statements, load(reopened).getStatements());
+        Assert.assertEquals(1, statements.size());
+    }
+}
@@ -5,8 +5,15 @@ import java.io.IOException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.Mutation;
+import com.toddfast.mutagen.cassandra.AbstractCassandraMutation;
 import com.toddfast.mutagen.cassandra.CassandraMutagen;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.baseline.BaseLine;
+import com.toddfast.mutagen.cassandra.impl.info.MigrationInfo;
+import com.toddfast.mutagen.cassandra.impl.version.VersionRecordWriter;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 public class BaselineCommandTest extends AbstractTest {
 
@@ -26,14 +33,72 @@ public class BaselineCommandTest extends AbstractTest {
         // set baseline for third of four scripts
         // first three scripts contains error, to check for unexpected execution
         mutagen.baseline();
-        Assert.assertEquals(desiredLastState, DBUtils.getCurrentState(getSession()));
+        Assert.assertEquals(desiredLastState, VersionTableDao.forSession(getSession()).getCurrentState());
         // mutate to check for checksum errors and failure to restart
         mutate(resourcePath);
 
         // verify that no exception occurred
         Assert.assertNotNull(getResult().getException());
         
-        Assert.assertEquals(desiredLastState, DBUtils.getCurrentState(getSession()));
+        Assert.assertEquals(desiredLastState, VersionTableDao.forSession(getSession()).getCurrentState());
 
     }
+
+    @Test
+    public void parallelBaseline() throws IOException {
+
+        // Instanciate mutagen
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setBaselineVersion(desiredLastState);
+        mutagen.setBaselineParallelism(4);
+        mutagen.setLocation(resourcePath);
+        mutagen.initialize();
+
+        mutagen.baseline();
+        Assert.assertEquals(desiredLastState, VersionTableDao.forSession(getSession()).getCurrentState());
+
+        // the two scripts before the baseline and the baseline itself are recorded
+        MigrationInfo[] migrationInfo = getMigrationInfo();
+        Assert.assertEquals(3, migrationInfo.length);
+        Assert.assertEquals(MutationStatus.BEFORE_BASELINE.getValue(), migrationInfo[0].getStatus());
+        Assert.assertEquals(MutationStatus.BEFORE_BASELINE.getValue(), migrationInfo[1].getStatus());
+        Assert.assertEquals(MutationStatus.BASELINE.getValue(), migrationInfo[2].getStatus());
+    }
+
+    /**
+     * Check that the baseline record is not written when a record before it failed.
+     */
+    @Test
+    public void baselineAfterFailedFlush() throws IOException {
+        String baselineVersion = "201502011210";
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setBaselineVersion(baselineVersion);
+        mutagen.setLocation(resourcePath);
+        mutagen.initialize();
+
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        dao.createTable();
+        BaseLine baseLine = new BaseLine(mutagen, getSession(), baselineVersion);
+        // the failure of a record before the baseline is reported on flush
+        baseLine.setVersionRecordWriter(new VersionRecordWriter(dao, 1) {
+            @Override
+            public void flush() {
+                throw new MutagenException("Could not append version record 201502011200");
+            }
+        });
+
+        AbstractCassandraMutation baselineMutation = null;
+        for (Mutation<String> mutation : mutagen.getMutationsPlan(false).getMutations()) {
+            if (mutation.getResultingState().getID().equals(baselineVersion)) {
+                baselineMutation = (AbstractCassandraMutation) mutation;
+            }
+        }
+        Assert.assertNotNull(baselineMutation);
+        try {
+            baseLine.dummyExecution(baselineMutation);
+            Assert.fail("The failed flush should have been reported");
+        } catch (MutagenException e) {
+            Assert.assertFalse(dao.isVersionIdPresent(baselineVersion));
+        }
+    }
 }
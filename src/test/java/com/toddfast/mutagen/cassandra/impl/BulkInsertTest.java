@@ -0,0 +1,59 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.cql.CqlInsert;
+
+public class BulkInsertTest extends AbstractTest {
+
+    /**
+     * Check the inserts recognised for bulk execution.
+     */
+    @Test
+    public void parseInserts() {
+        CqlInsert insert = CqlInsert.parse("insert into \"Test1\" (key, Value1) values ('row1', 'it''s;');");
+        Assert.assertNotNull(insert);
+        Assert.assertEquals("INSERT INTO \"Test1\" (key, Value1) VALUES (?, ?)", insert.getShape());
+        Assert.assertEquals("value1", insert.getColumns().get(1));
+        Assert.assertEquals("STRING:it's;", insert.getValueText(1));
+
+        Assert.assertNotNull(CqlInsert.parse("INSERT INTO ks.t (a, b, c) VALUES (-1.5e3, 0xcafe, null)"));
+        Assert.assertNull(CqlInsert.parse("INSERT INTO t (a) VALUES (now())"));
+        Assert.assertNull(CqlInsert.parse("INSERT INTO t (a) VALUES (1) USING TTL 10"));
+        Assert.assertNull(CqlInsert.parse("INSERT INTO t (a, b) VALUES (1)"));
+        Assert.assertNull(CqlInsert.parse("UPDATE t SET a = 1 WHERE b = 2"));
+    }
+
+    /**
+     * Check that the inserts executed in batches give the same rows as the script.
+     */
+    @Test
+    public void mutateWithBulkInserts() throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation("mutations/tests/bulk_insert");
+        mutagen.setBulkInsertBatchSize(3);
+        mutagen.setBulkInsertWindow(2);
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011200");
+
+        Assert.assertEquals("again", getByPk("row1").getString("value1"));
+        Assert.assertEquals("bar", getByPk("row2").getString("value2"));
+        Assert.assertEquals("it's; value3", getByPk("row3").getString("value1"));
+        Assert.assertEquals("baz", getByPk("row4").getString("value2"));
+
+        Assert.assertEquals(8, getSession().execute("SELECT * FROM \"Seed\"").all().size());
+        Row row = getSession().execute("SELECT * FROM \"Seed\" WHERE part = 1 AND seq = 0").one();
+        Assert.assertEquals("c", row.getString("label"));
+        Assert.assertEquals(-3.25, row.getDouble("weight"), 0);
+        Assert.assertEquals("i", getSession().execute("SELECT label FROM \"Seed\" WHERE part = 1 AND seq = 3")
+                .one().getString("label"));
+    }
+}
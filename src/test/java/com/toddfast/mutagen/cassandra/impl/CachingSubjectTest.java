@@ -0,0 +1,50 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.CachingCassandraSubject;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
+
+public class CachingSubjectTest extends AbstractTest {
+
+    /**
+     * Check that the current state is read once and then kept up to date in-process.
+     */
+    @Test
+    public void currentStateIsReadOnce() {
+
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        dao.createTable();
+        dao.appendVersionRecord("201501010001", "Foo", "", 0, MutationStatus.SUCCESS.getValue());
+
+        CachingCassandraSubject subject = new CachingCassandraSubject(getSession());
+        Assert.assertEquals("201501010001", subject.getCurrentState().getID());
+        Assert.assertEquals("201501010001", subject.getCurrentState().getID());
+        Assert.assertEquals(1, subject.getMisses());
+        Assert.assertEquals(1, subject.getHits());
+
+        // failed records do not change the current state
+        subject.onVersionRecorded("201501010002", MutationStatus.FAILED.getValue());
+        Assert.assertEquals("201501010001", subject.getCurrentState().getID());
+
+        subject.onVersionRecorded("201501010003", MutationStatus.SUCCESS.getValue());
+        Assert.assertEquals("201501010003", subject.getCurrentState().getID());
+        Assert.assertEquals(1, subject.getMisses());
+    }
+
+    /**
+     * Check that planning and executing reads the current state from the database at most once.
+     */
+    @Test
+    public void mutateUpdatesCachedState() {
+
+        mutate("mutations/tests/execution");
+        checkMutationSuccessful();
+
+        CachingCassandraSubject subject = (CachingCassandraSubject) getResult().getPlan().getSubject();
+        Assert.assertEquals(0, subject.getMisses());
+        Assert.assertEquals("201502011230", subject.getCurrentState().getID());
+    }
+}
@@ -0,0 +1,121 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.info.MigrationInfo;
+import com.toddfast.mutagen.cassandra.impl.version.StatementCheckpoint;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
+
+public class CheckpointTest extends AbstractTest {
+
+    private static final String LOCATION = "mutations/tests/checkpoint";
+
+    private static final String BULK_LOCATION = "mutations/tests/checkpoint_bulk";
+
+    private static final String PARALLEL_LOCATION = "mutations/tests/checkpoint_parallel";
+
+    private void mutateWithCheckpoints(String location, int bulkInsertBatchSize) throws IOException {
+        mutateWithCheckpoints(location, bulkInsertBatchSize, 1);
+    }
+
+    private void mutateWithCheckpoints(String location, int bulkInsertBatchSize, int statementParallelism)
+            throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation(location);
+        mutagen.setCheckpointStatements(true);
+        mutagen.setBulkInsertBatchSize(bulkInsertBatchSize);
+        mutagen.setStatementParallelism(statementParallelism);
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+    }
+
+    /**
+     * Check that a failed CQL mutation is resumed at the failed statement after a repair:
+     * the CREATE TABLE executed by the first run would fail if it was executed again.
+     */
+    @Test
+    public void resumeFailedMutation() throws IOException {
+        mutateWithCheckpoints(LOCATION, 0);
+        checkFailed();
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        Assert.assertEquals(2, dao.getStatementCheckpoints("201502011200").size());
+
+        repair(LOCATION);
+        mutateWithCheckpoints(LOCATION, 0);
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011200");
+
+        Assert.assertEquals("foo", getByPk("row1").getString("value1"));
+        Assert.assertEquals("bar", getByPk("row1").getString("value2"));
+        Assert.assertNotNull(getSession().execute("SELECT * FROM \"Gate\" WHERE key = 'open'").one());
+        Assert.assertTrue(dao.getStatementCheckpoints("201502011200").isEmpty());
+    }
+
+    /**
+     * Check that the inserts executed in bulk are recorded once flushed, so that the statements after them
+     * are skipped too: the ALTER TABLE executed by the first run would fail if it was executed again.
+     */
+    @Test
+    public void resumeAfterBulkInserts() throws IOException {
+        mutateWithCheckpoints(BULK_LOCATION, 10);
+        checkFailed();
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        Map<Integer, StatementCheckpoint> checkpoints = dao.getStatementCheckpoints("201502011200");
+        Assert.assertEquals(3, checkpoints.size());
+        Assert.assertEquals(2, checkpoints.get(1).getLastStatement());
+
+        repair(BULK_LOCATION);
+        mutateWithCheckpoints(BULK_LOCATION, 10);
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011200");
+
+        Assert.assertEquals("baz", getByPk("row2").getString("value1"));
+        Assert.assertEquals("bar", getByPk("row1").getString("value2"));
+        Assert.assertTrue(dao.getStatementCheckpoints("201502011200").isEmpty());
+    }
+
+    /**
+     * Check that the statements which succeed after the failed one are recorded and skipped too:
+     * the second CREATE TABLE, in flight when the insert failed, would fail if it was executed again.
+     */
+    @Test
+    public void resumeAfterConcurrentStatements() throws IOException {
+        mutateWithCheckpoints(PARALLEL_LOCATION, 0, 4);
+        checkFailed();
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        Map<Integer, StatementCheckpoint> checkpoints = dao.getStatementCheckpoints("201502011200");
+        Assert.assertEquals(3, checkpoints.size());
+        Assert.assertFalse(checkpoints.containsKey(1));
+
+        repair(PARALLEL_LOCATION);
+        mutateWithCheckpoints(PARALLEL_LOCATION, 0, 4);
+        checkMutationSuccessful();
+
+        Assert.assertNotNull(getSession().execute("SELECT * FROM \"Gate\" WHERE key = 'open'").one());
+        Assert.assertTrue(dao.getStatementCheckpoints("201502011200").isEmpty());
+    }
+
+    private void checkFailed() {
+        Assert.assertNotNull(getResult().getException());
+        MigrationInfo[] migrationInfo = getMigrationInfo();
+        Assert.assertEquals(1, migrationInfo.length);
+        Assert.assertEquals(MutationStatus.FAILED.getValue(), migrationInfo[0].getStatus());
+    }
+
+    /**
+     * Fix the cause of the failure, then repair.
+     */
+    private void repair(String location) throws IOException {
+        getSession().execute("CREATE TABLE \"Gate\" (key varchar PRIMARY KEY)");
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation(location);
+        mutagen.initialize();
+        mutagen.repair();
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 public class ChecksumErrorTest extends AbstractTest {
 
@@ -42,4 +45,30 @@ public class ChecksumErrorTest extends AbstractTest {
 
     }
 
+    @Test
+    public void checksumVerifiedWithRecordedAlgorithm() throws Exception {
+
+        // Execute mutation with crc32c checksums
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setChecksumAlgorithm(ChecksumAlgorithms.CRC32C);
+        mutagen.setLocation(RESOURCE_PATH + "/cql/d1");
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+        checkMutationSuccessful();
+        Assert.assertTrue(VersionTableDao.forSession(getSession()).getVersionRecords().one().getString("checksum")
+                .startsWith("crc32c:"));
+
+        // Mutate again with md5 checksums, the recorded checksum is verified with crc32c
+        mutate(RESOURCE_PATH + "/cql/d1");
+        checkMutationSuccessful();
+
+        // Mutate again with script 2, should throw error
+        try {
+            mutate(RESOURCE_PATH + "/cql/d2");
+            Assert.fail("MutagenException expected!");
+        } catch (MutagenException e) {
+            // expected exception,it is OK
+        }
+    }
+
 }
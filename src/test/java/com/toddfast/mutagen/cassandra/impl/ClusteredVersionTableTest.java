@@ -0,0 +1,97 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.toddfast.mutagen.Mutation;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.MutationStatus;
+import com.toddfast.mutagen.cassandra.impl.version.ClusteredVersionTableDao;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableLayout;
+
+public class ClusteredVersionTableTest extends AbstractTest {
+
+    /**
+     * Records of the legacy table Version are copied into the clustered table,
+     * then only the newer scripts are executed and recorded in the clustered table.
+     */
+    @Test
+    public void upgradeFromLegacyTable() throws IOException {
+
+        VersionTableDao legacy = VersionTableDao.forSession(getSession(), VersionTableLayout.LEGACY);
+        legacy.createTable();
+        legacy.appendVersionRecord("201502011200", "M201502011200_DoSomeThing_1111.cqlsh.txt",
+                "5ac70f706156a3264c518f0c7d754f7f", 112, MutationStatus.SUCCESS.getValue());
+        legacy.appendVersionRecord("201502011209", "M201502011209_DoSomeThing_1111.cqlsh.txt", "",
+                112, MutationStatus.SUCCESS.getValue());
+
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setVersionTableLayout(VersionTableLayout.CLUSTERED);
+        mutagen.setLocation("mutations/tests/execution");
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+        printMigrationInfo();
+
+        List<String> mutations = new ArrayList<>();
+        for (Mutation<String> mutation : result.getCompletedMutations()) {
+            mutations.add(mutation.getResultingState().getID());
+        }
+        assertFalse(mutations.contains("201502011200"));
+        assertTrue(mutations.contains("201502011210"));
+
+        assertEquals(VersionTableLayout.CLUSTERED, VersionTableLayout.detect(getSession()));
+        assertEquals("201502011230", VersionTableDao.forSession(getSession()).getCurrentState());
+        assertEquals(5, getMigrationInfo().length);
+    }
+
+    /**
+     * An upgrade interrupted during the copy is not used, and is completed by the next upgrade.
+     */
+    @Test
+    public void resumeInterruptedUpgrade() {
+
+        VersionTableDao legacy = VersionTableDao.forSession(getSession(), VersionTableLayout.LEGACY);
+        legacy.createTable();
+        legacy.appendVersionRecord("201501010001", "Foo", "", 0, MutationStatus.SUCCESS.getValue());
+        legacy.appendVersionRecord("201501010002", "Bar", "", 0, MutationStatus.SUCCESS.getValue());
+
+        // the first record only was copied
+        VersionTableDao clustered = VersionTableDao.forSession(getSession(), VersionTableLayout.CLUSTERED);
+        clustered.createTable();
+        clustered.appendVersionRecord("201501010001", "Foo", "", 0, MutationStatus.SUCCESS.getValue());
+        assertEquals(VersionTableLayout.LEGACY, VersionTableLayout.detect(getSession()));
+        assertEquals("201501010002", VersionTableDao.forSession(getSession()).getCurrentState());
+
+        ClusteredVersionTableDao.upgrade(getSession());
+        assertEquals(VersionTableLayout.CLUSTERED, VersionTableLayout.detect(getSession()));
+        assertEquals("201501010002", VersionTableDao.forSession(getSession()).getCurrentState());
+        assertEquals(2, clustered.getVersionRecords().all().size());
+    }
+
+    /**
+     * Failed records are kept apart and do not change the current state.
+     */
+    @Test
+    public void failedRecordsAreNotCurrent() {
+
+        VersionTableDao dao = VersionTableDao.forSession(getSession(), VersionTableLayout.CLUSTERED);
+        dao.createTable();
+        dao.appendVersionRecord("201501010001", "Foo", "", 0, MutationStatus.SUCCESS.getValue());
+        dao.appendVersionRecord("201501010002", "Bar", "", 0, MutationStatus.FAILED.getValue());
+
+        assertEquals("201501010001", dao.getCurrentState());
+        assertTrue(dao.isMutationFailed("201501010002"));
+
+        dao.deleteFailedVersionRecords();
+        assertFalse(dao.isVersionIdPresent("201501010002"));
+        assertTrue(dao.isVersionIdPresent("201501010001"));
+    }
+}
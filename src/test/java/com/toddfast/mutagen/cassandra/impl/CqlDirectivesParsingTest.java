@@ -0,0 +1,58 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.google.common.base.Charsets;
+import com.toddfast.mutagen.cassandra.impl.cql.CqlDirectives;
+
+public class CqlDirectivesParsingTest {
+
+    private CqlDirectives parse(String script) {
+        return CqlMutation.extractDirectives(ByteBuffer.wrap(script.getBytes(Charsets.UTF_8)));
+    }
+
+    /**
+     * Check that the directives are read from the comments before the first statement only.
+     */
+    @Test
+    public void parseDirectives() {
+        CqlDirectives directives = parse("\uFEFF-- a data fix\n"
+                + "-- @consistency local_quorum\n"
+                + "\n"
+                + "//   @readTimeoutMs 60000  \r\n"
+                + "-- @concurrency 64\n"
+                + "-- @fetchSize 5000\n"
+                + "update t set a = 1 where b = 2;\n"
+                + "-- @concurrency 2\n");
+        Assert.assertEquals(ConsistencyLevel.LOCAL_QUORUM, directives.getConsistency());
+        Assert.assertEquals(60000, directives.getReadTimeoutMillis());
+        Assert.assertEquals(64, directives.getConcurrency());
+        Assert.assertEquals(5000, directives.getFetchSize());
+
+        Assert.assertSame(CqlDirectives.NONE, parse("-- no directive\ncreate table t (a int PRIMARY KEY);"));
+        Assert.assertSame(CqlDirectives.NONE,
+                parse("-- @author someone\n-- @since\ncreate table t (a int PRIMARY KEY);"));
+        Assert.assertSame(CqlDirectives.NONE, parse("create table t (a int PRIMARY KEY);\n-- @concurrency 4\n"));
+    }
+
+    /**
+     * Check that invalid values are rejected.
+     */
+    @Test
+    public void rejectInvalidDirectives() {
+        String[] scripts = { "-- @consistency SOME", "-- @concurrency 0", "-- @fetchSize many",
+                "-- @readTimeoutMs" };
+        for (String script : scripts) {
+            try {
+                parse(script);
+                Assert.fail("should reject " + script);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+
+public class CqlDirectivesTest extends AbstractTest {
+
+    /**
+     * Check that scripts with directives are executed.
+     */
+    @Test
+    public void mutateWithDirectives() throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation("mutations/tests/directives");
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011210");
+
+        Assert.assertEquals("fixed", getByPk("row1").getString("value2"));
+        Assert.assertEquals("qux", getByPk("row2").getString("value2"));
+    }
+}
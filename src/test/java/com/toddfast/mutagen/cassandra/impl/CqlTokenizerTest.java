@@ -0,0 +1,49 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.impl.cql.CqlTokenizer;
+
+public class CqlTokenizerTest {
+
+    private List<String> tokenize(String script) {
+        List<String> statements = new ArrayList<>();
+        CqlTokenizer tokenizer = new CqlTokenizer(new StringReader(script));
+        while (tokenizer.hasNext()) {
+            statements.add(tokenizer.next());
+        }
+        return statements;
+    }
+
+    /**
+     * Check that semicolons inside literals, quoted identifiers and comments do not split statements.
+     */
+    @Test
+    public void splitStatements() {
+        List<String> statements = tokenize("-- first; comment\n"
+                + "create table \"Te;st\" (key varchar PRIMARY KEY, value1 varchar); // trailing; comment\n"
+                + "insert into \"Te;st\" (key, value1) values ('row1', 'it''s; ok');\n"
+                + "/* block; comment */ update \"Te;st\" set value1 = 'a' where key = 'row1'\n"
+                + ";;\n"
+                + "select * from \"Te;st\"");
+
+        Assert.assertEquals(4, statements.size());
+        Assert.assertEquals("create table \"Te;st\" (key varchar PRIMARY KEY, value1 varchar);", statements.get(0));
+        Assert.assertEquals("insert into \"Te;st\" (key, value1) values ('row1', 'it''s; ok');", statements.get(1));
+        Assert.assertTrue(statements.get(2).startsWith("update"));
+        Assert.assertEquals("select * from \"Te;st\"", statements.get(3));
+    }
+
+    /**
+     * Check that a script with only comments has no statement.
+     */
+    @Test
+    public void onlyComments() {
+        Assert.assertTrue(tokenize("// nothing;\n-- to do;\n/* here; */\n").isEmpty());
+    }
+}
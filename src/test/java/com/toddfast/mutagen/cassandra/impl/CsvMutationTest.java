@@ -0,0 +1,61 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.toddfast.mutagen.cassandra.impl.cql.CsvReader;
+import com.toddfast.mutagen.cassandra.impl.info.MigrationInfo;
+
+public class CsvMutationTest extends AbstractTest {
+
+    /**
+     * Check the records read from a CSV file.
+     */
+    @Test
+    public void readRecords() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("t(a, b)\r\n1,\"x, \"\"y\"\"\"\r\n\r\n2,\n3,\"\"\n"));
+        Assert.assertEquals("t(a, b)", reader.readLine());
+        Assert.assertEquals(Arrays.asList("1", "x, \"y\""), reader.readRecord());
+        Assert.assertEquals(Arrays.asList("2", null), reader.readRecord());
+        Assert.assertEquals(4, reader.getLine());
+        Assert.assertEquals(Arrays.asList("3", ""), reader.readRecord());
+        Assert.assertNull(reader.readRecord());
+    }
+
+    /**
+     * Check that the rows of a CSV mutation are inserted and the mutation is recorded.
+     */
+    @Test
+    public void mutateWithCsvFile() {
+        mutate("mutations/tests/csv");
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011210");
+
+        MigrationInfo[] infos = getMigrationInfo();
+        Assert.assertEquals(2, infos.length);
+        Assert.assertEquals("M201502011210_SeedTable_1111.csv", infos[1].getFilename());
+
+        Assert.assertEquals(4, getSession().execute("SELECT * FROM \"Seed\"").all().size());
+        Row row = getSession().execute("SELECT * FROM \"Seed\" WHERE part = 0 AND seq = 0").one();
+        Assert.assertEquals("the last row wins", row.getString("label"));
+        Assert.assertEquals(4, row.getDouble("weight"), 0);
+        Assert.assertTrue(row.isNull("created"));
+
+        row = getSession().execute("SELECT * FROM \"Seed\" WHERE part = 0 AND seq = 1").one();
+        Assert.assertEquals("b, with a comma", row.getString("label"));
+        Assert.assertEquals(1422748800000L, row.getDate("created").getTime());
+
+        row = getSession().execute("SELECT * FROM \"Seed\" WHERE part = 1 AND seq = 0").one();
+        Assert.assertEquals("on two\nlines", row.getString("label"));
+        Assert.assertEquals(1422786600000L, row.getDate("created").getTime());
+
+        row = getSession().execute("SELECT * FROM \"Seed\" WHERE part = 1 AND seq = 1").one();
+        Assert.assertTrue(row.isNull("label"));
+    }
+}
@@ -1,5 +1,7 @@
 package com.toddfast.mutagen.cassandra.impl;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import com.toddfast.mutagen.MutagenException;
@@ -17,4 +19,14 @@ public class DuplicateStateError extends AbstractTest {
         
     }
 
+    /**
+     * Resources given to the planner directly are checked too.
+     */
+    @Test(expected = MutagenException.class)
+    public void plannerRejectsDuplicateStates() {
+        new CassandraPlanner(getSession(), Arrays.asList(
+                "mutations/tests/duplicatestate/M201501010001_Bar_1111.cqlsh.txt",
+                "mutations/tests/duplicatestate/M201501010001_Foo_1111.cqlsh.txt"));
+    }
+
 }
@@ -0,0 +1,65 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.Mutation;
+import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.cassandra.CachingCassandraSubject;
+import com.toddfast.mutagen.cassandra.CassandraCoordinator;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.utils.LoadResources;
+
+public class JavaMutationHandleTest extends AbstractTest {
+
+    private final String RESOURCE_PATH = "mutations/tests/execution";
+
+    private CassandraPlanner newPlanner() throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        return new CassandraPlanner(getSession(), LoadResources.loadMutationResources(mutagen, RESOURCE_PATH, ".*"));
+    }
+
+    private JavaMutationHandle getHandle(CassandraPlanner planner) {
+        for (Mutation<String> mutation : planner.getMutations()) {
+            if (mutation instanceof JavaMutationHandle) {
+                return (JavaMutationHandle) mutation;
+            }
+        }
+        throw new AssertionError("No Java mutation in " + RESOURCE_PATH);
+    }
+
+    /**
+     * Check that the class of an already executed Java mutation is not loaded, and that its
+     * checksum is the one of the mutation itself.
+     */
+    @Test
+    public void executedMutationNotLoaded() throws IOException {
+        mutate(RESOURCE_PATH);
+        checkMutationSuccessful();
+
+        CassandraPlanner planner = newPlanner();
+        JavaMutationHandle handle = getHandle(planner);
+        Plan<String> plan = planner.getPlan(new CachingCassandraSubject(getSession()), new CassandraCoordinator());
+
+        Assert.assertTrue(plan.getMutations().isEmpty());
+        Assert.assertFalse(handle.isLoaded());
+        Assert.assertEquals("M201502011225_UpdateTableTest_1111.java", handle.getResourceName());
+        Assert.assertEquals(handle.getMutation().getChecksum(), handle.getChecksum());
+    }
+
+    /**
+     * Check that the class of a planned Java mutation is loaded when planning.
+     */
+    @Test
+    public void plannedMutationLoaded() throws IOException {
+        CassandraPlanner planner = newPlanner();
+        JavaMutationHandle handle = getHandle(planner);
+        Assert.assertFalse(handle.isLoaded());
+
+        planner.getPlan(new CachingCassandraSubject(getSession()), new CassandraCoordinator());
+
+        Assert.assertTrue(handle.isLoaded());
+    }
+}
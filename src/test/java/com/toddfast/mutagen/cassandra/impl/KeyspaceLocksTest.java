@@ -0,0 +1,84 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datastax.driver.core.Session;
+import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.lock.KeyspaceLocks;
+import com.toddfast.mutagen.cassandra.utils.DBUtils;
+
+public class KeyspaceLocksTest extends AbstractTest {
+
+    private static final String RESOURCE_PATH = "mutations/tests/execution";
+
+    private static final String OTHER_KEYSPACE = "apispark_other";
+
+    private Callable<Plan.Result<String>> migration(final Session session) {
+        return new Callable<Plan.Result<String>>() {
+            @Override
+            public Plan.Result<String> call() throws Exception {
+                CassandraMutagen mutagen = new CassandraMutagenImpl(session);
+                mutagen.setLocation(RESOURCE_PATH);
+                mutagen.initialize();
+                return mutagen.mutate(false);
+            }
+        };
+    }
+
+    /**
+     * Check that the migration of another keyspace runs while a keyspace is locked,
+     * and that the migration of the locked keyspace waits for the lock.
+     */
+    @Test
+    public void keyspacesMigrateConcurrently() throws Exception {
+        getSession().execute("CREATE KEYSPACE IF NOT EXISTS " + OTHER_KEYSPACE
+                + " WITH replication = {'class': 'SimpleStrategy', 'replication_factor': 1}");
+        Session other = getSession().getCluster().connect(OTHER_KEYSPACE);
+        DBUtils.purgeKeyspace(other);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Plan.Result<String>> sameMigration;
+        Lock lock = KeyspaceLocks.forSession(getSession());
+        lock.lock();
+        try {
+            // the sessions of the same keyspace share the lock
+            Session same = getSession().getCluster().connect(getSession().getLoggedKeyspace());
+            Assert.assertSame(lock, KeyspaceLocks.forSession(same));
+            same.close();
+            Assert.assertNotSame(lock, KeyspaceLocks.forSession(other));
+
+            Plan.Result<String> otherResult = executor.submit(migration(other)).get(60, TimeUnit.SECONDS);
+            Assert.assertTrue(otherResult.isMutationComplete());
+            Assert.assertNull(otherResult.getException());
+
+            sameMigration = executor.submit(migration(getSession()));
+            try {
+                sameMigration.get(1, TimeUnit.SECONDS);
+                Assert.fail("The migration of the locked keyspace should wait");
+            } catch (TimeoutException e) {
+                // expected
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            result = sameMigration.get(60, TimeUnit.SECONDS);
+            checkMutationSuccessful();
+        } finally {
+            executor.shutdown();
+            other.close();
+            getSession().execute("DROP KEYSPACE IF EXISTS " + OTHER_KEYSPACE);
+        }
+    }
+}
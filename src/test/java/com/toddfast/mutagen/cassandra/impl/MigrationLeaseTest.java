@@ -0,0 +1,110 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.MutagenException;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLease;
+import com.toddfast.mutagen.cassandra.impl.lock.MigrationLockMode;
+import com.toddfast.mutagen.cassandra.impl.lock.SkippedMigrationResult;
+
+public class MigrationLeaseTest extends AbstractTest {
+
+    /**
+     * Only one holder at a time, and each acquisition gets a greater fencing token.
+     */
+    @Test
+    public void leaseIsExclusive() {
+
+        MigrationLease first = new MigrationLease(getSession(), "test", 30);
+        MigrationLease second = new MigrationLease(getSession(), "test", 30);
+
+        Assert.assertTrue(first.tryAcquire());
+        Assert.assertFalse(second.tryAcquire());
+        Assert.assertEquals(first.getOwner(), second.getHolder());
+        first.checkHeld();
+
+        first.release();
+        Assert.assertTrue(second.tryAcquire());
+        Assert.assertTrue(second.getToken() > first.getToken());
+        second.release();
+    }
+
+    /**
+     * A holder whose lease expired while it was stalled is fenced out once another instance holds the lease,
+     * even though its local clock says the lease is still valid.
+     */
+    @Test
+    public void staleHolderIsFenced() {
+
+        MigrationLease stale = new MigrationLease(getSession(), "test", 30);
+        MigrationLease next = new MigrationLease(getSession(), "test", 30);
+
+        Assert.assertTrue(stale.tryAcquire());
+        stale.checkFence();
+
+        // the lease row expires while the holder is stalled
+        getSession().execute("DELETE FROM \"MigrationLease\" WHERE name = 'test'");
+        Assert.assertTrue(next.tryAcquire());
+
+        stale.checkHeld();
+        try {
+            stale.checkFence();
+            Assert.fail("should fail with a MutagenException");
+        } catch (MutagenException e) {
+            Assert.assertFalse(stale.isHeld());
+        }
+        next.checkFence();
+
+        stale.release();
+        Assert.assertEquals(next.getOwner(), next.getHolder());
+        next.release();
+    }
+
+    /**
+     * An instance in skip mode does not migrate while another instance holds the lease.
+     */
+    @Test
+    public void skipWhenLeaseIsHeld() throws IOException {
+
+        MigrationLease other = new MigrationLease(getSession(), "migration", 30);
+        Assert.assertTrue(other.tryAcquire());
+        try {
+            CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+            mutagen.setMigrationLockMode(MigrationLockMode.SKIP);
+            mutagen.setLocation("mutations/tests/execution");
+            mutagen.initialize();
+            result = mutagen.mutate(false);
+
+            // not failed, but not complete either
+            Assert.assertTrue(result instanceof SkippedMigrationResult);
+            Assert.assertNull(result.getException());
+            Assert.assertFalse(result.isMutationComplete());
+            Assert.assertTrue(result.getCompletedMutations().isEmpty());
+            Assert.assertEquals(other.getOwner(), ((SkippedMigrationResult) result).getHolder());
+            // nothing applied yet
+            Assert.assertNull(result.getLastState());
+        } finally {
+            other.release();
+        }
+
+        // the lease is free again
+        mutate("mutations/tests/execution");
+        checkMutationSuccessful();
+
+        // the state of a skipped migration is read from the version fingerprint
+        Assert.assertTrue(other.tryAcquire());
+        try {
+            CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+            mutagen.setMigrationLockMode(MigrationLockMode.SKIP);
+            mutagen.setLocation("mutations/tests/execution");
+            mutagen.initialize();
+            Assert.assertEquals("201502011230", mutagen.mutate(false).getLastState().getID());
+        } finally {
+            other.release();
+        }
+    }
+}
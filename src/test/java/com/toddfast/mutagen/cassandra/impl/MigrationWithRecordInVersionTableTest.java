@@ -10,7 +10,7 @@ import com.toddfast.mutagen.cassandra.MutationStatus;
 import org.junit.Test;
 
 import com.toddfast.mutagen.Mutation;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 
 public class MigrationWithRecordInVersionTableTest extends AbstractTest {
@@ -26,11 +26,12 @@ public class MigrationWithRecordInVersionTableTest extends AbstractTest {
     @Test
     public void migration_with_record_version_table() {
 
-        DBUtils.createSchemaVersionTable(getSession());
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        dao.createTable();
         // append two version record
-        DBUtils.appendVersionRecord(getSession(), "201502011200", "M201502011200_DoSomeThing_1111.cqlsh.txt",
+        dao.appendVersionRecord("201502011200", "M201502011200_DoSomeThing_1111.cqlsh.txt",
                 "5ac70f706156a3264c518f0c7d754f7f", 112, MutationStatus.SUCCESS.getValue());
-        DBUtils.appendVersionRecord(getSession(), "201502011209", "M201502011209_DoSomeThing_1111.cqlsh.txt", "",
+        dao.appendVersionRecord("201502011209", "M201502011209_DoSomeThing_1111.cqlsh.txt", "",
                 112, MutationStatus.SUCCESS.getValue());
         // Execute mutations
         mutate("mutations/tests/execution");
@@ -0,0 +1,51 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+import com.toddfast.mutagen.cassandra.impl.manifest.JavaMutationFactories;
+import com.toddfast.mutagen.cassandra.impl.manifest.MutationManifest;
+import com.toddfast.mutagen.cassandra.impl.manifest.MutationManifestGenerator;
+
+public class MutationManifestTest extends AbstractTest {
+
+    private final String RESOURCE_PATH = "mutations/tests/execution";
+
+    /**
+     * Check that mutations listed by a manifest are executed as scanned ones.
+     */
+    @Test
+    public void mutateFromManifest() throws IOException {
+        MutationManifest generated = MutationManifestGenerator.generate(getClass().getClassLoader(), RESOURCE_PATH,
+                ChecksumAlgorithms.MD5);
+        StringWriter writer = new StringWriter();
+        generated.write(writer);
+        MutationManifest manifest = new MutationManifest();
+        manifest.read(new StringReader(writer.toString()));
+        Assert.assertEquals(generated.size(), manifest.size());
+
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setMutationResources(manifest.toMutationResources(".*"));
+        result = mutagen.mutate(false);
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011230");
+    }
+
+    /**
+     * Check that the factories of Java mutations are generated when compiling them.
+     */
+    @Test
+    public void generatedFactory() {
+        Assert.assertNotNull(JavaMutationFactories.newMutation(
+                "mutations.tests.execution.M201502011225_UpdateTableTest_1111", getClass().getClassLoader()));
+        Assert.assertNull(JavaMutationFactories.newMutation("mutations.tests.execution.Unknown",
+                getClass().getClassLoader()));
+    }
+}
@@ -0,0 +1,129 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.toddfast.mutagen.cassandra.impl.artifact.MutationResource;
+
+public class MutationResourceTest {
+
+    private static final String NAME = "mutations/M201501011225_CreateTable_1111.cqlsh.txt";
+
+    private static final byte[] SCRIPT = ("CREATE TABLE \"Test1\" (key varchar PRIMARY KEY, value1 varchar);\n"
+            + "INSERT INTO \"Test1\" (key, value1) VALUES ('row1', 'caf\u00e9;');\n").getBytes(Charsets.UTF_8);
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("mutagen-resource");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        Files.deleteIfExists(directory.resolve(NAME));
+        Files.deleteIfExists(directory.resolve("mutations"));
+        Files.deleteIfExists(directory.resolve("mutations.jar"));
+        Files.deleteIfExists(directory);
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void checkContents(MutationResource resource) throws IOException {
+        Assert.assertArrayEquals(SCRIPT, toBytes(resource.getBuffer()));
+        // each buffer and stream reads the contents from the start
+        Assert.assertArrayEquals(SCRIPT, toBytes(resource.getBuffer()));
+        try (InputStream inputStream = resource.openStream()) {
+            Assert.assertArrayEquals(SCRIPT, ByteStreams.toByteArray(inputStream));
+        }
+    }
+
+    /**
+     * Check that a resource of a directory of the class path is read from its file,
+     * with a cache key which changes with the file.
+     */
+    @Test
+    public void fileResource() throws IOException {
+        Path file = directory.resolve(NAME);
+        Files.createDirectories(file.getParent());
+        Files.write(file, SCRIPT);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, null)) {
+            MutationResource resource = new MutationResource(NAME, loader);
+            checkContents(resource);
+
+            String key = resource.getCacheKey();
+            Assert.assertEquals(file.toAbsolutePath() + "|" + SCRIPT.length + "|"
+                    + Files.getLastModifiedTime(file).toMillis(), key);
+            Assert.assertEquals(key, new MutationResource(NAME, loader).getCacheKey());
+
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+            Assert.assertNotEquals(key, resource.getCacheKey());
+        }
+
+        // a file path out of the class path
+        MutationResource resource = new MutationResource(file.toString());
+        checkContents(resource);
+        Assert.assertTrue(resource.getCacheKey().startsWith(file.toAbsolutePath() + "|"));
+    }
+
+    /**
+     * Check that a resource of a jar is read from its entry, with a cache key made of the URL, size and CRC
+     * of the entry.
+     */
+    @Test
+    public void jarResource() throws IOException {
+        Path jar = directory.resolve("mutations.jar");
+        try (OutputStream outputStream = Files.newOutputStream(jar);
+                JarOutputStream jarOutputStream = new JarOutputStream(outputStream)) {
+            jarOutputStream.putNextEntry(new JarEntry(NAME));
+            jarOutputStream.write(SCRIPT);
+            jarOutputStream.closeEntry();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(SCRIPT);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, null)) {
+            MutationResource resource = new MutationResource(NAME, loader);
+            checkContents(resource);
+
+            URL url = loader.getResource(NAME);
+            Assert.assertEquals("jar", url.getProtocol());
+            Assert.assertEquals(url + "|" + SCRIPT.length + "|" + Long.toHexString(crc.getValue()),
+                    resource.getCacheKey());
+        }
+    }
+
+    /**
+     * Check that an unknown resource is reported when it is loaded.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownResource() throws IOException {
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { directory.toUri().toURL() }, null)) {
+            MutationResource resource = new MutationResource(NAME, loader);
+            Assert.assertNull(resource.getCacheKey());
+            resource.getBuffer();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.MutationVersion;
+import com.toddfast.mutagen.cassandra.impl.version.VersionRecord;
+import com.toddfast.mutagen.cassandra.impl.version.VersionSnapshot;
+
+public class MutationVersionTest {
+
+    /**
+     * Check that the version of a resource name round-trips through the versionid text.
+     */
+    @Test
+    public void parseResourceName() {
+        MutationVersion version = MutationVersion.fromResourceName("mutations/tests/M201502011200_CreateTableTest_1000.cqlsh.txt");
+
+        Assert.assertEquals(201502011200L, version.longValue());
+        Assert.assertEquals("201502011200", version.getID());
+        Assert.assertEquals(version, MutationVersion.valueOf("201502011200"));
+        Assert.assertEquals("000000000042", MutationVersion.valueOf(42).getID());
+        Assert.assertEquals(-1, MutationVersion.parseResourceName("mutations/tests/CreateTableTest_1000.cqlsh.txt"));
+        Assert.assertEquals(-1, MutationVersion.parseId("2015020112"));
+        Assert.assertTrue(MutationVersion.valueOf(201502011200L).compareTo(MutationVersion.valueOf(201502011201L)) < 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongResourceName() {
+        MutationVersion.fromResourceName("M2015020112_CreateTableTest_1000.cqlsh.txt");
+    }
+
+    /**
+     * Check the lookups of the snapshot of the table Version.
+     */
+    @Test
+    public void snapshotLookups() {
+        Map<String, VersionRecord> records = new HashMap<>();
+        records.put("201502011200", new VersionRecord("201502011200", "a", "", "Success"));
+        records.put("201502011230", new VersionRecord("201502011230", "b", "", "Failed"));
+        records.put("201502011210", new VersionRecord("201502011210", "c", "", "Success"));
+        records.put("manual", new VersionRecord("manual", "", "", "Success"));
+        VersionSnapshot snapshot = new VersionSnapshot(records);
+
+        Assert.assertTrue(snapshot.isVersionPresent(MutationVersion.valueOf("201502011230")));
+        Assert.assertFalse(snapshot.isVersionApplied(MutationVersion.valueOf("201502011230")));
+        Assert.assertFalse(snapshot.isVersionIdPresent("201502011220"));
+        Assert.assertTrue(snapshot.isVersionIdPresent("manual"));
+        Assert.assertEquals("201502011210", snapshot.getCurrentVersion());
+    }
+}
@@ -0,0 +1,95 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.cql.CqlStatement;
+
+public class ParallelStatementsTest extends AbstractTest {
+
+    /**
+     * Check the objects touched by statements.
+     */
+    @Test
+    public void analyseStatements() {
+        CqlStatement create = CqlStatement.parse("\ncreate table if not exists \"Test1\" (key varchar PRIMARY KEY, a frozen<Address>);");
+        Assert.assertTrue(create.isDdl());
+        Assert.assertTrue(create.getObjects().contains("table:Test1"));
+        Assert.assertTrue(create.getObjects().contains("type:address"));
+
+        CqlStatement insert = CqlStatement.parse("INSERT INTO \"Test1\" (key) VALUES ('row1');");
+        CqlStatement other = CqlStatement.parse("update Test2 set value1='foo' where key='row1';");
+        Assert.assertFalse(insert.isDdl());
+        Assert.assertTrue(insert.conflictsWith(create));
+        Assert.assertFalse(insert.conflictsWith(other));
+
+        CqlStatement type = CqlStatement.parse("CREATE TYPE address (street text);");
+        Assert.assertTrue(type.conflictsWith(create));
+
+        CqlStatement keyspace = CqlStatement.parse("DROP INDEX foo;");
+        Assert.assertTrue(keyspace.isBarrier());
+        Assert.assertTrue(keyspace.conflictsWith(other));
+    }
+
+    /**
+     * Check that the names qualified by the keyspace of the session are the unqualified names.
+     */
+    @Test
+    public void analyseQualifiedNames() {
+        CqlStatement qualified = CqlStatement.parse("INSERT INTO ks.users (key) VALUES ('row1');", "ks");
+        CqlStatement unqualified = CqlStatement.parse("ALTER TABLE users ADD value1 varchar;", "ks");
+        Assert.assertEquals(Collections.singleton("table:users"), qualified.getObjects());
+        Assert.assertTrue(qualified.conflictsWith(unqualified));
+
+        CqlStatement quoted = CqlStatement.parse("UPDATE \"KS\".users SET value1='foo' WHERE key='row1';", "\"KS\"");
+        Assert.assertTrue(quoted.conflictsWith(unqualified));
+
+        CqlStatement otherKeyspace = CqlStatement.parse("INSERT INTO other.users (key) VALUES ('row1');", "ks");
+        Assert.assertEquals(Collections.singleton("table:other.users"), otherKeyspace.getObjects());
+        Assert.assertFalse(otherKeyspace.conflictsWith(unqualified));
+
+        CqlStatement use = CqlStatement.parse("USE \"Other\";", "ks");
+        Assert.assertTrue(use.isBarrier());
+        Assert.assertEquals("\"Other\"", use.getUsedKeyspace());
+    }
+
+    /**
+     * Check that mutations executed with concurrent statements keep the order of dependent statements.
+     */
+    @Test
+    public void mutateWithConcurrentStatements() throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation("mutations/tests/execution");
+        mutagen.setStatementParallelism(4);
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011230");
+
+        Row row1 = getByPk("row1");
+        Assert.assertEquals("foo", row1.getString("value1"));
+        Assert.assertEquals("bar", row1.getString("value2"));
+    }
+
+    /**
+     * Check that mutations executed with grouped schema changes see the schema of the previous group.
+     */
+    @Test
+    public void mutateWithGroupedSchemaChanges() throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation("mutations/tests/execution");
+        mutagen.setGroupSchemaChanges(true);
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011230");
+        Assert.assertEquals("bar", getByPk("row1").getString("value2"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+
+public class RowSourceMutationTest extends AbstractTest {
+
+    /**
+     * Check that the rows produced by a Java mutation are inserted and the mutation is recorded.
+     */
+    @Test
+    public void mutateWithRowSource() {
+        mutate("mutations/tests/row_source");
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011210");
+        Assert.assertEquals("M201502011210_SeedRowsTest_1111.java", getMigrationInfo()[1].getFilename());
+
+        Assert.assertEquals(1000, getSession().execute("SELECT * FROM \"Seed\" LIMIT 2000").all().size());
+        Assert.assertEquals("row742", getSession().execute("SELECT label FROM \"Seed\" WHERE part = 7 AND seq = 42")
+                .one().getString("label"));
+    }
+
+    /**
+     * Check that the rows produced by a Java mutation are written to SSTables and streamed to the embedded
+     * Cassandra when a SSTable directory is set, and that the work directory is deleted.
+     */
+    @Test
+    public void mutateWithSSTables() throws IOException {
+        File directory = new File("target/sstables");
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        mutagen.setLocation("mutations/tests/row_source");
+        mutagen.setSSTableDirectory(directory.getPath());
+        mutagen.initialize();
+        result = mutagen.mutate(false);
+
+        checkMutationSuccessful();
+        checkLastTimestamp("201502011210");
+
+        Assert.assertEquals(1000, getSession().execute("SELECT * FROM \"Seed\" LIMIT 2000").all().size());
+        Assert.assertEquals("row742", getSession().execute("SELECT label FROM \"Seed\" WHERE part = 7 AND seq = 42")
+                .one().getString("label"));
+        Assert.assertEquals(0, directory.list().length);
+    }
+}
@@ -62,4 +62,21 @@ public class SubFoldersMigrationTest extends AbstractTest {
 
     }
 
+    @Test
+    public void execute_folders_v2_and_v1_together() {
+
+        // Execute the mutations of both folders, merged by version
+        mutate("mutations/tests/subfolder/v2, mutations/tests/subfolder/v1");
+
+        // Check the results
+        checkMutationSuccessful();
+        checkLastTimestamp("201501010002");
+
+        MigrationInfo[] migrationInfo = getMigrationInfo();
+        Assert.assertEquals(2, migrationInfo.length);
+        Assert.assertEquals(MutationStatus.SUCCESS.getValue(), migrationInfo[0].getStatus());
+        Assert.assertEquals(MutationStatus.SUCCESS.getValue(), migrationInfo[1].getStatus());
+
+    }
+
 }
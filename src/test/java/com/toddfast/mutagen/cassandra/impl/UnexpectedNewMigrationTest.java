@@ -4,7 +4,7 @@ import com.toddfast.mutagen.cassandra.MutationStatus;
 import org.junit.Test;
 
 import com.toddfast.mutagen.MutagenException;
-import com.toddfast.mutagen.cassandra.utils.DBUtils;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
 
 
 public class UnexpectedNewMigrationTest extends AbstractTest {
@@ -15,10 +15,11 @@ public class UnexpectedNewMigrationTest extends AbstractTest {
     @Test(expected = MutagenException.class)
     public void testAddedScriptWithInferiorState() {
 
-        DBUtils.createSchemaVersionTable(getSession());
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        dao.createTable();
 
         // mutation with versionId ending with 2
-        DBUtils.appendVersionRecord(getSession(), "201501010002", "Foo", "", 0, MutationStatus.SUCCESS.getValue());
+        dao.appendVersionRecord("201501010002", "Foo", "", 0, MutationStatus.SUCCESS.getValue());
 
         // try to mutate with script ending in 1
         mutate("mutations/tests/unexpected_new_migration");
@@ -0,0 +1,85 @@
+package com.toddfast.mutagen.cassandra.impl;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.toddfast.mutagen.Plan;
+import com.toddfast.mutagen.cassandra.CachingCassandraSubject;
+import com.toddfast.mutagen.cassandra.CassandraCoordinator;
+import com.toddfast.mutagen.cassandra.CassandraMutagen;
+import com.toddfast.mutagen.cassandra.impl.checksum.ChecksumAlgorithms;
+import com.toddfast.mutagen.cassandra.impl.version.VersionFingerprint;
+import com.toddfast.mutagen.cassandra.impl.version.VersionTableDao;
+import com.toddfast.mutagen.cassandra.utils.LoadResources;
+
+public class VersionFingerprintTest extends AbstractTest {
+
+    private final String RESOURCE_PATH = "mutations/tests/execution";
+
+    private CassandraPlanner newPlanner() throws IOException {
+        CassandraMutagen mutagen = new CassandraMutagenImpl(getSession());
+        return new CassandraPlanner(getSession(), LoadResources.loadMutationResources(mutagen, RESOURCE_PATH, ".*"));
+    }
+
+    /**
+     * Check that the fingerprint is updated as the mutations are applied.
+     */
+    @Test
+    public void fingerprintOfAppliedMutations() throws IOException {
+        mutate(RESOURCE_PATH);
+        checkMutationSuccessful();
+
+        VersionFingerprint fingerprint = VersionTableDao.forSession(getSession()).getFingerprint();
+        Assert.assertNotNull(fingerprint);
+        Assert.assertEquals(4, fingerprint.getMutations());
+        Assert.assertEquals("201502011230", fingerprint.getMaxVersion());
+
+        CassandraPlanner planner = newPlanner();
+        Assert.assertEquals(VersionFingerprint.of(planner.getMutations(), ChecksumAlgorithms.MD5), fingerprint);
+
+        CachingCassandraSubject subject = new CachingCassandraSubject(getSession());
+        Plan<String> plan = planner.getPlan(subject, new CassandraCoordinator());
+        Assert.assertTrue(plan.getMutations().isEmpty());
+        Assert.assertEquals("201502011230", subject.getCurrentState().getID());
+    }
+
+    /**
+     * Check that a fingerprint which does not match is written again after verifying all the mutations.
+     */
+    @Test
+    public void fingerprintMismatch() throws IOException {
+        mutate(RESOURCE_PATH);
+        checkMutationSuccessful();
+
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        VersionFingerprint fingerprint = dao.getFingerprint();
+        dao.saveFingerprint(new VersionFingerprint("md5", 42, 4, 201502011230L));
+
+        Plan<String> plan = newPlanner().getPlan(new CachingCassandraSubject(getSession()), new CassandraCoordinator());
+        Assert.assertTrue(plan.getMutations().isEmpty());
+        Assert.assertEquals(fingerprint, dao.getFingerprint());
+    }
+
+    /**
+     * Check that the fingerprint is deleted with the records it includes.
+     */
+    @Test
+    public void fingerprintDeletedWithRecords() throws IOException {
+        mutate(RESOURCE_PATH);
+        checkMutationSuccessful();
+
+        VersionTableDao dao = VersionTableDao.forSession(getSession());
+        dao.deleteVersionRecord("201502011230");
+        Assert.assertNull(dao.getFingerprint());
+
+        mutate(RESOURCE_PATH);
+        checkMutationSuccessful();
+        Assert.assertNotNull(dao.getFingerprint());
+
+        dao.dropTable();
+        dao.createTable();
+        Assert.assertNull(dao.getFingerprint());
+    }
+}
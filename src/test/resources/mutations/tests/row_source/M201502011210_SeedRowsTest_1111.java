@@ -0,0 +1,42 @@
+package mutations.tests.row_source;
+
+import java.util.Iterator;
+
+import com.toddfast.mutagen.cassandra.impl.RowSourceMutation;
+
+/**
+ *
+ * It is a script file java that seeds table Seed with 10 partitions of 100 rows.
+ */
+public class M201502011210_SeedRowsTest_1111 extends RowSourceMutation {
+
+    @Override
+    protected String getHeader() {
+        return "\"Seed\"(part, seq, label)";
+    }
+
+    @Override
+    protected Iterator<Object[]> getRows() {
+        return new Iterator<Object[]>() {
+
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < 1000;
+            }
+
+            @Override
+            public Object[] next() {
+                Object[] values = new Object[] { row / 100, row % 100, "row" + row };
+                row++;
+                return values;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}